@@ -0,0 +1,107 @@
+package com.dante.expense.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions to streaming replicas when expense.replicas.enabled is true
+ * The application DataSource becomes a lazy proxy over the primary pool: a connection is only taken when the first
+ * statement runs, by which point the transaction has marked it read-only or not. Read-only ones come from the
+ * ReplicaRouter, everything else from the primary. Replicas use the primary's credentials
+ */
+@Configuration
+@ConditionalOnProperty(name = "expense.replicas.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    /**
+     * The primary's pool, configured by spring.datasource.* as the auto-configured one would be
+     *
+     * @param properties spring.datasource properties
+     *
+     * @return the primary pool
+     *
+     * @pre properties.url != NULL
+     *
+     * @post return is not injected by type, only through dataSource()
+     */
+    @Bean(defaultCandidate = false)
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Router over one pool per replica url
+     * Replica pools start on first use, so the application comes up while a replica is down
+     *
+     * @param primary the primary pool
+     * @param urls JDBC urls of the replicas
+     * @param poolSize connections per replica pool
+     * @param connectionTimeout how long a replica read waits for a connection
+     * @param maxLag how far behind a replica may be and still get reads
+     * @param meterRegistry registry for routing and pool metrics
+     *
+     * @return the router
+     *
+     * @pre primary != NULL AND urls != NULL AND poolSize > 0 AND connectionTimeout > 0 AND maxLag > 0
+     *
+     * @post return routes over replica-0 .. replica-(n-1) in urls order
+     */
+    @Bean(defaultCandidate = false)
+    ReplicaRouter replicaRouter(@Qualifier("primaryDataSource") HikariDataSource primary,
+                                @Value("${expense.replicas.urls:}") String[] urls,
+                                @Value("${expense.replicas.pool-size:20}") int poolSize,
+                                @Value("${expense.replicas.connection-timeout:PT1S}") Duration connectionTimeout,
+                                @Value("${expense.replicas.max-lag:PT5S}") Duration maxLag,
+                                MeterRegistry meterRegistry) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : urls) {
+            if (url.isBlank()) continue;
+
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(primary.getUsername());
+            replica.setPassword(primary.getPassword());
+            replica.setMaximumPoolSize(poolSize);
+            replica.setConnectionTimeout(connectionTimeout.toMillis());
+            replica.setMetricRegistry(meterRegistry);
+            replicas.put(replica.getPoolName(), replica);
+        }
+
+        return new ReplicaRouter(primary, replicas, maxLag, meterRegistry);
+    }
+
+    /**
+     * The application DataSource
+     *
+     * @param primary the primary pool
+     * @param router where read-only connections come from
+     *
+     * @return a proxy taking read-write connections from primary and read-only ones from router
+     *
+     * @pre primary != NULL AND router != NULL
+     */
+    @Bean
+    @Primary
+    DataSource dataSource(@Qualifier("primaryDataSource") HikariDataSource primary,
+                          @Qualifier("replicaRouter") ReplicaRouter router) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primary);
+        proxy.setReadOnlyDataSource(router);
+        return proxy;
+    }
+}
@@ -0,0 +1,243 @@
+package com.dante.expense.config;
+
+import com.dante.expense.repository.ReadRouting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource for read-only connections: each one comes from a replica that is close enough behind the primary, or
+ * from the primary when none is
+ * poll() samples the primary's WAL position, then each replica's replay position. A replica is caught up to a poll
+ * once it has replayed the position the primary had when that poll started, so caughtUpTo is a time on this JVM's
+ * clock and database clocks are never compared. A replica gets reads while it answered the last poll and is caught
+ * up to a poll started within maxLag; a thread with a ReadRouting hint only reads from replicas caught up to the
+ * hinted time. Eligible replicas take turns
+ *
+ * @invariant primary != NULL AND replicas != NULL AND maxLagNanos > 0
+ */
+public class ReplicaRouter extends AbstractRoutingDataSource implements AutoCloseable {
+
+    /** Lookup key of the primary */
+    static final String PRIMARY = "primary";
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRouter.class);
+
+    private static final int POLL_TIMEOUT_SECONDS = 1;
+
+    private static final String PRIMARY_POSITION = "select pg_current_wal_lsn() - '0/0'";
+
+    // a url that turns out to be a primary (a dev setup pointing both at one database) reports its own position
+    private static final String REPLAY_POSITION = "select coalesce(pg_last_wal_replay_lsn(), pg_current_wal_lsn()) - '0/0'";
+
+    private final JdbcTemplate primary;
+    private final Map<String, DataSource> dataSources;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagNanos;
+    private final AtomicInteger turn = new AtomicInteger();
+    private final Counter primaryReads;
+    private final Counter replicaReads;
+
+    // {start nanos, primary WAL position} of the polls within maxLag, oldest first; guarded by this
+    private final Deque<long[]> polls = new ArrayDeque<>();
+
+    /**
+     * @param primary the primary, reads go here when no replica is eligible
+     * @param replicas replica DataSources by name, in the order they were configured
+     * @param maxLag how far behind the primary a replica may be and still get reads
+     * @param meterRegistry registry for the expense.datasource.reads counters and replica lag gauges
+     *
+     * @pre all arguments != NULL AND maxLag > 0
+     *
+     * @post no replica is eligible until poll() has seen it caught up
+     */
+    public ReplicaRouter(DataSource primary, Map<String, DataSource> replicas, Duration maxLag, MeterRegistry meterRegistry) {
+        this.primary = pollTemplate(primary);
+        this.maxLagNanos = maxLag.toNanos();
+
+        this.dataSources = new HashMap<>(replicas);
+        this.dataSources.put(PRIMARY, primary);
+        setTargetDataSources(new HashMap<>(dataSources));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+
+        replicas.forEach((name, ds) -> {
+            Replica r = new Replica(name, pollTemplate(ds));
+            this.replicas.add(r);
+            Gauge.builder("expense.datasource.replica.lag", r, this::lagSeconds)
+                    .tag("replica", name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        });
+
+        this.primaryReads = Counter.builder("expense.datasource.reads").tag("target", "primary").register(meterRegistry);
+        this.replicaReads = Counter.builder("expense.datasource.reads").tag("target", "replica").register(meterRegistry);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return route(System.nanoTime());
+    }
+
+    /**
+     * Picks where a read-only connection asked for now comes from
+     *
+     * @param now System.nanoTime() of the request
+     *
+     * @return the name of an eligible replica, PRIMARY if there is none
+     *
+     * @pre none
+     *
+     * @post return != PRIMARY IMPLIES that replica is caught up to a poll within maxLag of now, and to
+     * ReadRouting.replayedSince() if set
+     */
+    String route(long now) {
+        if (!ReadRouting.primaryOnly() && !replicas.isEmpty()) {
+            Long since = ReadRouting.replayedSince();
+            int first = Math.floorMod(turn.getAndIncrement(), replicas.size());
+
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica r = replicas.get((first + i) % replicas.size());
+                long caughtUpTo = r.caughtUpTo;
+                if (r.up && now - caughtUpTo <= maxLagNanos && (since == null || caughtUpTo - since >= 0)) {
+                    replicaReads.increment();
+                    return r.name;
+                }
+            }
+        }
+
+        primaryReads.increment();
+        return PRIMARY;
+    }
+
+    /**
+     * Samples the primary's WAL position and every replica's replay position
+     * A replica that doesn't answer stops getting reads until it does; if the primary doesn't answer nothing is
+     * recorded and replicas fall out of the lag bound
+     *
+     * @pre none
+     *
+     * @post each replica's eligibility reflects this poll
+     */
+    @Scheduled(fixedDelayString = "${expense.replicas.poll-interval:PT0.5S}")
+    public void poll() {
+        long start = System.nanoTime();
+
+        long position;
+        try {
+            position = primary.queryForObject(PRIMARY_POSITION, Long.class);
+        } catch (DataAccessException ex) {
+            log.warn("Couldn't read the primary's WAL position: {}", ex.getMessage());
+            return;
+        }
+
+        long[] replayed = new long[replicas.size()];
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica r = replicas.get(i);
+            try {
+                replayed[i] = r.jdbc.queryForObject(REPLAY_POSITION, Long.class);
+            } catch (DataAccessException ex) {
+                if (r.up) log.warn("Replica {} stopped answering, its reads go to the primary: {}", r.name, ex.getMessage());
+                replayed[i] = -1;
+            }
+        }
+
+        observe(start, position, replayed);
+    }
+
+    /**
+     * Records one poll
+     *
+     * @param start System.nanoTime() when the poll started
+     * @param primaryPosition the primary's WAL position at start
+     * @param replayed each replica's replay position in configuration order, negative if it didn't answer
+     *
+     * @pre start is later than any earlier poll's start AND replayed.length = number of replicas
+     *
+     * @post a replica that answered is caught up to the latest poll within maxLag whose primary position it has
+     * replayed, or keeps its earlier caughtUpTo if there is none
+     */
+    synchronized void observe(long start, long primaryPosition, long[] replayed) {
+        polls.addLast(new long[] {start, primaryPosition});
+        while (start - polls.peekFirst()[0] > maxLagNanos) polls.removeFirst();
+
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica r = replicas.get(i);
+            if (replayed[i] < 0) {
+                r.up = false;
+                continue;
+            }
+
+            for (Iterator<long[]> it = polls.descendingIterator(); it.hasNext(); ) {
+                long[] p = it.next();
+                if (p[1] <= replayed[i]) {
+                    r.caughtUpTo = p[0];
+                    r.up = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the replica pools, the primary belongs to its own bean
+     *
+     * @pre none
+     *
+     * @post every replica DataSource that is Closeable has been closed, one that fails to close is logged and the
+     *       rest are still closed
+     */
+    @Override
+    public void close() {
+        for (Map.Entry<String, DataSource> e : dataSources.entrySet()) {
+            if (PRIMARY.equals(e.getKey()) || !(e.getValue() instanceof Closeable c)) continue;
+            try {
+                c.close();
+            } catch (IOException ex) {
+                log.warn("Couldn't close the pool for replica {}: {}", e.getKey(), ex.getMessage());
+            }
+        }
+    }
+
+    private double lagSeconds(Replica r) {
+        return r.up ? (System.nanoTime() - r.caughtUpTo) / 1e9 : Double.NaN;
+    }
+
+    private static JdbcTemplate pollTemplate(DataSource ds) {
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        jdbc.setQueryTimeout(POLL_TIMEOUT_SECONDS);
+        return jdbc;
+    }
+
+    private static final class Replica {
+
+        final String name;
+        final JdbcTemplate jdbc;
+        volatile boolean up;
+        volatile long caughtUpTo;
+
+        Replica(String name, JdbcTemplate jdbc) {
+            this.name = name;
+            this.jdbc = jdbc;
+        }
+    }
+}
@@ -1,44 +1,120 @@
 package com.dante.expense.controller;
 
+import com.dante.expense.dto.BulkTransitionRequest;
+import com.dante.expense.dto.BulkTransitionResponse;
 import com.dante.expense.dto.CreateExpenseRequest;
+import com.dante.expense.dto.ExpenseActionResponse;
+import com.dante.expense.dto.ExpenseEventScope;
+import com.dante.expense.dto.ExpenseExportFilter;
+import com.dante.expense.dto.ExpenseFilter;
+import com.dante.expense.dto.ExpensePage;
 import com.dante.expense.dto.ExpenseResponse;
+import com.dante.expense.dto.ExpenseRollupFilter;
+import com.dante.expense.dto.ExpenseRollupFilter.Dimension;
+import com.dante.expense.dto.ExpenseRollupResponse;
+import com.dante.expense.dto.ExpenseSearchFilter;
+import com.dante.expense.dto.ImportReport;
 import com.dante.expense.dto.RejectExpenseRequest;
-import com.dante.expense.entity.ExpenseAction;
+import com.dante.expense.dto.RollupRebuildReport;
+import com.dante.expense.entity.ExpenseActionType;
+import com.dante.expense.entity.ExpenseCategory;
+import com.dante.expense.entity.ExpenseStatus;
+import com.dante.expense.service.ExpenseExportService;
+import com.dante.expense.service.ExpenseImportService;
+import com.dante.expense.service.ExpenseRollupService;
+import com.dante.expense.service.ExpenseSearchService;
 import com.dante.expense.service.ExpenseService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.ObjectMapper;
 import com.dante.expense.dto.CommentRequest;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * REST controller for expense endpoints
  * No authentication as yet
  *
  * @invariant expenseService != NULL
+ * @invariant importService != NULL
+ * @invariant exportService != NULL
+ * @invariant rollupService != NULL
+ * @invariant searchService != NULL
+ * @invariant eventStreams != NULL
+ * @invariant objectMapper != NULL
  */
 @RestController
 @RequestMapping("/api/expenses")
 public class ExpenseController {
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+
     private final ExpenseService expenseService;
+    private final ExpenseImportService importService;
+    private final ExpenseExportService exportService;
+    private final ExpenseRollupService rollupService;
+    private final ExpenseSearchService searchService;
+    private final ExpenseEventStreams eventStreams;
+    private final ObjectMapper objectMapper;
 
     /**
      * Constructs controller
      *
      * @param expenseService service layer
+     * @param importService bulk import service
+     * @param exportService ledger export service
+     * @param rollupService spend summary service
+     * @param searchService description search service
+     * @param eventStreams server-sent event streams of workflow changes
+     * @param objectMapper json mapper used for streamed responses
      *
-     * @pre expenseService != NULL
+     * @pre expenseService != NULL AND importService != NULL AND exportService != NULL
+     * @pre rollupService != NULL AND searchService != NULL AND eventStreams != NULL AND objectMapper != NULL
      *
-     * @post this.expenseService = expenseService
+     * @post this.expenseService = expenseService AND this.importService = importService
+     *      AND this.exportService = exportService AND this.rollupService = rollupService
+     *      AND this.searchService = searchService AND this.eventStreams = eventStreams
+     *      AND this.objectMapper = objectMapper
      */
-    public ExpenseController(ExpenseService expenseService) {
+    public ExpenseController(ExpenseService expenseService, ExpenseImportService importService,
+                             ExpenseExportService exportService, ExpenseRollupService rollupService,
+                             ExpenseSearchService searchService, ExpenseEventStreams eventStreams,
+                             ObjectMapper objectMapper) {
         this.expenseService = expenseService;
+        this.importService = importService;
+        this.exportService = exportService;
+        this.rollupService = rollupService;
+        this.searchService = searchService;
+        this.eventStreams = eventStreams;
+        this.objectMapper = objectMapper;
     }
 
     /**
      * Create & submit a new expense for given user
+     * A retry carrying the same Idempotency-Key gets the expense the first attempt created
      *
      * @param userId the current user's id
+     * @param idempotencyKey optional client key identifying this submission
+     * @param allowDuplicate save the expense even if it looks like a duplicate of an existing one
      * @param req the validated request
      *
      * @return created expense response
@@ -48,47 +124,321 @@ public class ExpenseController {
      *
      * @post return != NULL
      * @post return.userId = userId
+     *
+     * @throws ConflictException if the expense looks like a duplicate, or the key was used for a different expense
+     * @throws BadRequestException if the key is blank or too long
      */
     @PostMapping
     public ExpenseResponse create(
             @RequestHeader("X-User-Id") Long userId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestParam(defaultValue = "false") boolean allowDuplicate,
             @Valid @RequestBody CreateExpenseRequest req
     ) {
-        return expenseService.createExpense(userId, req);
+        return expenseService.createExpense(userId, req, idempotencyKey, allowDuplicate);
+    }
+
+    /**
+     * Bulk imports expenses from a CSV (with header) or NDJSON body, one expense per line
+     * The body is streamed and written in chunked transactions; rows that fail validation are reported, not fatal
+     *
+     * @param actorUserId the finance user running the import
+     * @param contentType text/csv or application/x-ndjson
+     * @param body the raw request body
+     *
+     * @return import counts and per-row errors
+     *
+     * @pre actorUserId != NULL AND actorUserId >= 0
+     *
+     * @post return.imported SUBMITTED expenses exist, each with a SUBMIT action
+     *
+     * @throws NotFoundException if actor user doesn't exist
+     * @throws ForbiddenException if actor isn't a FINANCE user
+     * @throws BadRequestException if the CSV header is missing a column
+     */
+    @PostMapping(value = "/import", consumes = {CSV, NDJSON})
+    public ImportReport importExpenses(
+            @RequestHeader("X-User-Id") Long actorUserId,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body
+    ) {
+        ExpenseImportService.Format format = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType(CSV))
+                ? ExpenseImportService.Format.CSV
+                : ExpenseImportService.Format.NDJSON;
+
+        return importService.importExpenses(actorUserId, format, body);
     }
 
     /**
      * Gets an expense by the id
+     * The ETag is derived from updatedAt, Spring answers a matching If-None-Match with
+     * a bodiless 304 before anything is serialized
      *
      * @param id expense id
      *
-     * @return expense response
+     * @return expense response with an ETag
      *
      * @pre id != NULL AND id >= 0
      *
      * @post return != NULL
-     * @post return.id = id
+     * @post return.body = NULL OR return.body.id = id
      */
     @GetMapping("/{id}")
-    public ExpenseResponse getById(@PathVariable("id") Long id) {
-        return expenseService.getExpense(id);
+    public ResponseEntity<ExpenseResponse> getById(@PathVariable("id") Long id) {
+        ExpenseResponse expense = expenseService.getExpense(id);
+
+        return ResponseEntity.ok().eTag(etagOf(expense)).cacheControl(CacheControl.noCache()).body(expense);
+    }
+
+    /**
+     * Entity tag for an expense, changes whenever the row is updated
+     *
+     * @param expense the expense
+     *
+     * @return quoted hex of updatedAt in epoch micros (createdAt if never updated)
+     *
+     * @pre expense != NULL AND expense.createdAt != NULL
+     *
+     * @post return != NULL
+     */
+    private static String etagOf(ExpenseResponse expense) {
+        OffsetDateTime at = expense.getUpdatedAt() != null ? expense.getUpdatedAt() : expense.getCreatedAt();
+        long micros = ChronoUnit.MICROS.between(Instant.EPOCH, at.toInstant());
+
+        return "\"" + Long.toHexString(micros) + "\"";
     }
 
     /**
-     * Lists expenses for a given user
+     * Lists expenses for a given user one keyset page at a time, newest first
      *
      * @param userId user id
+     * @param status optional status filter
+     * @param category optional category filter
+     * @param from optional inclusive lower bound on expenseDate
+     * @param to optional inclusive upper bound on expenseDate
+     * @param cursor nextCursor from the previous page, omit for the first page
+     * @param limit page size, defaults to 20 and is capped at 100
      *
-     * @return list of expense responses ([] if none)
+     * @return page of expense responses (items = [] if none)
      *
      * @pre userId != NULL AND userId >= 0
      *
      * @post return != NULL
-     * @post for all r in return, r.userId = userId
+     * @post for all r in return.items, r.userId = userId
+     *
+     * @throws BadRequestException if cursor, limit or the date range is invalid
      */
     @GetMapping
-    public List<ExpenseResponse> listByUser(@RequestParam("userId") Long userId) {
-        return expenseService.listExpensesByUser(userId);
+    public ExpensePage listByUser(
+            @RequestParam("userId") Long userId,
+            @RequestParam(value = "status", required = false) ExpenseStatus status,
+            @RequestParam(value = "category", required = false) ExpenseCategory category,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit
+    ) {
+        ExpenseFilter filter = new ExpenseFilter(userId, status, category, from, to);
+        return expenseService.listExpensesByUser(filter, cursor, limit);
+    }
+
+    /**
+     * Full-text search over descriptions, e.g. q=uber or q="hotel in Berlin", with the listing filters on top
+     *
+     * @param actorUserId the user searching, employees only see their own expenses
+     * @param q the search text, web search syntax
+     * @param userId optional owner filter
+     * @param status optional status filter
+     * @param category optional category filter
+     * @param from optional inclusive lower bound on expenseDate
+     * @param to optional inclusive upper bound on expenseDate
+     * @param sort RANK (best match first, default) or RECENT (newest first). RANK orders the matches 1000 at a time,
+     *             newest thousand first, and pages carry on through older thousands until every match is listed
+     * @param cursor nextCursor from the previous page of the same search, omit for the first page
+     * @param limit page size, defaults to 20 and is capped at 100
+     *
+     * @return page of matching expenses (items = [] if none)
+     *
+     * @pre actorUserId != NULL AND actorUserId >= 0
+     *
+     * @post return != NULL
+     *
+     * @throws NotFoundException if actor user doesn't exist
+     * @throws ForbiddenException if an employee searches another user's expenses
+     * @throws BadRequestException if q is blank or too long, or cursor, limit or the date range is invalid
+     */
+    @GetMapping("/search")
+    public ExpensePage search(
+            @RequestHeader("X-User-Id") Long actorUserId,
+            @RequestParam("q") String q,
+            @RequestParam(value = "userId", required = false) Long userId,
+            @RequestParam(value = "status", required = false) ExpenseStatus status,
+            @RequestParam(value = "category", required = false) ExpenseCategory category,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "sort", required = false) ExpenseSearchFilter.Sort sort,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit
+    ) {
+        ExpenseSearchFilter filter = new ExpenseSearchFilter(q, userId, status, category, from, to, sort);
+        return searchService.search(actorUserId, filter, cursor, limit);
+    }
+
+    /**
+     * Streams the manager approval queue as NDJSON, one SUBMITTED expense per line, oldest first
+     * Lines are written as rows come off the database cursor, so the response never sits in memory whole
+     *
+     * @param actorUserId the manager asking for the queue
+     * @param response the servlet response written to
+     *
+     * @pre actorUserId != NULL AND actorUserId >= 0
+     *
+     * @post response body holds one JSON ExpenseResponse per line, each with status = SUBMITTED
+     *
+     * @throws NotFoundException if actor user doesn't exist
+     * @throws ForbiddenException if actor isn't a MANAGER
+     */
+    @GetMapping("/queue")
+    public void approvalQueue(
+            @RequestHeader("X-User-Id") Long actorUserId,
+            HttpServletResponse response
+    ) throws IOException {
+        response.setContentType(NDJSON);
+        OutputStream out = response.getOutputStream();
+
+        expenseService.streamApprovalQueue(actorUserId, r -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(r));
+                out.write('\n');
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    /**
+     * Server-Sent Events stream of workflow changes, instead of polling an expense or a list
+     * Each committed SUBMIT / APPROVE / REJECT / REIMBURSE in scope arrives as an "expense" event whose data is an
+     * ExpenseEvent. A client that falls too far behind is disconnected; on reconnect it should reload what it shows,
+     * events from while it was away aren't replayed
+     *
+     * @param userId the subscriber
+     * @param scope OWN (default) for the caller's expenses, APPROVALS for the manager queue, REIMBURSEMENTS for the
+     *              finance queue
+     *
+     * @return the open stream
+     *
+     * @pre userId != NULL AND userId >= 0
+     *
+     * @post events in scope committed after the stream opens are pushed to it
+     *
+     * @throws NotFoundException if the user doesn't exist
+     * @throws ForbiddenException if the user's role may not watch scope
+     * @throws ServiceUnavailableException if this instance has no room for another stream
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(
+            @RequestHeader("X-User-Id") Long userId,
+            @RequestParam(value = "scope", defaultValue = "OWN") ExpenseEventScope scope
+    ) {
+        return eventStreams.open(userId, scope);
+    }
+
+    /**
+     * Streams expenses as CSV for the ledger, straight from the database
+     * The body is gzipped on the fly when the client sends Accept-Encoding: gzip
+     *
+     * @param actorUserId the finance user running the export
+     * @param status status to export, REIMBURSED by default
+     * @param from optional inclusive lower bound on expenseDate
+     * @param to optional inclusive upper bound on expenseDate
+     * @param currency optional 3-letter currency filter
+     * @param acceptEncoding the client's Accept-Encoding header
+     * @param response the servlet response written to
+     *
+     * @pre actorUserId != NULL AND actorUserId >= 0
+     *
+     * @post response body is a CSV header plus one line per matching expense
+     *
+     * @throws NotFoundException if actor user doesn't exist
+     * @throws ForbiddenException if actor isn't a FINANCE user
+     * @throws BadRequestException if currency or the date range is invalid
+     */
+    @GetMapping("/export")
+    public void export(
+            @RequestHeader("X-User-Id") Long actorUserId,
+            @RequestParam(value = "status", defaultValue = "REIMBURSED") ExpenseStatus status,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "currency", required = false) String currency,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response
+    ) throws IOException {
+        ExpenseExportFilter filter = new ExpenseExportFilter(status, from, to, currency);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+
+        exportService.exportCsv(actorUserId, filter, () -> {
+            response.setContentType(CSV);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"expenses-" + status + ".csv\"");
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+            if (!gzip) return response.getOutputStream();
+
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return new GZIPOutputStream(response.getOutputStream(), 8192);
+        });
+    }
+
+    /**
+     * Spend totals from the pre-aggregated rollups, grouped by currency plus the requested dimensions
+     *
+     * @param actorUserId the user asking, employees only see their own totals
+     * @param userId optional owner filter
+     * @param category optional category filter
+     * @param currency optional 3-letter currency filter
+     * @param status optional status filter
+     * @param from optional first month (yyyy-MM) of expenseDate
+     * @param to optional last month (yyyy-MM) of expenseDate
+     * @param groupBy dimensions to break totals down by, all of them when absent
+     *
+     * @return one row per group, ordered by the grouping columns
+     *
+     * @pre actorUserId != NULL AND actorUserId >= 0
+     *
+     * @post return != NULL
+     *
+     * @throws NotFoundException if actor user doesn't exist
+     * @throws ForbiddenException if an employee asks for another user's totals
+     * @throws BadRequestException if currency or the month range is invalid
+     */
+    @GetMapping("/summary")
+    public List<ExpenseRollupResponse> summary(
+            @RequestHeader("X-User-Id") Long actorUserId,
+            @RequestParam(value = "userId", required = false) Long userId,
+            @RequestParam(value = "category", required = false) ExpenseCategory category,
+            @RequestParam(value = "currency", required = false) String currency,
+            @RequestParam(value = "status", required = false) ExpenseStatus status,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth to,
+            @RequestParam(value = "groupBy", required = false) Set<Dimension> groupBy
+    ) {
+        return rollupService.summarize(actorUserId,
+                new ExpenseRollupFilter(userId, category, currency, status, from, to, groupBy));
+    }
+
+    /**
+     * Recomputes every spend rollup from the expenses table
+     *
+     * @param actorUserId the finance user asking
+     *
+     * @return stripe and row counts of the rebuild
+     *
+     * @throws NotFoundException if actor user doesn't exist
+     * @throws ForbiddenException if actor isn't a FINANCE user
+     */
+    @PostMapping("/summary/rebuild")
+    public RollupRebuildReport rebuildSummary(@RequestHeader("X-User-Id") Long actorUserId) {
+        return rollupService.rebuild(actorUserId);
     }
 
     @PutMapping("/{id}/approve")
@@ -129,6 +479,7 @@ public class ExpenseController {
      * @throws NotFoundException if actor user or id doesn't exist
      * @throws ForbiddenException if actor isn't a FINANCE user
      * @throws BadRequestException if expense status isn't approved
+     * @throws ConflictException if a concurrent request changed the expense while this one ran
      */
     @PutMapping("/{id}/reimburse")
     public ExpenseResponse reimburse(
@@ -141,26 +492,114 @@ public class ExpenseController {
         return expenseService.reimburseExpense(id, actorUserId, comment);
     }
 
+    /**
+     * Approves many SUBMITTED expenses in one call
+     *
+     * @param actorUserId the manager performing the approvals
+     * @param req ids to approve and an optional comment
+     *
+     * @return per-id results in request order
+     *
+     * @pre actorUserId != NULL AND actorUserId >= 0
+     * @pre req != NULL
+     *
+     * @post return.results.size() = req.expenseIds.size()
+     *
+     * @throws NotFoundException if actor user doesn't exist
+     * @throws ForbiddenException if actor isn't a MANAGER
+     */
+    @PutMapping("/bulk/approve")
+    public BulkTransitionResponse bulkApprove(
+            @RequestHeader("X-User-Id") Long actorUserId,
+            @Valid @RequestBody BulkTransitionRequest req
+    ) {
+        return expenseService.bulkTransition(actorUserId, ExpenseActionType.APPROVE, req.expenseIds(), req.comment());
+    }
+
+    /**
+     * Rejects many SUBMITTED expenses in one call, comment is recorded as the reason on each
+     *
+     * @param actorUserId the manager performing the rejections
+     * @param req ids to reject and an optional reason
+     *
+     * @return per-id results in request order
+     *
+     * @pre actorUserId != NULL AND actorUserId >= 0
+     * @pre req != NULL
+     *
+     * @post return.results.size() = req.expenseIds.size()
+     *
+     * @throws NotFoundException if actor user doesn't exist
+     * @throws ForbiddenException if actor isn't a MANAGER
+     */
+    @PutMapping("/bulk/reject")
+    public BulkTransitionResponse bulkReject(
+            @RequestHeader("X-User-Id") Long actorUserId,
+            @Valid @RequestBody BulkTransitionRequest req
+    ) {
+        return expenseService.bulkTransition(actorUserId, ExpenseActionType.REJECT, req.expenseIds(), req.comment());
+    }
+
+    /**
+     * Reimburses many APPROVED expenses in one call
+     *
+     * @param actorUserId the finance user performing the reimbursements
+     * @param req ids to reimburse and an optional comment
+     *
+     * @return per-id results in request order
+     *
+     * @pre actorUserId != NULL AND actorUserId >= 0
+     * @pre req != NULL
+     *
+     * @post return.results.size() = req.expenseIds.size()
+     *
+     * @throws NotFoundException if actor user doesn't exist
+     * @throws ForbiddenException if actor isn't a FINANCE user
+     */
+    @PutMapping("/bulk/reimburse")
+    public BulkTransitionResponse bulkReimburse(
+            @RequestHeader("X-User-Id") Long actorUserId,
+            @Valid @RequestBody BulkTransitionRequest req
+    ) {
+        return expenseService.bulkTransition(actorUserId, ExpenseActionType.REIMBURSE, req.expenseIds(), req.comment());
+    }
+
     /**
      *
      * @param expenseId id of the expense whose actions are being retrieved
      *
-     * @return list of ExpenseAction rows for an expense along with their timestamp
+     * @return list of actions for an expense along with their timestamp and actor name
      *
      * @pre expenseId != NULL AND expenseId >= 0
      *
      * @post return != NULL
-     * @post every actions expense.id = expenseId
+     * @post every action's expenseId = expenseId
      * @post return is ordered oldest first
      *
      * @throws NotFoundException if expense doesn't exist
      *
      */
     @GetMapping("/{id}/actions")
-    public List<ExpenseAction> getActions(@PathVariable("id") Long expenseId) {
+    public List<ExpenseActionResponse> getActions(@PathVariable("id") Long expenseId) {
         return expenseService.getExpenseActions(expenseId);
     }
 
-
+    /**
+     * Action histories for many expenses in one call, e.g. a page of the audit UI
+     *
+     * @param expenseIds ids of the expenses, comma separated or repeated
+     *
+     * @return the actions grouped by expense id ascending, each group oldest first
+     *
+     * @pre expenseIds != NULL
+     *
+     * @post return != NULL
+     *
+     * @throws BadRequestException if no ids or more than ExpenseService.MAX_PAGE_SIZE ids are given
+     */
+    @GetMapping("/actions")
+    public List<ExpenseActionResponse> getHistories(@RequestParam("expenseIds") List<Long> expenseIds) {
+        return expenseService.getExpenseHistories(expenseIds);
+    }
 
 }
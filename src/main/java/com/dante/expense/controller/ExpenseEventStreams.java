@@ -0,0 +1,259 @@
+package com.dante.expense.controller;
+
+import com.dante.expense.dto.ExpenseEvent;
+import com.dante.expense.dto.ExpenseEventScope;
+import com.dante.expense.entity.ExpenseStatus;
+import com.dante.expense.entity.Role;
+import com.dante.expense.exception.ForbiddenException;
+import com.dante.expense.exception.ServiceUnavailableException;
+import com.dante.expense.service.ExpenseEventBus;
+import com.dante.expense.service.UserRoleCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.SimpleAsyncTaskExecutorBuilder;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.boot.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Server-Sent Events connections fed from the ExpenseEventBus
+ * Each connection has its own bounded queue. The bus only offers events to it; a sender task, started when the
+ * queue goes from empty to non-empty, writes them to the socket. A connection whose queue is full is a consumer
+ * that can't keep up and is disconnected, so a slow client never holds memory or a publishing thread; it
+ * reconnects and reloads what it needs. A heartbeat comment every heartbeat interval keeps proxies from closing
+ * idle streams and finds clients that went away. Events missed while a client is disconnected aren't replayed
+ *
+ * Sender tasks run on virtual threads when those are enabled, otherwise on a fixed pool of sender-threads platform
+ * threads. A connection has at most one sender task queued or running, so the pool's queue stays within
+ * maxConnections and handing it a task never blocks the publishing thread
+ *
+ * Metrics: expense.events.connections, expense.events.sent, expense.events.disconnects{reason}
+ *
+ * @invariant bus != NULL AND userRoles != NULL AND senders != NULL AND bufferSize > 0 AND maxConnections > 0
+ */
+@Component
+public class ExpenseEventStreams implements DisposableBean {
+
+    private static final Object HEARTBEAT = new Object();
+
+    private final ExpenseEventBus bus;
+    private final UserRoleCache userRoles;
+    private final TaskExecutor senders;
+    private final int bufferSize;
+    private final int maxConnections;
+    private final Duration timeout;
+    private final Set<Connection> open = ConcurrentHashMap.newKeySet();
+
+    private final Counter sent;
+    private final Counter slow;
+    private final Counter gone;
+
+    /**
+     * @param bus this instance's event bus
+     * @param userRoles cached roles for the scope checks
+     * @param taskExecutors builds the sender executor when virtual threads are enabled
+     * @param threadPools builds the sender pool otherwise
+     * @param environment tells whether virtual threads are enabled
+     * @param meterRegistry registry for the stream metrics
+     * @param senderThreads platform threads sending events when virtual threads are off
+     * @param bufferSize events a connection may have queued before it's dropped as too slow
+     * @param maxConnections open streams this instance accepts
+     * @param timeout how long a stream stays open before the client has to reconnect
+     *
+     * @pre all objects != NULL AND senderThreads > 0 AND bufferSize > 0 AND maxConnections > 0 AND timeout > 0
+     *
+     * @post no stream is open
+     */
+    public ExpenseEventStreams(ExpenseEventBus bus, UserRoleCache userRoles, SimpleAsyncTaskExecutorBuilder taskExecutors,
+                               ThreadPoolTaskExecutorBuilder threadPools, Environment environment,
+                               MeterRegistry meterRegistry,
+                               @Value("${expense.events.sender-threads:8}") int senderThreads,
+                               @Value("${expense.events.buffer-size:256}") int bufferSize,
+                               @Value("${expense.events.max-connections:10000}") int maxConnections,
+                               @Value("${expense.events.timeout:PT30M}") Duration timeout) {
+        this.bus = bus;
+        this.userRoles = userRoles;
+        this.senders = Threading.VIRTUAL.isActive(environment)
+                ? taskExecutors.threadNamePrefix("sse-").build()
+                : senderPool(threadPools, senderThreads);
+        this.bufferSize = bufferSize;
+        this.maxConnections = maxConnections;
+        this.timeout = timeout;
+
+        Gauge.builder("expense.events.connections", open, Set::size).register(meterRegistry);
+        this.sent = Counter.builder("expense.events.sent").register(meterRegistry);
+        this.slow = Counter.builder("expense.events.disconnects").tag("reason", "slow").register(meterRegistry);
+        this.gone = Counter.builder("expense.events.disconnects").tag("reason", "closed").register(meterRegistry);
+    }
+
+    private static ThreadPoolTaskExecutor senderPool(ThreadPoolTaskExecutorBuilder threadPools, int senderThreads) {
+        ThreadPoolTaskExecutor pool = threadPools.threadNamePrefix("sse-")
+                .corePoolSize(senderThreads)
+                .maxPoolSize(senderThreads)
+                .build();
+        pool.initialize();
+
+        return pool;
+    }
+
+    /**
+     * Stops the sender pool, if there is one; streams still open are cut off
+     *
+     * @pre none
+     *
+     * @post no sender thread is left running
+     */
+    @Override
+    public void destroy() {
+        if (senders instanceof ThreadPoolTaskExecutor pool) pool.shutdown();
+    }
+
+    /**
+     * Opens a stream of the events in a scope
+     *
+     * @param userId the subscriber
+     * @param scope which events to stream
+     *
+     * @return the emitter, one "expense" event per ExpenseEvent as JSON
+     *
+     * @pre userId != NULL AND scope != NULL
+     *
+     * @post the stream receives every event in scope published after return until it's closed
+     *
+     * @throws NotFoundException if the user doesn't exist
+     * @throws ForbiddenException if scope is APPROVALS and the user isn't a MANAGER, or REIMBURSEMENTS and not FINANCE
+     * @throws ServiceUnavailableException if maxConnections streams are already open
+     */
+    public SseEmitter open(Long userId, ExpenseEventScope scope) {
+        Predicate<ExpenseEvent> filter = filterFor(userId, scope);
+
+        if (open.size() >= maxConnections) {
+            throw new ServiceUnavailableException("Too many open event streams, retry shortly.");
+        }
+
+        Connection c = new Connection(new SseEmitter(timeout.toMillis()));
+        open.add(c);
+        c.subscription = bus.subscribe(filter, c::offer);
+        if (c.closed.get()) c.subscription.close();
+        c.emitter.onCompletion(c::close);
+        c.emitter.onTimeout(c::close);
+        c.emitter.onError(ex -> c.close());
+
+        return c.emitter;
+    }
+
+    /**
+     * Queues a heartbeat comment on every open stream
+     *
+     * @pre none
+     *
+     * @post every open stream gets a comment line, or is dropped if its queue is full
+     */
+    @Scheduled(fixedDelayString = "${expense.events.heartbeat:PT20S}")
+    public void heartbeat() {
+        for (Connection c : open) c.offer(HEARTBEAT);
+    }
+
+    /**
+     * @return which events a subscriber in scope receives
+     *
+     * @throws ForbiddenException if the user's role may not watch scope
+     */
+    private Predicate<ExpenseEvent> filterFor(Long userId, ExpenseEventScope scope) {
+        Role role = userRoles.roleOf(userId);
+
+        return switch (scope) {
+            case OWN -> e -> userId.equals(e.ownerId());
+            case APPROVALS -> {
+                if (role != Role.MANAGER) throw new ForbiddenException("Only a MANAGER can watch the approval queue.");
+                yield e -> e.status() == ExpenseStatus.SUBMITTED || e.from() == ExpenseStatus.SUBMITTED;
+            }
+            case REIMBURSEMENTS -> {
+                if (role != Role.FINANCE) throw new ForbiddenException("Only FINANCE can watch the reimbursement queue.");
+                yield e -> e.status() == ExpenseStatus.APPROVED || e.from() == ExpenseStatus.APPROVED;
+            }
+        };
+    }
+
+    /**
+     * One open stream: its emitter, bounded queue and whether a sender task is running for it
+     */
+    private final class Connection {
+
+        final SseEmitter emitter;
+        final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(bufferSize);
+        final AtomicBoolean sending = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        volatile ExpenseEventBus.Subscription subscription;
+
+        Connection(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * Called on the publishing thread, never blocks
+         */
+        void offer(Object item) {
+            if (closed.get()) return;
+
+            if (!queue.offer(item)) {
+                slow.increment();
+                close();
+                // completing waits for a send in progress, so it's left to a sender task
+                senders.execute(emitter::complete);
+                return;
+            }
+            if (sending.compareAndSet(false, true)) senders.execute(this::send);
+        }
+
+        void send() {
+            try {
+                Object item;
+                while (!closed.get() && (item = queue.poll()) != null) {
+                    if (item == HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        ExpenseEvent e = (ExpenseEvent) item;
+                        emitter.send(SseEmitter.event().name("expense").id(e.expenseId() + ":" + e.action())
+                                .data(e, MediaType.APPLICATION_JSON));
+                        sent.increment();
+                    }
+                }
+            } catch (IOException | IllegalStateException ex) {
+                // the client went away or the emitter already completed
+                if (!closed.get()) gone.increment();
+                close();
+            } finally {
+                sending.set(false);
+                if (!closed.get() && !queue.isEmpty() && sending.compareAndSet(false, true)) senders.execute(this::send);
+            }
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) return;
+
+            ExpenseEventBus.Subscription s = subscription;
+            if (s != null) s.close();
+            open.remove(this);
+            queue.clear();
+        }
+    }
+}
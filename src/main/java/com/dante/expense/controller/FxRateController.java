@@ -0,0 +1,53 @@
+package com.dante.expense.controller;
+
+import com.dante.expense.dto.FxLoadReport;
+import com.dante.expense.service.FxRateService;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+
+/**
+ * REST controller for FX rates
+ *
+ * @invariant fxRateService != NULL
+ */
+@RestController
+@RequestMapping("/api/fx/rates")
+public class FxRateController {
+
+    private final FxRateService fxRateService;
+
+    /**
+     * @param fxRateService rate loading service
+     *
+     * @pre fxRateService != NULL
+     *
+     * @post this.fxRateService = fxRateService
+     */
+    public FxRateController(FxRateService fxRateService) {
+        this.fxRateService = fxRateService;
+    }
+
+    /**
+     * Loads rates from a CSV body with a header naming date, currency and rate (base currency units per unit)
+     * Rates for a currency and date already stored are replaced; expenses waiting for one of the rates are converted
+     *
+     * @param actorUserId the finance user loading rates
+     * @param body the raw request body
+     *
+     * @return how many rates were stored and how many expenses were converted
+     *
+     * @pre actorUserId != NULL AND actorUserId >= 0
+     *
+     * @throws NotFoundException if actor user doesn't exist
+     * @throws ForbiddenException if actor isn't a FINANCE user
+     * @throws BadRequestException if the header lacks a column or a line is malformed
+     */
+    @PostMapping(consumes = "text/csv")
+    public FxLoadReport load(@RequestHeader("X-User-Id") Long actorUserId, InputStream body) {
+        return fxRateService.upload(actorUserId, body);
+    }
+}
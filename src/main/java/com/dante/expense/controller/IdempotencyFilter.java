@@ -0,0 +1,227 @@
+package com.dante.expense.controller;
+
+import com.dante.expense.exception.ApiError;
+import com.dante.expense.exception.ConflictException;
+import com.dante.expense.service.ExpenseService;
+import com.dante.expense.service.IdempotencyStore;
+import com.dante.expense.service.IdempotencyStore.StoredResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Makes mutating /api requests that carry an Idempotency-Key safe to retry
+ * The first request with a key runs and its response is recorded in the IdempotencyStore; a retry with the same
+ * key gets that response back (marked Idempotent-Replayed: true) without reaching a controller, and a retry that
+ * arrives while the first is still running waits for it. Keys are scoped by X-User-Id. Reusing a key for a
+ * different method, path, query or body is a 409.
+ * 5xx, 409 and 429 responses aren't recorded, nor are bodies over maxBody or errors rendered by the container:
+ * the key is released and a retry runs again.
+ * Request bodies are hashed as they stream past, so large imports aren't buffered
+ *
+ * @invariant store != NULL AND objectMapper != NULL AND maxBody > 0
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    /** Request header carrying the client's key */
+    public static final String HEADER = "Idempotency-Key";
+
+    /** Response header set on replayed responses */
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Set<String> METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final long maxBody;
+    private final Counter executed;
+    private final Counter replayed;
+    private final Counter conflicts;
+
+    /**
+     * @param store where keys and responses are kept
+     * @param objectMapper writes the error bodies the filter sends itself
+     * @param meterRegistry registry for the expense.idempotency.requests counters
+     * @param maxBody largest response body that is recorded
+     *
+     * @pre all arguments != NULL AND maxBody > 0
+     *
+     * @post fields are set and the counters are registered
+     */
+    public IdempotencyFilter(IdempotencyStore store, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                             @Value("${expense.idempotency.max-response-size:256KB}") DataSize maxBody) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.maxBody = maxBody.toBytes();
+        this.executed = Counter.builder("expense.idempotency.requests").tag("outcome", "executed").register(meterRegistry);
+        this.replayed = Counter.builder("expense.idempotency.requests").tag("outcome", "replayed").register(meterRegistry);
+        this.conflicts = Counter.builder("expense.idempotency.requests").tag("outcome", "conflict").register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader(HEADER) == null
+                || !METHODS.contains(request.getMethod())
+                || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(HEADER);
+        if (key.isBlank() || key.length() > ExpenseService.MAX_IDEMPOTENCY_KEY_LENGTH) {
+            sendError(request, response, HttpStatus.BAD_REQUEST,
+                    HEADER + " must be 1 to " + ExpenseService.MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+            return;
+        }
+        String scoped = Objects.toString(request.getHeader("X-User-Id"), "") + ":" + key;
+
+        Optional<StoredResponse> earlier;
+        try {
+            earlier = store.begin(scoped);
+        } catch (ConflictException ex) {
+            conflicts.increment();
+            sendError(request, response, HttpStatus.CONFLICT, ex.getMessage());
+            return;
+        }
+
+        HashingRequest hashing = new HashingRequest(request);
+
+        if (earlier.isPresent()) {
+            if (!earlier.get().requestHash().equals(hashing.finishHash())) {
+                conflicts.increment();
+                sendError(request, response, HttpStatus.CONFLICT,
+                        HEADER + " " + key + " was already used for a different request.");
+                return;
+            }
+            replayed.increment();
+            replay(response, earlier.get());
+            return;
+        }
+
+        executed.increment();
+        ContentCachingResponseWrapper captured = new ContentCachingResponseWrapper(response);
+        boolean recorded = false;
+        try {
+            chain.doFilter(hashing, captured);
+
+            int status = captured.getStatus();
+            byte[] body = captured.getContentAsByteArray();
+            // an error without a body was sent with sendError, the container renders it after this filter returns
+            boolean rendered = status < 400 || body.length > 0;
+            if (rendered && status < 500 && status != 409 && status != 429 && body.length <= maxBody) {
+                store.complete(scoped, new StoredResponse(hashing.finishHash(), status, captured.getContentType(), body));
+                recorded = true;
+            }
+        } finally {
+            if (!recorded) store.release(scoped);
+            captured.copyBodyToResponse();
+        }
+    }
+
+    private void replay(HttpServletResponse response, StoredResponse stored) throws IOException {
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) response.setContentType(stored.contentType());
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    private void sendError(HttpServletRequest request, HttpServletResponse response, HttpStatus status, String message)
+            throws IOException {
+        ApiError err = new ApiError();
+        err.setStatus(status.value());
+        err.setError(status.getReasonPhrase());
+        err.setMessage(message);
+        err.setPath(request.getRequestURI());
+
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), err);
+    }
+
+    /**
+     * Request whose body is run through a SHA-256 as it's read; the hash also covers method, path and query
+     */
+    private static final class HashingRequest extends HttpServletRequestWrapper {
+
+        private final MessageDigest digest;
+        private DigestInputStream in;
+        private BufferedReader reader;
+
+        HashingRequest(HttpServletRequest request) {
+            super(request);
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException("SHA-256 is unavailable", ex);
+            }
+            String target = request.getMethod() + " " + request.getRequestURI() + "?" + Objects.toString(request.getQueryString(), "");
+            digest.update(target.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            ServletInputStream raw = super.getInputStream();
+            if (in == null) in = new DigestInputStream(raw, digest);
+
+            return new ServletInputStream() {
+                @Override public boolean isFinished() { return raw.isFinished(); }
+                @Override public boolean isReady() { return raw.isReady(); }
+                @Override public void setReadListener(ReadListener listener) { raw.setReadListener(listener); }
+                @Override public int read() throws IOException { return in.read(); }
+                @Override public int read(byte[] b, int off, int len) throws IOException { return in.read(b, off, len); }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (reader == null) {
+                Charset cs = getCharacterEncoding() == null ? StandardCharsets.UTF_8 : Charset.forName(getCharacterEncoding());
+                reader = new BufferedReader(new InputStreamReader(getInputStream(), cs));
+            }
+            return reader;
+        }
+
+        /**
+         * Reads whatever of the body is left through the digest and returns the hash
+         */
+        String finishHash() throws IOException {
+            ServletInputStream rest = getInputStream();
+            byte[] buf = new byte[8192];
+            while (rest.read(buf, 0, buf.length) != -1) {
+                // only the digest wants these bytes
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.dante.expense.controller;
+
+import com.dante.expense.repository.ReadRouting;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Keeps a user's reads on data that includes their own writes when read-only transactions go to replicas
+ * Remembers when each X-User-Id's last mutating /api request finished; that user's later requests only read from
+ * replicas that have replayed past it, or from the primary. A write is forgotten after max-lag, by which time every
+ * replica still getting reads has replayed it. Write times are kept per instance, so this holds for clients that
+ * stay on one instance
+ *
+ * @invariant lastWrites != NULL
+ */
+@Component
+@ConditionalOnProperty(name = "expense.replicas.enabled", havingValue = "true")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private static final Set<String> METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+
+    private static final long MAX_USERS = 100_000;
+
+    // X-User-Id -> System.nanoTime() when their last mutating request finished
+    private final Cache<String, Long> lastWrites;
+
+    /**
+     * @param maxLag how far behind a replica may be and still get reads
+     *
+     * @pre maxLag > 0
+     *
+     * @post no write is remembered
+     */
+    public ReadYourWritesFilter(@Value("${expense.replicas.max-lag:PT5S}") Duration maxLag) {
+        this.lastWrites = Caffeine.newBuilder()
+                .expireAfterWrite(maxLag)
+                .maximumSize(MAX_USERS)
+                .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader("X-User-Id") == null || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String user = request.getHeader("X-User-Id");
+        Long lastWrite = lastWrites.getIfPresent(user);
+        if (lastWrite != null) ReadRouting.requireReplayedSince(lastWrite);
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadRouting.clear();
+            // after the request's transactions committed, so a replica past this time has them
+            if (METHODS.contains(request.getMethod())) lastWrites.put(user, System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.dante.expense.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Request body for applying one transition to many expenses at once
+ *
+ * @invariant expenseIds != NULL AND 0 < expenseIds.size() <= MAX_IDS
+ * @invariant comment = NULL OR comment.length() <= 500
+ */
+public record BulkTransitionRequest(
+        @NotEmpty @Size(max = BulkTransitionRequest.MAX_IDS) List<@NotNull Long> expenseIds,
+        @Size(max = 500) String comment
+) {
+    /** Largest batch accepted in one call */
+    public static final int MAX_IDS = 1000;
+}
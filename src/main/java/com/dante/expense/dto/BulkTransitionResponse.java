@@ -0,0 +1,11 @@
+package com.dante.expense.dto;
+
+import java.util.List;
+
+/**
+ * Response for a bulk transition, one result per requested id in request order
+ *
+ * @invariant results != NULL
+ * @invariant succeeded + failed = results.size()
+ */
+public record BulkTransitionResponse(int succeeded, int failed, List<BulkTransitionResult> results) {}
@@ -0,0 +1,27 @@
+package com.dante.expense.dto;
+
+import com.dante.expense.entity.ExpenseStatus;
+
+/**
+ * Outcome of one expense within a bulk transition
+ *
+ * @invariant expenseId != NULL
+ * @invariant outcome != NULL
+ * @invariant status = NULL IFF outcome = NOT_FOUND
+ */
+public record BulkTransitionResult(Long expenseId, Outcome outcome, ExpenseStatus status, String message) {
+
+    /**
+     * Per-item result code
+     */
+    public enum Outcome {
+        /** transition applied, status is the new status */
+        OK,
+        /** no expense with that id */
+        NOT_FOUND,
+        /** expense wasn't in the status the transition starts from, status is left untouched */
+        INVALID_STATE,
+        /** expense was changed by a concurrent request while the transition ran, status is the one it was seen in */
+        CONFLICT
+    }
+}
@@ -16,10 +16,23 @@ import java.time.LocalDate;
  * @invariant expenseDate != NULL
  */
 public class CreateExpenseRequest {
+    @NotNull
+    @Positive
+    @Digits(integer = 10, fraction = 2)
     private BigDecimal amount;
+
+    @NotNull
+    @Size(min = 3, max = 3)
     private String currency;
+
+    @NotNull
     private ExpenseCategory category;
+
+    @NotBlank
+    @Size(max = 500)
     private String description;
+
+    @NotNull
     private LocalDate expenseDate;
 
     /**
@@ -0,0 +1,22 @@
+package com.dante.expense.dto;
+
+import com.dante.expense.entity.ExpenseActionType;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Flat view of one audit row, with the actor's name resolved
+ *
+ * @invariant id != NULL AND expenseId != NULL
+ * @invariant actorUserId = NULL IFF actorName = NULL IFF the action was taken by the system (ESCALATE)
+ * @invariant actionType != NULL AND timestamp != NULL
+ */
+public record ExpenseActionResponse(
+        Long id,
+        Long expenseId,
+        Long actorUserId,
+        String actorName,
+        ExpenseActionType actionType,
+        String comment,
+        OffsetDateTime timestamp
+) {}
@@ -0,0 +1,82 @@
+package com.dante.expense.dto;
+
+import com.dante.expense.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+
+/**
+ * Keyset position within an expense listing, the (createdAt, id) of the last row a client has seen.
+ * Travels over the wire as an opaque url-safe token so clients never build one by hand.
+ *
+ * @invariant createdAt != NULL
+ * @invariant id != NULL AND id >= 0
+ */
+public record ExpenseCursor(OffsetDateTime createdAt, Long id) {
+
+    /**
+     * Builds the cursor pointing just past the given row
+     *
+     * @param r the last response on a page
+     *
+     * @return cursor for r
+     *
+     * @pre r != NULL AND r.createdAt != NULL AND r.id != NULL
+     *
+     * @post return.createdAt = r.createdAt AND return.id = r.id
+     */
+    public static ExpenseCursor of(ExpenseResponse r) {
+        return new ExpenseCursor(r.getCreatedAt(), r.getId());
+    }
+
+    /**
+     * Encodes this cursor as an opaque token
+     * createdAt is kept to microseconds, the precision postgres stores it at
+     *
+     * @return url-safe token
+     *
+     * @pre none
+     *
+     * @post decode(return).equals(this) up to microsecond precision
+     */
+    public String encode() {
+        long micros = ChronoUnit.MICROS.between(Instant.EPOCH, createdAt.toInstant());
+        String raw = micros + ":" + id;
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decodes a token produced by encode()
+     *
+     * @param token the token sent by the client
+     *
+     * @return the decoded cursor
+     *
+     * @pre token != NULL
+     *
+     * @post return != NULL
+     *
+     * @throws BadRequestException if token is malformed
+     */
+    public static ExpenseCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            int sep = raw.indexOf(':');
+
+            long micros = Long.parseLong(raw.substring(0, sep));
+            long id = Long.parseLong(raw.substring(sep + 1));
+
+            if (id < 0) throw new IllegalArgumentException();
+
+            Instant at = Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+            return new ExpenseCursor(OffsetDateTime.ofInstant(at, ZoneOffset.UTC), id);
+        } catch (RuntimeException ex) {
+            throw new BadRequestException("Invalid cursor: " + token);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.dante.expense.dto;
+
+import com.dante.expense.entity.ExpenseActionType;
+import com.dante.expense.entity.ExpenseStatus;
+
+import java.time.OffsetDateTime;
+
+/**
+ * One committed workflow action, as pushed to event stream subscribers
+ *
+ * @invariant expenseId != NULL AND ownerId != NULL
+ * @invariant actorUserId = NULL IFF action = ESCALATE (raised by the SLA scheduler, not a user)
+ * @invariant action != NULL AND status != NULL AND timestamp != NULL
+ * @invariant from = NULL IFF action = SUBMIT
+ */
+public record ExpenseEvent(
+        Long expenseId,
+        Long ownerId,
+        Long actorUserId,
+        ExpenseActionType action,
+        ExpenseStatus from,
+        ExpenseStatus status,
+        String comment,
+        OffsetDateTime timestamp
+) {}
@@ -0,0 +1,16 @@
+package com.dante.expense.dto;
+
+/**
+ * Which events an event stream subscriber receives
+ */
+public enum ExpenseEventScope {
+
+    /** Every action on the subscriber's own expenses */
+    OWN,
+
+    /** Expenses entering or leaving SUBMITTED, the manager approval queue; MANAGER only */
+    APPROVALS,
+
+    /** Expenses entering or leaving APPROVED, the finance reimbursement queue; FINANCE only */
+    REIMBURSEMENTS
+}
@@ -0,0 +1,36 @@
+package com.dante.expense.dto;
+
+import com.dante.expense.entity.ExpenseStatus;
+import com.dante.expense.exception.BadRequestException;
+
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Filters for the ledger CSV export, a NULL field means "don't filter on it"
+ *
+ * @invariant status != NULL
+ * @invariant currency = NULL OR currency matches [A-Z]{3}
+ * @invariant from = NULL OR to = NULL OR !from.isAfter(to)
+ */
+public record ExpenseExportFilter(ExpenseStatus status, LocalDate from, LocalDate to, String currency) {
+
+    private static final Pattern CURRENCY = Pattern.compile("[A-Z]{3}");
+
+    /**
+     * Validates and normalizes the filter, currency is upper-cased
+     *
+     * @throws BadRequestException if status is NULL, currency isn't a 3-letter code or from is after to
+     */
+    public ExpenseExportFilter {
+        if (status == null) throw new BadRequestException("status is required");
+
+        if (currency != null) {
+            currency = currency.toUpperCase(Locale.ROOT);
+            if (!CURRENCY.matcher(currency).matches()) throw new BadRequestException("currency must be a 3-letter code");
+        }
+
+        if (from != null && to != null && from.isAfter(to)) throw new BadRequestException("from must not be after to");
+    }
+}
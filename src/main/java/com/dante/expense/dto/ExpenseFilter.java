@@ -0,0 +1,19 @@
+package com.dante.expense.dto;
+
+import com.dante.expense.entity.ExpenseCategory;
+import com.dante.expense.entity.ExpenseStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Optional filters for expense listings, a NULL field means "don't filter on it"
+ *
+ * @invariant from = NULL OR to = NULL OR !from.isAfter(to)
+ */
+public record ExpenseFilter(
+        Long userId,
+        ExpenseStatus status,
+        ExpenseCategory category,
+        LocalDate from,
+        LocalDate to
+) {}
@@ -0,0 +1,40 @@
+package com.dante.expense.dto;
+
+import com.dante.expense.entity.ExpenseCategory;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * One line of a bulk expense import, a CreateExpenseRequest plus the owning user
+ *
+ * @invariant toRequest() is validated against the CreateExpenseRequest rules before import
+ */
+public record ExpenseImportRow(
+        Long userId,
+        BigDecimal amount,
+        String currency,
+        ExpenseCategory category,
+        String description,
+        LocalDate expenseDate
+) {
+
+    /**
+     * @return the create request carried by this row
+     *
+     * @pre none
+     *
+     * @post every field of return = the matching field of this
+     */
+    public CreateExpenseRequest toRequest() {
+        CreateExpenseRequest req = new CreateExpenseRequest();
+
+        req.setAmount(amount);
+        req.setCurrency(currency);
+        req.setCategory(category);
+        req.setDescription(description);
+        req.setExpenseDate(expenseDate);
+
+        return req;
+    }
+}
@@ -0,0 +1,11 @@
+package com.dante.expense.dto;
+
+import java.util.List;
+
+/**
+ * One page of an expense listing
+ *
+ * @invariant items != NULL
+ * @invariant nextCursor = NULL IFF there are no more rows after items
+ */
+public record ExpensePage(List<ExpenseResponse> items, String nextCursor) {}
@@ -14,6 +14,7 @@ import java.time.OffsetDateTime;
  * @invariant userId != NULL and userId >= 0
  * @invariant amount != NULL AND amount > 0
  * @invariant currency !- NULL AND amount > 0
+ * @invariant baseAmount = NULL OR baseAmount >= 0, NULL while no FX rate was known for currency on expenseDate
  * @invariant category != NULL
  * @invariant description != NULL AND description.length() <= 500
  * @invariant expenseDate != NULL
@@ -25,6 +26,7 @@ public class ExpenseResponse {
     private Long id;
     private Long userId;
     private BigDecimal amount;
+    private BigDecimal baseAmount;
     private String currency;
     private ExpenseCategory category;
     private String description;
@@ -33,6 +35,39 @@ public class ExpenseResponse {
     private OffsetDateTime createdAt;
     private OffsetDateTime updatedAt;
 
+    /**
+     * Default constructor, fields are filled through setters
+     *
+     * @pre none
+     *
+     * @post ExpenseResponse obj created
+     */
+    public ExpenseResponse() {}
+
+    /**
+     * All-fields constructor, used as a JPQL constructor projection so list reads
+     * go straight from columns to the DTO without hydrating Expense entities
+     *
+     * @pre arguments satisfy the class invariants
+     *
+     * @post every field = the matching argument
+     */
+    public ExpenseResponse(Long id, Long userId, BigDecimal amount, BigDecimal baseAmount, String currency,
+                           ExpenseCategory category, String description, LocalDate expenseDate, ExpenseStatus status,
+                           OffsetDateTime createdAt, OffsetDateTime updatedAt) {
+        this.id = id;
+        this.userId = userId;
+        this.amount = amount;
+        this.baseAmount = baseAmount;
+        this.currency = currency;
+        this.category = category;
+        this.description = description;
+        this.expenseDate = expenseDate;
+        this.status = status;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
     public OffsetDateTime getUpdatedAt() {
         return updatedAt;
     }
@@ -97,6 +132,14 @@ public class ExpenseResponse {
         this.amount = amount;
     }
 
+    public BigDecimal getBaseAmount() {
+        return baseAmount;
+    }
+
+    public void setBaseAmount(BigDecimal baseAmount) {
+        this.baseAmount = baseAmount;
+    }
+
     public Long getUserId() {
         return userId;
     }
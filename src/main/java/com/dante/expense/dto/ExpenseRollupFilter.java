@@ -0,0 +1,55 @@
+package com.dante.expense.dto;
+
+import com.dante.expense.entity.ExpenseCategory;
+import com.dante.expense.entity.ExpenseStatus;
+import com.dante.expense.exception.BadRequestException;
+
+import java.time.YearMonth;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Filters and grouping for the spend summary, a NULL filter field means "don't filter on it"
+ * Amounts in different currencies are never added up, so currency is always a grouping dimension
+ *
+ * @invariant groupBy != NULL
+ * @invariant currency = NULL OR currency matches [A-Z]{3}
+ * @invariant from = NULL OR to = NULL OR !from.isAfter(to)
+ */
+public record ExpenseRollupFilter(Long userId, ExpenseCategory category, String currency, ExpenseStatus status,
+                                  YearMonth from, YearMonth to, Set<Dimension> groupBy) {
+
+    /**
+     * Dimensions a summary can be broken down by, on top of currency
+     */
+    public enum Dimension { USER, MONTH, CATEGORY, STATUS }
+
+    private static final Pattern CURRENCY = Pattern.compile("[A-Z]{3}");
+
+    /**
+     * Validates and normalizes the filter, currency is upper-cased and an empty groupBy means every dimension
+     *
+     * @throws BadRequestException if currency isn't a 3-letter code or from is after to
+     */
+    public ExpenseRollupFilter {
+        if (currency != null) {
+            currency = currency.toUpperCase(Locale.ROOT);
+            if (!CURRENCY.matcher(currency).matches()) throw new BadRequestException("currency must be a 3-letter code");
+        }
+
+        if (from != null && to != null && from.isAfter(to)) throw new BadRequestException("from must not be after to");
+
+        groupBy = (groupBy == null || groupBy.isEmpty()) ? EnumSet.allOf(Dimension.class) : EnumSet.copyOf(groupBy);
+    }
+
+    /**
+     * @param userId the user to narrow to
+     *
+     * @return this filter with userId replaced
+     */
+    public ExpenseRollupFilter withUserId(Long userId) {
+        return new ExpenseRollupFilter(userId, category, currency, status, from, to, groupBy);
+    }
+}
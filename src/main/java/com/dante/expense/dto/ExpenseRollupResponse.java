@@ -0,0 +1,17 @@
+package com.dante.expense.dto;
+
+import com.dante.expense.entity.ExpenseCategory;
+import com.dante.expense.entity.ExpenseStatus;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+
+/**
+ * One group of the spend summary; dimensions the summary isn't grouped by are NULL
+ * baseTotal is the group's total in the FX base currency, so it can be added up across currencies;
+ * expenses still waiting for a rate aren't in it yet
+ *
+ * @invariant currency != NULL AND total != NULL AND baseTotal != NULL AND count > 0
+ */
+public record ExpenseRollupResponse(Long userId, YearMonth month, ExpenseCategory category, String currency,
+                                    ExpenseStatus status, long count, BigDecimal total, BigDecimal baseTotal) {}
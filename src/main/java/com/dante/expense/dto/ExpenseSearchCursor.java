@@ -0,0 +1,84 @@
+package com.dante.expense.dto;
+
+import com.dante.expense.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+
+/**
+ * Keyset position within search results: the score, createdAt and id of the last row a client has seen,
+ * the time the first page was read and, for RANK, which rank window that row came from. RANK pages continue
+ * after (score, id) within the window, among the rows that existed at asOf, RECENT pages after (createdAt, id).
+ * Travels as an opaque url-safe token; the score keeps its exact float bits so the next page starts
+ * exactly where the last one stopped.
+ *
+ * @invariant createdAt != NULL AND asOf != NULL
+ * @invariant id != NULL AND id >= 0
+ * @invariant window = NULL for RECENT and for the first RANK window, else the previous window's oldest row
+ */
+public record ExpenseSearchCursor(float score, OffsetDateTime createdAt, Long id, OffsetDateTime asOf, ExpenseCursor window) {
+
+    private static final String PREFIX = "s";
+
+    /**
+     * Encodes this cursor as an opaque token, timestamps kept to microseconds
+     *
+     * @return url-safe token
+     *
+     * @pre none
+     *
+     * @post decode(return).equals(this) up to microsecond precision
+     */
+    public String encode() {
+        String raw = PREFIX + Float.floatToIntBits(score) + ":" + micros(createdAt) + ":" + id + ":" + micros(asOf)
+                + (window == null ? "" : ":" + micros(window.createdAt()) + ":" + window.id());
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decodes a token produced by encode()
+     * Tokens without a window, encoded before RANK searches had windows, decode to the first window
+     *
+     * @param token the token sent by the client
+     *
+     * @return the decoded cursor
+     *
+     * @pre token != NULL
+     *
+     * @post return != NULL
+     *
+     * @throws BadRequestException if token is malformed, listing cursors included
+     */
+    public static ExpenseSearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            if (!raw.startsWith(PREFIX)) throw new IllegalArgumentException();
+
+            String[] parts = raw.substring(PREFIX.length()).split(":", -1);
+            if (parts.length != 4 && parts.length != 6) throw new IllegalArgumentException();
+
+            float score = Float.intBitsToFloat(Integer.parseInt(parts[0]));
+            long id = Long.parseLong(parts[2]);
+            ExpenseCursor window = parts.length == 6 ? new ExpenseCursor(fromMicros(parts[4]), Long.parseLong(parts[5])) : null;
+
+            if (id < 0 || Float.isNaN(score) || (window != null && window.id() < 0)) throw new IllegalArgumentException();
+
+            return new ExpenseSearchCursor(score, fromMicros(parts[1]), id, fromMicros(parts[3]), window);
+        } catch (RuntimeException ex) {
+            throw new BadRequestException("Invalid cursor: " + token);
+        }
+    }
+
+    private static long micros(OffsetDateTime t) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, t.toInstant());
+    }
+
+    private static OffsetDateTime fromMicros(String micros) {
+        return OffsetDateTime.ofInstant(Instant.EPOCH.plus(Long.parseLong(micros), ChronoUnit.MICROS), ZoneOffset.UTC);
+    }
+}
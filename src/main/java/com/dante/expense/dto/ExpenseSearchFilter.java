@@ -0,0 +1,52 @@
+package com.dante.expense.dto;
+
+import com.dante.expense.entity.ExpenseCategory;
+import com.dante.expense.entity.ExpenseStatus;
+import com.dante.expense.exception.BadRequestException;
+
+import java.time.LocalDate;
+
+/**
+ * A full-text search over expense descriptions plus optional filters, a NULL filter field means "don't filter on it"
+ * query uses web search syntax: words are ANDed, "quoted phrases" match in order, or / -word are supported
+ *
+ * @invariant query != NULL AND 0 < query.length() <= MAX_QUERY_LENGTH
+ * @invariant from = NULL OR to = NULL OR !from.isAfter(to)
+ * @invariant sort != NULL
+ */
+public record ExpenseSearchFilter(String query, Long userId, ExpenseStatus status, ExpenseCategory category,
+                                  LocalDate from, LocalDate to, Sort sort) {
+
+    /** Longest accepted query */
+    public static final int MAX_QUERY_LENGTH = 200;
+
+    /**
+     * Result order: best match first, or newest first
+     * RANK is best match first within each window of ExpenseRepositoryCustom.RANK_WINDOW matches, newest window first
+     */
+    public enum Sort { RANK, RECENT }
+
+    /**
+     * Validates and normalizes the search, the query is trimmed and sort defaults to RANK
+     *
+     * @throws BadRequestException if the query is blank or too long, or from is after to
+     */
+    public ExpenseSearchFilter {
+        query = (query == null) ? "" : query.trim();
+        if (query.isEmpty()) throw new BadRequestException("q must not be blank");
+        if (query.length() > MAX_QUERY_LENGTH) throw new BadRequestException("q must be at most " + MAX_QUERY_LENGTH + " characters");
+
+        if (from != null && to != null && from.isAfter(to)) throw new BadRequestException("from must not be after to");
+
+        if (sort == null) sort = Sort.RANK;
+    }
+
+    /**
+     * @param userId the user to narrow to
+     *
+     * @return this search with userId replaced
+     */
+    public ExpenseSearchFilter withUserId(Long userId) {
+        return new ExpenseSearchFilter(query, userId, status, category, from, to, sort);
+    }
+}
@@ -0,0 +1,8 @@
+package com.dante.expense.dto;
+
+/**
+ * Outcome of loading FX rates
+ *
+ * @invariant rates >= 0 AND expensesConverted >= 0
+ */
+public record FxLoadReport(int rates, long expensesConverted) {}
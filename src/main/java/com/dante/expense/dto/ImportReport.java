@@ -0,0 +1,26 @@
+package com.dante.expense.dto;
+
+import java.util.List;
+
+/**
+ * Result of a bulk expense import
+ * Only the first MAX_REPORTED_ERRORS row errors are listed so the report stays small for any file size,
+ * failed always holds the full count
+ *
+ * @invariant rowsRead = imported + failed
+ * @invariant errors != NULL AND errors.size() <= MAX_REPORTED_ERRORS
+ * @invariant errorsTruncated IFF failed > errors.size()
+ */
+public record ImportReport(long rowsRead, long imported, long failed, List<RowError> errors, boolean errorsTruncated) {
+
+    /** Cap on listed row errors */
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    /**
+     * Why one input line wasn't imported
+     *
+     * @invariant line >= 1
+     * @invariant message != NULL
+     */
+    public record RowError(long line, String message) {}
+}
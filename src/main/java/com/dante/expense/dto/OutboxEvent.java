@@ -0,0 +1,21 @@
+package com.dante.expense.dto;
+
+import com.dante.expense.entity.ExpenseActionType;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.OffsetDateTime;
+
+/**
+ * One outbox row as handed to a sink, and as sinks write it
+ * eventId is unique and stable across redeliveries, consumers dedupe on it; events of one expense are delivered in
+ * eventId order
+ *
+ * @invariant eventId > 0 AND expenseId != NULL AND type != NULL AND createdAt != NULL AND event != NULL
+ */
+public record OutboxEvent(
+        long eventId,
+        Long expenseId,
+        ExpenseActionType type,
+        OffsetDateTime createdAt,
+        @JsonRawValue String event
+) {}
@@ -0,0 +1,8 @@
+package com.dante.expense.dto;
+
+/**
+ * Outcome of a full rollup rebuild
+ *
+ * @invariant stripes > 0 AND groups >= 0 AND millis >= 0
+ */
+public record RollupRebuildReport(int stripes, long groups, long millis) {}
@@ -13,6 +13,7 @@ import java.time.OffsetDateTime;
  * @invariant id >= 0
  * @invariant user != NULL
  * @invariant amount != NULL AND amount > 0
+ * @invariant baseAmount = NULL OR baseAmount >= 0
  * @invariant currency != NULL AND currency.length() = 3
  * @invariant category != NULL
  * @invariant description != NULL AND description.length() > 0 AND description.length <= 500
@@ -20,13 +21,27 @@ import java.time.OffsetDateTime;
  * @invariant status != NULL
  * @invariant createdAt != NULL
  * @invariant updatedAt != NULL
+ * @invariant escalatedAt = NULL OR escalatedAt >= createdAt
+ * @invariant idempotencyKey = NULL OR idempotencyKey.length() <= 100
+ *
+ * Listings page by keyset on (createdAt, id), the indexes below let those scans walk an index in sort order;
+ * idx_expenses_created serves description searches that aren't narrowed by user or status.
+ * The fingerprint and (user_id, amount, expense_date) indexes back the duplicate check on create.
+ * The SLA scan walks a partial index of the un-escalated SUBMITTED rows (schema-postgresql.sql)
  */
 @Entity
-@Table(name = "expenses")
+@Table(name = "expenses", indexes = {
+        @Index(name = "idx_expenses_user_created", columnList = "user_id, created_at, id"),
+        @Index(name = "idx_expenses_status_created", columnList = "status, created_at, id"),
+        @Index(name = "idx_expenses_created", columnList = "created_at, id"),
+        @Index(name = "idx_expenses_fingerprint", columnList = "fingerprint"),
+        @Index(name = "idx_expenses_user_amount_date", columnList = "user_id, amount, expense_date")
+})
 public class Expense {
     private Long id;
     private User user;
     private BigDecimal amount;
+    private BigDecimal baseAmount;
     private String currency;
     private ExpenseCategory category;
     private String description;
@@ -34,6 +49,10 @@ public class Expense {
     private ExpenseStatus status;
     private OffsetDateTime createdAt;
     private OffsetDateTime updatedAt;
+    private OffsetDateTime escalatedAt;
+    private Long version;
+    private String fingerprint;
+    private String idempotencyKey;
 
     /**
      * Default constructor
@@ -84,7 +103,8 @@ public class Expense {
      * @post getId = id
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "expenses_seq")
+    @SequenceGenerator(name = "expenses_seq", sequenceName = "expenses_seq", allocationSize = IdGeneration.ALLOCATION_SIZE)
     public Long getId() { return id; }
 
     /**
@@ -145,6 +165,76 @@ public class Expense {
      */
     public void setAmount(BigDecimal amount) { this.amount = amount; }
 
+    /**
+     * Gets the amount converted to the FX base currency (expense.fx.base-currency) at the rate of expenseDate
+     * Fixed once set, so totals across currencies sum a column instead of converting per row
+     *
+     * @return the base currency amount, NULL until a rate for currency on or before expenseDate is known
+     *
+     * @pre none
+     *
+     * @post getBaseAmount = baseAmount
+     */
+    @Column(name = "base_amount", precision = 19, scale = 2)
+    public BigDecimal getBaseAmount() { return baseAmount; }
+
+    /**
+     * Sets the base currency amount
+     *
+     * @param baseAmount converted amount, NULL if no rate is known yet
+     *
+     * @pre baseAmount = NULL OR baseAmount >= 0
+     *
+     * @post this.baseAmount = baseAmount
+     */
+    public void setBaseAmount(BigDecimal baseAmount) { this.baseAmount = baseAmount; }
+
+    /**
+     * Retrieves the duplicate-detection fingerprint
+     *
+     * @return hex digest of owner, amount, currency, date and normalized description, NULL for rows that predate it
+     *
+     * @pre none
+     *
+     * @post getFingerprint = fingerprint
+     */
+    @Column(length = 32)
+    public String getFingerprint() { return fingerprint; }
+
+    /**
+     * Sets the duplicate-detection fingerprint
+     *
+     * @param fingerprint digest from DuplicateExpenseDetector.fingerprint
+     *
+     * @pre none
+     *
+     * @post this.fingerprint = fingerprint
+     */
+    public void setFingerprint(String fingerprint) { this.fingerprint = fingerprint; }
+
+    /**
+     * Retrieves the client's Idempotency-Key for the request that created this expense
+     *
+     * @return the key, NULL if the client sent none; unique per user
+     *
+     * @pre none
+     *
+     * @post getIdempotencyKey = idempotencyKey
+     */
+    @Column(name = "idempotency_key", length = 100)
+    public String getIdempotencyKey() { return idempotencyKey; }
+
+    /**
+     * Sets the client's Idempotency-Key
+     *
+     * @param idempotencyKey the key, NULL for none
+     *
+     * @pre idempotencyKey = NULL OR idempotencyKey.length() <= 100
+     *
+     * @post this.idempotencyKey = idempotencyKey
+     */
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+
     /**
      * Retrieve the currency type
      *
@@ -316,5 +406,57 @@ public class Expense {
         this.updatedAt = updatedAt;
     }
 
+    /**
+     * Retrieves when the expense breached its approval SLA and was escalated
+     *
+     * @return timestamp of the escalation, NULL if it never was
+     *
+     * @pre none
+     *
+     * @post getEscalatedAt = escalatedAt
+     */
+    @Column(name = "escalated_at")
+    public OffsetDateTime getEscalatedAt() {
+        return escalatedAt;
+    }
 
+    /**
+     * Sets escalatedAt, usually set by the SLA scan
+     *
+     * @param escalatedAt the timestamp, NULL to clear
+     *
+     * @pre none
+     *
+     * @post this.escalatedAt = escalatedAt
+     */
+    public void setEscalatedAt(OffsetDateTime escalatedAt) {
+        this.escalatedAt = escalatedAt;
+    }
+
+    /**
+     * Retrieves the optimistic lock version, bumped by every update
+     *
+     * @return version of the row this obj was read from
+     *
+     * @pre none
+     *
+     * @post getVersion = version
+     */
+    @Version
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version, only Hibernate and tests should call this
+     *
+     * @param version the version
+     *
+     * @pre none
+     *
+     * @post this.version = version
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -11,24 +11,31 @@ import java.time.OffsetDateTime;
  *
  * @invariant id >= 0
  * @invariant expense != NULL
- * @invariant actor != NULL
+ * @invariant actor != NULL OR actionType = ESCALATE (system actions have no actor)
  * @invariant actionType != NULL
  * @invariant timestamp != NULL
+ *
+ * History reads are by expense, oldest first, idx_expense_actions_expense_ts serves them in index order
+ * On Postgres the table is range-partitioned by month on timestamp (primary key (id, timestamp)),
+ * see ExpenseActionPartitionMaintenance
  */
 @Entity
-@Table(name = "expense_actions")
+@Table(name = "expense_actions", indexes = {
+        @Index(name = "idx_expense_actions_expense_ts", columnList = "expense_id, timestamp")
+})
 public class ExpenseAction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "expense_actions_seq")
+    @SequenceGenerator(name = "expense_actions_seq", sequenceName = "expense_actions_seq", allocationSize = IdGeneration.ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "expense_id")
     private Expense expense;
 
-    @ManyToOne(optional = false, fetch = FetchType.LAZY)
-    @JoinColumn(name = "actor_user_id", nullable = false)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "actor_user_id")
     private User actor;
 
     @Enumerated(EnumType.ORDINAL)
@@ -51,7 +58,7 @@ public class ExpenseAction {
     public ExpenseAction() {}
 
     /**
-     * autopopulates the timestamp on insert
+     * autopopulates the timestamp on insert, unless the writer already captured it
      *
      * @pre none
      *
@@ -59,7 +66,7 @@ public class ExpenseAction {
      */
     @PrePersist
     void onCreate() {
-        timestamp = OffsetDateTime.now();
+        if (timestamp == null) timestamp = OffsetDateTime.now();
     }
 
     /**
@@ -109,7 +116,7 @@ public class ExpenseAction {
 
     /**
      *
-     * @return user performing the action
+     * @return user performing the action, NULL for a system action
      *
      * @pre none
      *
@@ -122,9 +129,9 @@ public class ExpenseAction {
     /**
      * Sets the user performing the action
      *
-     * @param actor user who performed action
+     * @param actor user who performed action, NULL for a system action
      *
-     * @pre actor != NULL
+     * @pre none
      *
      * @post this.actor = actor
      */
@@ -2,7 +2,8 @@ package com.dante.expense.entity;
 
 /**
  * Audit log possible actions for an expense
+ * Stored by ordinal, so new values go at the end. ESCALATE is recorded by ExpenseEscalationService, without an actor
  */
 public enum ExpenseActionType {
-    SUBMIT, APPROVE, REJECT, REIMBURSE
+    SUBMIT, APPROVE, REJECT, REIMBURSE, ESCALATE
 }
@@ -0,0 +1,16 @@
+package com.dante.expense.entity;
+
+/**
+ * Shared id generation settings for entity sequences
+ *
+ * Ids come from per-table sequences that step by ALLOCATION_SIZE; with the pooled-lo optimizer
+ * one nextval hands the app a block of ALLOCATION_SIZE ids, so Hibernate knows ids before insert
+ * and can batch INSERTs. schema-postgresql.sql relies on the same step when it realigns sequences.
+ */
+final class IdGeneration {
+
+    /** ids reserved per sequence call, must equal the sequences' INCREMENT BY */
+    static final int ALLOCATION_SIZE = 50;
+
+    private IdGeneration() {}
+}
@@ -1,8 +1,11 @@
 package com.dante.expense.exception;
 
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
@@ -43,9 +46,9 @@ public class GlobalExceptionHandler {
     }
 
     /**
-     * Handles validation errors by returning HTTP 400 with an Api Error
+     * Handles BadRequestException by returning HTTP 400 with an Api Error
      *
-     * @param ex validation exception
+     * @param ex the thrown BadRequestException
      * @param req http request
      *
      * @return ResponseEntity<ApiError> with status 400
@@ -58,7 +61,7 @@ public class GlobalExceptionHandler {
      * @post return.body.path = req.getRequestURI()
      */
     @ExceptionHandler(BadRequestException.class)
-    public ResponseEntity<ApiError> badRequest(MethodArgumentNotValidException ex, HttpServletRequest req) {
+    public ResponseEntity<ApiError> badRequest(BadRequestException ex, HttpServletRequest req) {
         ApiError err = new ApiError();
         err.setStatus(BAD_REQUEST.value());
         err.setError("Bad Request");
@@ -93,4 +96,83 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(FORBIDDEN).body(err);
     }
 
+    /**
+     * Handles ConflictException and optimistic lock failures by returning HTTP 409 with an ApiError body
+     *
+     * @param ex the thrown exception
+     * @param req http request
+     *
+     * @return ResponseEntity<ApiError> with status 409
+     *
+     * @pre ex != NULL AND req != NULL
+     *
+     * @post return != NULL
+     * @post return.status = 409
+     * @post return.body.status = 409
+     * @post return.body.path = req.getRequestURI()
+     */
+    @ExceptionHandler({ConflictException.class, OptimisticLockingFailureException.class})
+    public ResponseEntity<ApiError> conflict(RuntimeException ex, HttpServletRequest req) {
+        ApiError err = new ApiError();
+        err.setStatus(CONFLICT.value());
+        err.setError("Conflict");
+        err.setMessage(ex instanceof ConflictException ? ex.getMessage() : "The resource was modified concurrently, reload and retry.");
+        err.setPath(req.getRequestURI());
+
+        return ResponseEntity.status(CONFLICT).body(err);
+    }
+
+    /**
+     * Handles running out of database connections by returning HTTP 503 with an ApiError body and Retry-After
+     * The pool's connection-timeout decides how long a request waits for a connection before it lands here
+     *
+     * @param ex the thrown exception
+     * @param req http request
+     *
+     * @return ResponseEntity<ApiError> with status 503
+     *
+     * @pre ex != NULL AND req != NULL
+     *
+     * @post return != NULL
+     * @post return.status = 503 AND return has a Retry-After header
+     * @post return.body.status = 503
+     * @post return.body.path = req.getRequestURI()
+     */
+    @ExceptionHandler({CannotCreateTransactionException.class, CannotGetJdbcConnectionException.class})
+    public ResponseEntity<ApiError> unavailable(RuntimeException ex, HttpServletRequest req) {
+        ApiError err = new ApiError();
+        err.setStatus(SERVICE_UNAVAILABLE.value());
+        err.setError("Service Unavailable");
+        err.setMessage("No database connection became available in time, retry shortly.");
+        err.setPath(req.getRequestURI());
+
+        return ResponseEntity.status(SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(err);
+    }
+
+    /**
+     * Handles ServiceUnavailableException, a limit on concurrent work being hit, by returning HTTP 503 with an
+     * ApiError body and Retry-After
+     *
+     * @param ex the thrown ServiceUnavailableException
+     * @param req http request
+     *
+     * @return ResponseEntity<ApiError> with status 503
+     *
+     * @pre ex != NULL AND req != NULL
+     *
+     * @post return != NULL
+     * @post return.status = 503 AND return has a Retry-After header
+     * @post return.body.status = 503
+     * @post return.body.path = req.getRequestURI()
+     */
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ApiError> overloaded(ServiceUnavailableException ex, HttpServletRequest req) {
+        ApiError err = new ApiError();
+        err.setStatus(SERVICE_UNAVAILABLE.value());
+        err.setError("Service Unavailable");
+        err.setMessage(ex.getMessage());
+        err.setPath(req.getRequestURI());
+
+        return ResponseEntity.status(SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(err);
+    }
 }
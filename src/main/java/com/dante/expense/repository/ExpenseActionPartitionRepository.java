@@ -0,0 +1,237 @@
+package com.dante.expense.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Postgres DDL for the monthly range partitions of expense_actions on "timestamp"
+ *
+ * Partition DDL can't take bind parameters, so names and bounds are inlined; callers only pass names built from
+ * a YearMonth, bounds that are OffsetDateTimes and an archive schema checked against IDENTIFIER.
+ * Every method but prepareConversion expects to run inside the caller's transaction.
+ *
+ * @invariant jdbc != NULL
+ */
+@Repository
+public class ExpenseActionPartitionRepository {
+
+    /** The table Hibernate maps ExpenseAction to, partitioned or not */
+    public static final String TABLE = "expense_actions";
+
+    /** Name the pre-partitioning table keeps once it's attached as the first partition */
+    public static final String LEGACY = "expense_actions_legacy";
+
+    /** Unique (id, timestamp) index built on the plain table ahead of conversion, it becomes the legacy primary key */
+    public static final String LEGACY_KEY = TABLE + "_id_ts_key";
+
+    /** CHECK on the plain table proving every row fits the legacy partition, so attaching it needs no scan */
+    public static final String LEGACY_BOUND = TABLE + "_legacy_bound";
+
+    /** How long the conversion waits for its exclusive lock before giving up, rather than queueing every writer behind it */
+    private static final String LOCK_TIMEOUT = "5s";
+
+    /** Unquoted lower-case SQL identifier */
+    public static final String IDENTIFIER = "[a-z_][a-z0-9_]{0,62}";
+
+    /**
+     * One attached partition
+     *
+     * @invariant name != NULL AND to != NULL
+     * @invariant from = NULL IFF the partition starts at MINVALUE
+     */
+    public record Partition(String name, OffsetDateTime from, OffsetDateTime to) {}
+
+    private final JdbcTemplate jdbc;
+
+    /**
+     * @param jdbc template over the application datasource
+     *
+     * @pre jdbc != NULL
+     *
+     * @post this.jdbc = jdbc
+     */
+    public ExpenseActionPartitionRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Takes a transaction scoped advisory lock so only one instance runs maintenance at a time
+     *
+     * @return true IFF the lock was free, it is held until the transaction ends
+     */
+    public boolean tryLock() {
+        return Boolean.TRUE.equals(jdbc.queryForObject("select pg_try_advisory_xact_lock(hashtext(?))", Boolean.class, TABLE));
+    }
+
+    /**
+     * @return true IFF expense_actions is a partitioned table
+     */
+    public boolean isPartitioned() {
+        return "p".equals(jdbc.queryForObject("select relkind::text from pg_class where oid = to_regclass(?)", String.class, TABLE));
+    }
+
+    /**
+     * Does the slow part of convertToPartitioned while writes carry on: builds the unique (id, timestamp) index
+     * with CREATE INDEX CONCURRENTLY and proves every row lies before legacyUpper with a CHECK added NOT VALID and
+     * then validated, which only takes a lock that lets inserts and updates through.
+     * Runs in autocommit on its own connection, concurrent index builds can't run in a transaction, under a session
+     * advisory lock that excludes tryLock. An invalid index left by a failed build is dropped and rebuilt, the CHECK
+     * is re-added with the current bound. Until the conversion commits, inserts at or after legacyUpper fail, so
+     * call it right before convertToPartitioned and dropLegacyBound if that fails
+     *
+     * @param legacyUpper exclusive upper bound of the legacy partition
+     *
+     * @return true IFF the lock was free and the table is prepared
+     *
+     * @pre legacyUpper != NULL AND legacyUpper is after every existing row's timestamp AND no transaction is active
+     *
+     * @post return IMPLIES LEGACY_KEY is a valid unique index AND LEGACY_BOUND is a validated CHECK on expense_actions
+     */
+    public boolean prepareConversion(OffsetDateTime legacyUpper) {
+        return Boolean.TRUE.equals(jdbc.execute((ConnectionCallback<Boolean>) con -> {
+            try (Statement st = con.createStatement()) {
+                try (ResultSet rs = st.executeQuery("select pg_try_advisory_lock(hashtext('" + TABLE + "'))")) {
+                    if (!rs.next() || !rs.getBoolean(1)) return false;
+                }
+
+                try {
+                    Boolean valid = null;
+                    try (ResultSet rs = st.executeQuery("select indisvalid from pg_index where indexrelid = to_regclass('"
+                            + LEGACY_KEY + "')")) {
+                        if (rs.next()) valid = rs.getBoolean(1);
+                    }
+                    if (Boolean.FALSE.equals(valid)) st.execute("drop index concurrently " + LEGACY_KEY);
+                    if (!Boolean.TRUE.equals(valid)) {
+                        st.execute("create unique index concurrently " + LEGACY_KEY + " on " + TABLE + " (id, \"timestamp\")");
+                    }
+
+                    st.execute("alter table " + TABLE + " drop constraint if exists " + LEGACY_BOUND);
+                    st.execute("alter table " + TABLE + " add constraint " + LEGACY_BOUND
+                            + " check (\"timestamp\" < " + literal(legacyUpper) + ") not valid");
+                    st.execute("alter table " + TABLE + " validate constraint " + LEGACY_BOUND);
+                    return true;
+                } finally {
+                    st.execute("select pg_advisory_unlock(hashtext('" + TABLE + "'))");
+                }
+            }
+        }));
+    }
+
+    /**
+     * Removes the CHECK prepareConversion added, for when the conversion didn't go through, so inserts past its
+     * bound don't start failing
+     *
+     * @pre !isPartitioned()
+     *
+     * @post expense_actions has no LEGACY_BOUND constraint
+     */
+    public void dropLegacyBound() {
+        jdbc.execute("alter table " + TABLE + " drop constraint if exists " + LEGACY_BOUND);
+    }
+
+    /**
+     * Turns the plain table Hibernate created into a partitioned one without copying rows: the old table is
+     * renamed and attached as a single partition covering everything before legacyUpper. With the index and CHECK
+     * from prepareConversion in place, attaching neither builds an index nor scans the table, so the exclusive lock
+     * is held only for catalog changes; it's given up after LOCK_TIMEOUT rather than stall writers behind it.
+     * The new parent gets the old table's column defaults, CHECK and FOREIGN KEY constraints under the same
+     * names, so Hibernate's schema update recognises them and the old table's matching ones get attached.
+     *
+     * @param legacyUpper exclusive upper bound of the legacy partition, later rows go to monthly partitions
+     *
+     * @pre legacyUpper != NULL AND prepareConversion(legacyUpper) returned true
+     * @pre !isPartitioned()
+     *
+     * @post isPartitioned() AND partitions() = [LEGACY from MINVALUE to legacyUpper]
+     */
+    public void convertToPartitioned(OffsetDateTime legacyUpper) {
+        List<Map<String, Object>> constraints = jdbc.queryForList("""
+                select conname, pg_get_constraintdef(oid) as def
+                from pg_constraint
+                where conrelid = to_regclass(?) and contype in ('c', 'f') and conname <> ?
+                order by conname""", TABLE, LEGACY_BOUND);
+
+        jdbc.execute("set local lock_timeout = '" + LOCK_TIMEOUT + "'");
+        jdbc.execute("lock table " + TABLE + " in access exclusive mode");
+        jdbc.execute("alter table " + TABLE + " rename to " + LEGACY);
+        // a partition's primary key has to match the parent's (id, timestamp); the prebuilt index becomes it,
+        // attaching then adopts it instead of building one
+        jdbc.execute("alter table " + LEGACY + " drop constraint " + TABLE + "_pkey");
+        jdbc.execute("alter table " + LEGACY + " add constraint " + LEGACY + "_pkey primary key using index " + LEGACY_KEY);
+        jdbc.execute("alter index if exists idx_expense_actions_expense_ts rename to idx_expense_actions_legacy_expense_ts");
+
+        jdbc.execute("create table " + TABLE + " (like " + LEGACY + " including defaults) partition by range (\"timestamp\")");
+        jdbc.execute("alter table " + TABLE + " add constraint " + TABLE + "_pkey primary key (id, \"timestamp\")");
+        for (Map<String, Object> c : constraints) {
+            jdbc.execute("alter table " + TABLE + " add constraint " + c.get("conname") + " " + c.get("def"));
+        }
+        jdbc.execute("create index idx_expense_actions_expense_ts on " + TABLE + " (expense_id, \"timestamp\")");
+
+        jdbc.execute("alter table " + TABLE + " attach partition " + LEGACY
+                + " for values from (minvalue) to (" + literal(legacyUpper) + ")");
+        // the partition bound now says the same
+        jdbc.execute("alter table " + LEGACY + " drop constraint " + LEGACY_BOUND);
+    }
+
+    /**
+     * Attached partitions with their bounds, read back from the catalog
+     *
+     * @return partitions ordered by upper bound
+     *
+     * @pre isPartitioned()
+     *
+     * @post return != NULL
+     */
+    public List<Partition> partitions() {
+        return jdbc.query("""
+                select c.relname,
+                       (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'FROM \\(''([^'']+)''\\)'))[1]::timestamptz as lo,
+                       (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''([^'']+)''\\)'))[1]::timestamptz as hi
+                from pg_inherits i join pg_class c on c.oid = i.inhrelid
+                where i.inhparent = to_regclass(?)
+                order by hi""",
+                (rs, n) -> new Partition(rs.getString(1), rs.getObject(2, OffsetDateTime.class), rs.getObject(3, OffsetDateTime.class)),
+                TABLE);
+    }
+
+    /**
+     * @param name new partition's name
+     * @param from inclusive lower bound
+     * @param to exclusive upper bound
+     *
+     * @pre name matches IDENTIFIER AND from < to AND [from, to) overlaps no existing partition
+     *
+     * @post a partition name covering [from, to) is attached, with the parent's indexes and constraints
+     */
+    public void createPartition(String name, OffsetDateTime from, OffsetDateTime to) {
+        jdbc.execute("create table if not exists " + name + " partition of " + TABLE
+                + " for values from (" + literal(from) + ") to (" + literal(to) + ")");
+    }
+
+    /**
+     * Detaches a partition and moves it into the archive schema, where it stays queryable until dropped or dumped
+     *
+     * @param name partition to archive
+     * @param archiveSchema destination schema, created if missing
+     *
+     * @pre name is an attached partition AND archiveSchema matches IDENTIFIER
+     *
+     * @post name no longer is a partition of expense_actions AND archiveSchema.name holds its rows
+     */
+    public void detachAndArchive(String name, String archiveSchema) {
+        jdbc.execute("create schema if not exists " + archiveSchema);
+        jdbc.execute("alter table " + TABLE + " detach partition " + name);
+        jdbc.execute("alter table " + name + " set schema " + archiveSchema);
+    }
+
+    private static String literal(OffsetDateTime t) {
+        return "timestamptz '" + t + "'";
+    }
+}
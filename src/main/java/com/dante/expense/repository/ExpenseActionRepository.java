@@ -1,8 +1,11 @@
 package com.dante.expense.repository;
 
+import com.dante.expense.dto.ExpenseActionResponse;
 import com.dante.expense.entity.ExpenseAction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -13,16 +16,28 @@ import java.util.List;
 public interface ExpenseActionRepository extends JpaRepository<ExpenseAction, Long> {
 
     /**
+     * History of many expenses in one query, actor names joined in (NULL for system actions), projected straight into DTOs
+     * Walks idx_expense_actions_expense_ts once per id
+     * The earliest createdAt among the ids, less a day, bounds "timestamp" from below; the subquery is an init plan,
+     * which lets Postgres skip every older monthly partition at execution time. The day is slack, not a guarantee
+     * Postgres checks: createdAt and the action timestamps come from the clocks of whichever nodes wrote them, so
+     * an action recorded on a node running behind may predate its expense by that node's skew
      *
-     * @param expenseId id of the expense whos actions are requested
+     * @param expenseIds ids of the expenses whose actions are requested
      *
-     * @return list of actions for that expense oldest first
+     * @return actions of those expenses, grouped by expense id ascending, each group oldest first
      *
-     * @pre expenseId != NULL AND expenseId >= 0
+     * @pre expenseIds != NULL
      *
      * @post return != NULL
-     * @post for each action in return, action expense.id = expenseId
-     * @post return is ordered by oldest first
+     * @post for each action in return, action.expenseId in expenseIds
      */
-    List<ExpenseAction> findByExpense_IdOrderByTimestampAsc(Long expenseId);
+    @Query("""
+            select new com.dante.expense.dto.ExpenseActionResponse(
+                a.id, a.expense.id, u.id, u.name, a.actionType, a.comment, a.timestamp)
+            from ExpenseAction a left join a.actor u
+            where a.expense.id in :expenseIds
+              and a.timestamp >= (select min(e.createdAt) - 1 day from Expense e where e.id in :expenseIds)
+            order by a.expense.id asc, a.timestamp asc, a.id asc""")
+    List<ExpenseActionResponse> findHistories(Collection<Long> expenseIds);
 }
@@ -0,0 +1,154 @@
+package com.dante.expense.repository;
+
+import com.dante.expense.entity.ExpenseActionType;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Native SQL over expense_action_staging (table in schema-postgresql.sql)
+ *
+ * Audit rows are staged in the transaction that records the action and taken back out in the transaction that writes
+ * them to expense_actions. take deletes what it returns, so a row taken twice, by the writer's fast path and a replay
+ * or by two nodes, comes back only once: the second delete waits on the first and finds nothing
+ *
+ * @invariant jdbc != NULL
+ */
+@Repository
+public class ExpenseActionStagingRepository {
+
+    /**
+     * An audit row detached from any persistence context, captured when the action happened
+     *
+     * @invariant all fields but comment and actorUserId != NULL
+     */
+    public record StagedAction(Long id, Long expenseId, Long actorUserId, ExpenseActionType type, String comment,
+                               OffsetDateTime timestamp) {}
+
+    private static final String INSERT = """
+            insert into expense_action_staging (expense_id, actor_user_id, action_type, comment, action_at)
+            select * from unnest(?::bigint[], ?::bigint[], ?::varchar[], ?::varchar[], ?::text[]::timestamptz[])
+            returning id""";
+
+    private static final String TAKE = """
+            delete from expense_action_staging where id = any(?::bigint[])
+            returning id, expense_id, actor_user_id, action_type, comment, action_at""";
+
+    private static final RowMapper<StagedAction> ROW = (rs, i) -> new StagedAction(
+            rs.getLong(1),
+            rs.getLong(2),
+            rs.getObject(3, Long.class),
+            ExpenseActionType.valueOf(rs.getString(4)),
+            rs.getString(5),
+            rs.getObject(6, OffsetDateTime.class));
+
+    private final JdbcTemplate jdbc;
+
+    /**
+     * @param jdbc template over the application datasource
+     *
+     * @pre jdbc != NULL
+     *
+     * @post this.jdbc = jdbc
+     */
+    public ExpenseActionStagingRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Inserts rows in one statement, in the caller's transaction
+     *
+     * @param rows the rows, id is ignored
+     *
+     * @return the staged ids
+     *
+     * @pre rows != NULL
+     *
+     * @post one staged row per element of rows, return.size() = rows.size()
+     */
+    public List<Long> append(List<StagedAction> rows) {
+        if (rows.isEmpty()) return List.of();
+
+        int n = rows.size();
+        Object[] expenseIds = new Object[n];
+        Object[] actorIds = new Object[n];
+        Object[] types = new Object[n];
+        Object[] comments = new Object[n];
+        Object[] timestamps = new Object[n];
+        for (int i = 0; i < n; i++) {
+            StagedAction r = rows.get(i);
+            expenseIds[i] = r.expenseId();
+            actorIds[i] = r.actorUserId();
+            types[i] = r.type().name();
+            comments[i] = r.comment();
+            timestamps[i] = r.timestamp().toString();
+        }
+
+        return jdbc.execute((ConnectionCallback<List<Long>>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(INSERT)) {
+                ps.setArray(1, con.createArrayOf("bigint", expenseIds));
+                ps.setArray(2, con.createArrayOf("bigint", actorIds));
+                ps.setArray(3, con.createArrayOf("varchar", types));
+                ps.setArray(4, con.createArrayOf("varchar", comments));
+                ps.setArray(5, con.createArrayOf("text", timestamps));
+
+                List<Long> ids = new ArrayList<>(n);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) ids.add(rs.getLong(1));
+                }
+                return ids;
+            }
+        });
+    }
+
+    /**
+     * Deletes and returns the given rows, waiting for any other transaction taking them
+     *
+     * @param ids staged ids
+     *
+     * @return the rows that were still staged, id ascending
+     *
+     * @pre ids != NULL AND a transaction is active
+     *
+     * @post no row with an id in ids exists once the caller commits
+     */
+    public List<StagedAction> take(Collection<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        List<StagedAction> rows = jdbc.query(TAKE, ROW, array(ids));
+        rows.sort(Comparator.comparing(StagedAction::id));
+        return rows;
+    }
+
+    /**
+     * Pages through the staged ids, for replaying what a previous run left behind
+     *
+     * @param afterId exclusive lower bound, 0 for the first page
+     * @param limit max ids
+     *
+     * @return staged ids greater than afterId, ascending
+     *
+     * @pre limit > 0
+     *
+     * @post return.size() <= limit
+     */
+    public List<Long> idsAfter(long afterId, int limit) {
+        return jdbc.queryForList("select id from expense_action_staging where id > ? order by id limit ?",
+                Long.class, afterId, limit);
+    }
+
+    private static String array(Collection<Long> ids) {
+        StringJoiner s = new StringJoiner(",", "{", "}");
+        for (Long id : ids) s.add(id.toString());
+        return s.toString();
+    }
+}
@@ -0,0 +1,156 @@
+package com.dante.expense.repository;
+
+import com.dante.expense.dto.OutboxEvent;
+import com.dante.expense.entity.ExpenseActionType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Native SQL over expense_outbox (table in schema-postgresql.sql)
+ *
+ * A relay claims the oldest pending row of each expense with FOR UPDATE SKIP LOCKED and holds the lock until it
+ * deletes or reschedules the row, so relays on several nodes split the rows between them and none takes an expense's
+ * next row while an earlier one is pending or in flight. Rows of one expense get ids in commit order because their
+ * transactions all update that expense's row
+ *
+ * @invariant jdbc != NULL
+ */
+@Repository
+public class ExpenseOutboxRepository {
+
+    /**
+     * A row to insert
+     *
+     * @invariant all fields != NULL AND payload is a JSON document
+     */
+    public record NewEvent(Long expenseId, ExpenseActionType type, String payload) {}
+
+    /**
+     * Size of the backlog
+     *
+     * @param pending rows not yet delivered
+     * @param oldestAgeSeconds age of the oldest of them, 0 when there are none
+     */
+    public record Backlog(long pending, double oldestAgeSeconds) {}
+
+    private static final String INSERT = """
+            insert into expense_outbox (expense_id, event_type, payload) values (?, ?, ?::jsonb)""";
+
+    private static final String CLAIM_HEADS = """
+            select o.id, o.expense_id, o.event_type, o.created_at, o.payload::text
+            from expense_outbox o
+            where o.next_attempt_at <= now()
+              and not exists (select 1 from expense_outbox h where h.expense_id = o.expense_id and h.id < o.id)
+            order by o.id
+            limit ?
+            for update of o skip locked""";
+
+    private static final String RESCHEDULE = """
+            update expense_outbox
+            set attempts = attempts + 1, last_error = ?,
+                next_attempt_at = now() + least(make_interval(secs => power(2, attempts)), make_interval(secs => ?))
+            where id = any(?::bigint[])""";
+
+    private final JdbcTemplate jdbc;
+
+    /**
+     * @param jdbc template over the application datasource
+     *
+     * @pre jdbc != NULL
+     *
+     * @post this.jdbc = jdbc
+     */
+    public ExpenseOutboxRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Inserts rows in one batch, in the caller's transaction
+     *
+     * @param events the rows, in the order they happened
+     *
+     * @pre events != NULL
+     *
+     * @post one pending row per event, ids ascending in list order
+     */
+    public void append(List<NewEvent> events) {
+        if (events.isEmpty()) return;
+
+        List<Object[]> args = new ArrayList<>(events.size());
+        for (NewEvent e : events) args.add(new Object[] {e.expenseId(), e.type().name(), e.payload()});
+        jdbc.batchUpdate(INSERT, args);
+    }
+
+    /**
+     * Claims the oldest due row of up to limit expenses, locked until the caller's transaction ends
+     * Expenses whose oldest row is locked by another relay or waiting for a retry are skipped entirely
+     *
+     * @param limit max rows
+     *
+     * @return the claimed rows, id ascending, at most one per expense
+     *
+     * @pre limit > 0 AND a transaction is active
+     *
+     * @post return.size() <= limit
+     */
+    public List<OutboxEvent> claimHeads(int limit) {
+        return jdbc.query(CLAIM_HEADS, (rs, i) -> new OutboxEvent(
+                rs.getLong(1),
+                rs.getLong(2),
+                ExpenseActionType.valueOf(rs.getString(3)),
+                rs.getObject(4, OffsetDateTime.class),
+                rs.getString(5)), limit);
+    }
+
+    /**
+     * Deletes delivered rows
+     *
+     * @param ids outbox ids
+     *
+     * @pre ids != NULL
+     *
+     * @post no row with an id in ids exists
+     */
+    public void delete(Collection<Long> ids) {
+        if (ids.isEmpty()) return;
+        jdbc.update("delete from expense_outbox where id = any(?::bigint[])", array(ids));
+    }
+
+    /**
+     * Puts rows back for a later attempt, backing off exponentially from one second up to maxBackoff
+     *
+     * @param ids outbox ids
+     * @param error why delivery failed
+     * @param maxBackoff longest wait between attempts
+     *
+     * @pre ids != NULL AND maxBackoff > 0
+     *
+     * @post each row's attempts is one higher and its next attempt is 2^(attempts before) seconds away, capped
+     */
+    public void reschedule(Collection<Long> ids, String error, Duration maxBackoff) {
+        if (ids.isEmpty()) return;
+        jdbc.update(RESCHEDULE, error, maxBackoff.toSeconds(), array(ids));
+    }
+
+    /**
+     * @return how many rows are pending and how old the oldest is
+     */
+    public Backlog backlog() {
+        return jdbc.queryForObject(
+                "select count(*), coalesce(extract(epoch from now() - min(created_at)), 0) from expense_outbox",
+                (rs, i) -> new Backlog(rs.getLong(1), rs.getDouble(2)));
+    }
+
+    private static String array(Collection<Long> ids) {
+        StringJoiner s = new StringJoiner(",", "{", "}");
+        for (Long id : ids) s.add(id.toString());
+        return s.toString();
+    }
+}
@@ -1,42 +1,61 @@
 package com.dante.expense.repository;
 
+import com.dante.expense.dto.ExpenseResponse;
 import com.dante.expense.entity.Expense;
 import com.dante.expense.entity.ExpenseStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
-import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for persisting / retrieving Expense objs
+ * Listings go through findPage or a bounded-fetch stream so no read is ever materialized whole
  *
  * @invariant this != NULL
  */
-public interface ExpenseRepository extends JpaRepository<Expense, Long> {
+public interface ExpenseRepository extends JpaRepository<Expense, Long>, ExpenseRepositoryCustom {
+
+    /** Rows pulled from the driver per round trip when streaming */
+    String STREAM_FETCH_SIZE = "500";
 
     /**
-     * Finds all expenses of a user given their id
+     * Streams every expense in the given status, oldest first
+     * Backed by a server-side cursor, so only STREAM_FETCH_SIZE rows are held at a time;
+     * for SUBMITTED the scan walks the partial index idx_expenses_submitted_queue
      *
-     * @param userId owner's user id
+     * @param status the status to stream
      *
-     * @return list of expenses where expense.user.id = userId ([] if none)
+     * @return stream of expense responses ordered createdAt asc, id asc
      *
-     * @pre userId != NULL AND userId >= 0
+     * @pre status != NULL
+     * @pre caller is inside a transaction and closes the stream
      *
-     * @post return != NULL
+     * @post for each r in return, r.status = status
      */
-    List<Expense> findByUserId(Long userId);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("""
+            select new com.dante.expense.dto.ExpenseResponse(
+                e.id, e.user.id, e.amount, e.baseAmount, e.currency, e.category,
+                e.description, e.expenseDate, e.status, e.createdAt, e.updatedAt)
+            from Expense e
+            where e.status = :status
+            order by e.createdAt asc, e.id asc""")
+    Stream<ExpenseResponse> streamByStatusOldestFirst(ExpenseStatus status);
 
     /**
-     * Finds all expenses with given status
+     * Finds the expense a user created with the given Idempotency-Key, one probe of uq_expenses_idempotency_key
      *
-     * @param status the status filter to apply
+     * @param userId the owner
+     * @param idempotencyKey the client's key
      *
-     * @return list of expenses matching the status searched
-     *
-     * @pre status != NULL
+     * @return the expense, empty if the user never sent the key
      *
-     * @post return != NULL
-     * @post for each expense in return, expense.status = status
+     * @pre userId != NULL AND idempotencyKey != NULL
      */
-    List<Expense> findByStatus(ExpenseStatus status);
+    Optional<Expense> findByUser_IdAndIdempotencyKey(Long userId, String idempotencyKey);
 }
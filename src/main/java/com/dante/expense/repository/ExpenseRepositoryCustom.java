@@ -0,0 +1,233 @@
+package com.dante.expense.repository;
+
+import com.dante.expense.dto.ExpenseCursor;
+import com.dante.expense.dto.ExpenseFilter;
+import com.dante.expense.dto.ExpenseResponse;
+import com.dante.expense.dto.ExpenseSearchCursor;
+import com.dante.expense.dto.ExpenseSearchFilter;
+import com.dante.expense.entity.ExpenseStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Hand-written queries for ExpenseRepository that Spring Data can't derive
+ *
+ * @invariant this != NULL
+ */
+public interface ExpenseRepositoryCustom {
+
+    /**
+     * A row moved by a status update, with the status it left
+     *
+     * @invariant expense != NULL AND from != NULL AND from != expense.status
+     */
+    record StatusChange(ExpenseResponse expense, ExpenseStatus from) {}
+
+    /**
+     * What a guarded status update found for one existing expense, and did to it
+     *
+     * @invariant id != NULL AND seen != NULL
+     * @invariant change != NULL IMPLIES change.from = seen AND change.expense.id = id
+     * @invariant change = NULL AND seen was a legal source IMPLIES a concurrent transaction changed the row first
+     */
+    record StatusUpdate(Long id, ExpenseStatus seen, StatusChange change) {}
+
+    /**
+     * A search result with its relevance score
+     *
+     * @invariant expense != NULL AND score >= 0
+     */
+    record SearchHit(ExpenseResponse expense, float score) {}
+
+    /**
+     * An existing expense a new one may duplicate
+     *
+     * @invariant id != NULL AND description != NULL
+     * @invariant exact IFF the stored fingerprint equals the new expense's
+     */
+    record DuplicateCandidate(Long id, String description, boolean exact) {}
+
+    /**
+     * Keyset page of expenses, newest first by (createdAt, id)
+     * Only predicates for non-NULL filter fields are added, so each shape of filter gets its own plan
+     * Rows are projected straight into ExpenseResponse, no entities enter the persistence context
+     *
+     * @param filter the filters to apply
+     * @param after position of the last row already seen (NULL for the first page)
+     * @param limit max rows to return
+     *
+     * @return up to limit expense responses strictly after #after, ordered createdAt desc, id desc
+     *
+     * @pre filter != NULL
+     * @pre limit > 0
+     *
+     * @post return != NULL AND return.size() <= limit
+     */
+    List<ExpenseResponse> findPage(ExpenseFilter filter, ExpenseCursor after, int limit);
+
+    /** How many matches one RANK window scores */
+    int RANK_WINDOW = 1000;
+
+    /**
+     * Keyset page of a full-text search over descriptions
+     * Matches come from the GIN index on the description_tsv column, the filters are ANDed on top.
+     * RECENT orders by createdAt desc, id desc. RANK orders by ts_rank desc, id desc within one window: the
+     * RANK_WINDOW newest matches created up to asOf and, past the first window, older than window in
+     * (createdAt, id) order. Scoring every match of a common word would read all of them, windows keep the cost
+     * of each page bounded; rankWindowEnd gives where the next window starts
+     *
+     * @param filter the query, filters and order
+     * @param asOf upper bound on createdAt of RANK results, fixed for all pages of a search
+     * @param window oldest row of the previous RANK window (NULL for the first window), ignored for RECENT
+     * @param after position of the last row already seen in this window (NULL for the window's first page)
+     * @param limit max rows to return
+     *
+     * @return up to limit hits strictly after #after in filter.sort order
+     *
+     * @pre filter != NULL AND asOf != NULL
+     * @pre limit > 0
+     *
+     * @post return != NULL AND return.size() <= limit
+     */
+    List<SearchHit> search(ExpenseSearchFilter filter, OffsetDateTime asOf, ExpenseCursor window,
+                           ExpenseSearchCursor after, int limit);
+
+    /**
+     * Where a RANK window ends, which is where the next one starts
+     *
+     * @param filter the query and filters
+     * @param asOf upper bound on createdAt, as passed to search
+     * @param window oldest row of the previous window (NULL for the first window)
+     *
+     * @return (createdAt, id) of the window's oldest match, empty if the window holds fewer than RANK_WINDOW
+     *         matches and so is the last one
+     *
+     * @pre filter != NULL AND asOf != NULL
+     *
+     * @post return != NULL
+     */
+    Optional<ExpenseCursor> rankWindowEnd(ExpenseSearchFilter filter, OffsetDateTime asOf, ExpenseCursor window);
+
+    /**
+     * Serializes expense creation per user until the transaction ends, so a duplicate check and the insert after it
+     * can't interleave with another create for the same user. Users sharing a lock hash just wait on each other
+     *
+     * @param userId the owner of the expense about to be created
+     *
+     * @pre userId != NULL
+     * @pre caller is inside a transaction
+     *
+     * @post the caller holds the create lock of userId until commit or rollback
+     */
+    void lockCreates(Long userId);
+
+    /**
+     * Finds non-rejected expenses a new one may duplicate: every one with the same fingerprint, plus the owner's
+     * expenses with the same amount and currency dated within [from, to]
+     * Each half is one index probe (idx_expenses_fingerprint, idx_expenses_user_amount_date)
+     *
+     * @param userId owner of the new expense
+     * @param fingerprint fingerprint of the new expense
+     * @param amount amount of the new expense
+     * @param currency currency of the new expense
+     * @param from earliest expenseDate of a near duplicate
+     * @param to latest expenseDate of a near duplicate
+     * @param limit max candidates to return
+     *
+     * @return up to limit candidates, exact ones first, then newest first
+     *
+     * @pre all arguments != NULL AND limit > 0
+     *
+     * @post return != NULL AND return.size() <= limit
+     */
+    List<DuplicateCandidate> findDuplicateCandidates(Long userId, String fingerprint, BigDecimal amount, String currency,
+                                                     LocalDate from, LocalDate to, int limit);
+
+    /**
+     * Moves one expense to a new status in a single guarded statement
+     * The row is read as of the statement's snapshot, then updated WHERE its status is in #from AND its version is
+     * still the one read, so a transition racing a concurrent commit on the same row updates nothing. Bumps version
+     * and sets updatedAt, entity callbacks don't run
+     *
+     * @param id the expense id
+     * @param from the statuses the transition may start from
+     * @param to the new status
+     * @param now the new updatedAt
+     *
+     * @return the status the row was seen in and the change if it moved, empty if the expense doesn't exist
+     *
+     * @pre all arguments != NULL
+     * @pre caller is inside a transaction
+     *
+     * @post return.change != NULL IMPLIES return.change.expense.status = to AND return.change.expense.updatedAt = now
+     *       AND return.seen in #from
+     */
+    Optional<StatusUpdate> updateStatus(Long id, Collection<ExpenseStatus> from, ExpenseStatus to, OffsetDateTime now);
+
+    /**
+     * Set-based form of updateStatus, one statement for any number of ids; rows are locked in id order
+     *
+     * @param ids the expense ids
+     * @param from the statuses the transition may start from
+     * @param to the new status
+     * @param now the new updatedAt
+     *
+     * @return one StatusUpdate per existing expense in ids, in id order
+     *
+     * @pre all arguments != NULL
+     * @pre caller is inside a transaction
+     *
+     * @post every return.id is in ids, each once; ids with no expense are absent
+     */
+    List<StatusUpdate> updateStatuses(Collection<Long> ids, Collection<ExpenseStatus> from, ExpenseStatus to, OffsetDateTime now);
+
+    /**
+     * Sets baseAmount on up to limit expenses that have none yet but now have a rate, using the fx_rates row
+     * in force on their expenseDate; base currency expenses take their own amount
+     * Rows locked by other transactions are skipped and left for a later call. Version is bumped and updatedAt set,
+     * so ETags change and entities loaded before the fill can't write a stale baseAmount back
+     *
+     * @param baseCurrency the FX base currency
+     * @param now the new updatedAt
+     * @param limit max rows to update
+     *
+     * @return the updated rows, in id order
+     *
+     * @pre baseCurrency != NULL AND now != NULL AND limit > 0
+     * @pre caller is inside a transaction
+     *
+     * @post return.size() <= limit AND every return.baseAmount != NULL AND every return.updatedAt = now
+     */
+    List<ExpenseResponse> fillBaseAmounts(String baseCurrency, OffsetDateTime now, int limit);
+
+    /**
+     * Marks up to limit SUBMITTED expenses created before submittedBefore and not yet escalated as escalated,
+     * oldest first. Rows locked by other transactions, a transition or another node's scan, are skipped
+     *
+     * @param submittedBefore the SLA cutoff
+     * @param now the new escalatedAt and updatedAt
+     * @param limit max rows to update
+     *
+     * @return the updated rows, in id order
+     *
+     * @pre all arguments != NULL AND limit > 0
+     * @pre caller is inside a transaction
+     *
+     * @post return.size() <= limit AND every return.status = SUBMITTED AND every return.updatedAt = now
+     */
+    List<ExpenseResponse> escalateStale(OffsetDateTime submittedBefore, OffsetDateTime now, int limit);
+
+    /**
+     * @param submittedBefore the SLA cutoff
+     *
+     * @return how many SUBMITTED expenses were created before submittedBefore, escalated or not
+     *
+     * @pre submittedBefore != NULL
+     */
+    long countSubmittedBefore(OffsetDateTime submittedBefore);
+}
@@ -0,0 +1,424 @@
+package com.dante.expense.repository;
+
+import com.dante.expense.dto.ExpenseCursor;
+import com.dante.expense.dto.ExpenseFilter;
+import com.dante.expense.dto.ExpenseResponse;
+import com.dante.expense.dto.ExpenseSearchCursor;
+import com.dante.expense.dto.ExpenseSearchFilter;
+import com.dante.expense.entity.ExpenseCategory;
+import com.dante.expense.entity.ExpenseStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.Session;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JPQL based implementation of ExpenseRepositoryCustom
+ * Queries are assembled as strings rather than Criteria so Hibernate can cache the plan per filter shape;
+ * status transitions are plain JDBC on the session's connection since JPQL has no UPDATE ... RETURNING
+ *
+ * @invariant em != NULL
+ */
+class ExpenseRepositoryCustomImpl implements ExpenseRepositoryCustom {
+
+    // user.id resolves to the user_id FK column, so the users table is never joined
+    private static final String SELECT_RESPONSE = """
+            select new com.dante.expense.dto.ExpenseResponse(
+                e.id, e.user.id, e.amount, e.baseAmount, e.currency, e.category,
+                e.description, e.expenseDate, e.status, e.createdAt, e.updatedAt)
+            from Expense e
+            where 1 = 1""";
+
+    // the status guard makes these compare-and-set: a concurrent transition that commits first leaves 0 rows here.
+    // seen is the row as of the statement's snapshot; locked waits for a concurrent writer and yields the committed
+    // row. The update is the compare-and-set WHERE status = <seen> AND version = <seen>: a row seen in a legal status
+    // whose version moved before the lock was granted lost a race and is left alone. Every seen row is returned, the
+    // moved ones with their new values. The (id, status) guard is the same for one id and for many; bulk locks in id order.
+    private static final String TRANSITION = """
+            with seen as (select id, status, version from expenses where %1$s),
+            locked as (select id, version from expenses where %1$s and status = any(?) order by id for update),
+            moved as (
+                update expenses e set status = ?, version = e.version + 1, updated_at = ?
+                from seen join locked on locked.id = seen.id and locked.version = seen.version
+                where e.id = seen.id and seen.status = any(?)
+                returning e.id, e.user_id, e.amount, e.base_amount, e.currency, e.category, e.description, e.expense_date,
+                          e.status, e.created_at, e.updated_at)
+            select s.id as seen_id, s.status as seen_status, m.*
+            from seen s left join moved m on m.id = s.id
+            order by s.id""";
+
+    private static final String UPDATE_STATUS_RETURNING = TRANSITION.formatted("id = ?");
+
+    private static final String UPDATE_STATUSES_RETURNING = TRANSITION.formatted("id = any(?)");
+
+    // fx_rates is read with the same rule as FxRateCache: the latest rate on or before expense_date.
+    // round() on numeric rounds half away from zero, which is half up for the positive amounts stored here
+    private static final String FILL_BASE_AMOUNTS_RETURNING = """
+            update expenses e set base_amount = case when e.currency = ? then e.amount else round(e.amount * (
+                select r.rate from fx_rates r
+                where r.currency = e.currency and r.rate_date <= e.expense_date
+                order by r.rate_date desc limit 1), 2) end,
+                version = e.version + 1, updated_at = ?
+            from (select x.id from expenses x
+                  where x.base_amount is null
+                    and (x.currency = ? or exists (select 1 from fx_rates r
+                                                   where r.currency = x.currency and r.rate_date <= x.expense_date))
+                  order by x.id limit ? for update skip locked) pending
+            where e.id = pending.id
+            returning e.id, e.user_id, e.amount, e.base_amount, e.currency, e.category, e.description, e.expense_date,
+                      e.status, e.created_at, e.updated_at""";
+
+    // walks idx_expenses_sla_pending, which only holds SUBMITTED rows not yet escalated, oldest first.
+    // The version bump keeps a concurrent entity save from writing escalated_at back to NULL
+    private static final String ESCALATE_STALE_RETURNING = """
+            update expenses e set escalated_at = ?, version = e.version + 1, updated_at = ?
+            from (select x.id from expenses x
+                  where x.status = 'SUBMITTED' and x.escalated_at is null and x.created_at < ?
+                  order by x.created_at, x.id limit ? for update skip locked) due
+            where e.id = due.id
+            returning e.id, e.user_id, e.amount, e.base_amount, e.currency, e.category, e.description, e.expense_date,
+                      e.status, e.created_at, e.updated_at""";
+
+    // description_tsv is generated from description with the same text search configuration (schema-postgresql.sql),
+    // websearch_to_tsquery never fails on user input, a query of only stop words matches nothing
+    private static final String SEARCH_MATCHES = """
+            select e.id, e.user_id, e.amount, e.base_amount, e.currency, e.category, e.description, e.expense_date,
+                   e.status, e.created_at, e.updated_at, e.description_tsv, q
+            from expenses e, websearch_to_tsquery('english', ?) q
+            where e.description_tsv @@ q""";
+
+    // rejected expenses are left out: resubmitting a rejected receipt is the expected way to fix it
+    private static final String DUPLICATE_CANDIDATES = """
+            select id, description, coalesce(fingerprint = ?, false) as exact from (
+                select id, description, fingerprint from expenses
+                where fingerprint = ? and status <> 'REJECTED'
+                union
+                select id, description, fingerprint from expenses
+                where user_id = ? and amount = ? and expense_date between ? and ? and currency = ? and status <> 'REJECTED'
+            ) c
+            order by exact desc, id desc
+            limit ?""";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public List<ExpenseResponse> findPage(ExpenseFilter filter, ExpenseCursor after, int limit) {
+        StringBuilder jpql = new StringBuilder(SELECT_RESPONSE);
+
+        if (filter.userId() != null) jpql.append(" and e.user.id = :userId");
+        if (filter.status() != null) jpql.append(" and e.status = :status");
+        if (filter.category() != null) jpql.append(" and e.category = :category");
+        if (filter.from() != null) jpql.append(" and e.expenseDate >= :from");
+        if (filter.to() != null) jpql.append(" and e.expenseDate <= :to");
+
+        // the leading createdAt <= bound is what lets postgres seek the index instead of filtering from the top
+        if (after != null) jpql.append(" and e.createdAt <= :afterAt and (e.createdAt < :afterAt or e.id < :afterId)");
+
+        jpql.append(" order by e.createdAt desc, e.id desc");
+
+        TypedQuery<ExpenseResponse> q = em.createQuery(jpql.toString(), ExpenseResponse.class);
+
+        if (filter.userId() != null) q.setParameter("userId", filter.userId());
+        if (filter.status() != null) q.setParameter("status", filter.status());
+        if (filter.category() != null) q.setParameter("category", filter.category());
+        if (filter.from() != null) q.setParameter("from", filter.from());
+        if (filter.to() != null) q.setParameter("to", filter.to());
+
+        if (after != null) {
+            q.setParameter("afterAt", after.createdAt());
+            q.setParameter("afterId", after.id());
+        }
+
+        return q.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<SearchHit> search(ExpenseSearchFilter filter, OffsetDateTime asOf, ExpenseCursor window,
+                                  ExpenseSearchCursor after, int limit) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder matches = searchMatches(filter, args);
+
+        String sql;
+        if (filter.sort() == ExpenseSearchFilter.Sort.RANK) {
+            // the window is picked newest first, so the planner can walk idx_expenses_created for common words
+            // and stop after RANK_WINDOW rows, or take the GIN index for rare ones
+            appendRankWindow(matches, args, asOf, window);
+            matches.append(" order by e.created_at desc, e.id desc limit ?");
+            args.add(RANK_WINDOW);
+
+            StringBuilder ranked = new StringBuilder("select m.*, ts_rank(m.description_tsv, m.q) as score from (")
+                    .append(matches).append(") m");
+            if (after != null) {
+                ranked.append(" where (ts_rank(m.description_tsv, m.q), m.id) < (?, ?)");
+                args.add(after.score());
+                args.add(after.id());
+            }
+            sql = ranked.append(" order by score desc, m.id desc limit ?").toString();
+        } else {
+            if (after != null) {
+                matches.append(" and (e.created_at, e.id) < (?, ?)");
+                args.add(after.createdAt());
+                args.add(after.id());
+            }
+            sql = "select m.*, 0::real as score from (" + matches + " order by e.created_at desc, e.id desc limit ?) m";
+        }
+        args.add(limit);
+
+        return em.unwrap(Session.class).doReturningWork(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (int i = 0; i < args.size(); i++) ps.setObject(i + 1, args.get(i));
+
+                List<SearchHit> hits = new ArrayList<>(limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) hits.add(new SearchHit(toResponse(rs), rs.getFloat("score")));
+                }
+                return hits;
+            }
+        });
+    }
+
+    @Override
+    public Optional<ExpenseCursor> rankWindowEnd(ExpenseSearchFilter filter, OffsetDateTime asOf, ExpenseCursor window) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder matches = searchMatches(filter, args);
+        appendRankWindow(matches, args, asOf, window);
+        matches.append(" order by e.created_at desc, e.id desc offset ? limit 1");
+        args.add(RANK_WINDOW - 1);
+
+        String sql = "select m.created_at, m.id from (" + matches + ") m";
+
+        return em.unwrap(Session.class).doReturningWork(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (int i = 0; i < args.size(); i++) ps.setObject(i + 1, args.get(i));
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return Optional.empty();
+                    return Optional.of(new ExpenseCursor(rs.getObject(1, OffsetDateTime.class), rs.getLong(2)));
+                }
+            }
+        });
+    }
+
+    /**
+     * SEARCH_MATCHES with the filter's conditions appended, their values added to args in order
+     */
+    private static StringBuilder searchMatches(ExpenseSearchFilter filter, List<Object> args) {
+        StringBuilder matches = new StringBuilder(SEARCH_MATCHES);
+        args.add(filter.query());
+
+        if (filter.userId() != null) { matches.append(" and e.user_id = ?"); args.add(filter.userId()); }
+        if (filter.status() != null) { matches.append(" and e.status = ?"); args.add(filter.status().name()); }
+        if (filter.category() != null) { matches.append(" and e.category = ?"); args.add(filter.category().name()); }
+        if (filter.from() != null) { matches.append(" and e.expense_date >= ?"); args.add(filter.from()); }
+        if (filter.to() != null) { matches.append(" and e.expense_date <= ?"); args.add(filter.to()); }
+
+        return matches;
+    }
+
+    /**
+     * Restricts matches to those a rank window may hold: created up to asOf and, past the first window,
+     * strictly older than the previous window's oldest row in (createdAt, id) order
+     */
+    private static void appendRankWindow(StringBuilder matches, List<Object> args, OffsetDateTime asOf, ExpenseCursor window) {
+        matches.append(" and e.created_at <= ?");
+        args.add(asOf);
+
+        if (window != null) {
+            matches.append(" and (e.created_at, e.id) < (?, ?)");
+            args.add(window.createdAt());
+            args.add(window.id());
+        }
+    }
+
+    @Override
+    public void lockCreates(Long userId) {
+        em.createNativeQuery("select count(pg_advisory_xact_lock(hashtext('expense_create'), hashint8(?)))")
+                .setParameter(1, userId)
+                .getSingleResult();
+    }
+
+    @Override
+    public List<DuplicateCandidate> findDuplicateCandidates(Long userId, String fingerprint, BigDecimal amount,
+                                                            String currency, LocalDate from, LocalDate to, int limit) {
+        return em.unwrap(Session.class).doReturningWork(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(DUPLICATE_CANDIDATES)) {
+                ps.setString(1, fingerprint);
+                ps.setString(2, fingerprint);
+                ps.setLong(3, userId);
+                ps.setBigDecimal(4, amount);
+                ps.setObject(5, from);
+                ps.setObject(6, to);
+                ps.setString(7, currency);
+                ps.setInt(8, limit);
+
+                List<DuplicateCandidate> candidates = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        candidates.add(new DuplicateCandidate(rs.getLong("id"), rs.getString("description"), rs.getBoolean("exact")));
+                    }
+                }
+                return candidates;
+            }
+        });
+    }
+
+    @Override
+    public Optional<StatusUpdate> updateStatus(Long id, Collection<ExpenseStatus> from, ExpenseStatus to, OffsetDateTime now) {
+        return em.unwrap(Session.class).doReturningWork(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(UPDATE_STATUS_RETURNING)) {
+                ps.setLong(1, id);
+                ps.setLong(2, id);
+                bindTransition(ps, conn, from, to, now);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? Optional.of(toStatusUpdate(rs)) : Optional.<StatusUpdate>empty();
+                }
+            }
+        });
+    }
+
+    @Override
+    public List<StatusUpdate> updateStatuses(Collection<Long> ids, Collection<ExpenseStatus> from, ExpenseStatus to, OffsetDateTime now) {
+        if (ids.isEmpty()) return List.of();
+
+        return em.unwrap(Session.class).doReturningWork(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(UPDATE_STATUSES_RETURNING)) {
+                Array idArray = conn.createArrayOf("bigint", ids.toArray());
+                ps.setArray(1, idArray);
+                ps.setArray(2, idArray);
+                bindTransition(ps, conn, from, to, now);
+
+                List<StatusUpdate> updates = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) updates.add(toStatusUpdate(rs));
+                }
+                return updates;
+            }
+        });
+    }
+
+    @Override
+    public List<ExpenseResponse> fillBaseAmounts(String baseCurrency, OffsetDateTime now, int limit) {
+        return em.unwrap(Session.class).doReturningWork(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(FILL_BASE_AMOUNTS_RETURNING)) {
+                ps.setString(1, baseCurrency);
+                ps.setObject(2, now);
+                ps.setString(3, baseCurrency);
+                ps.setInt(4, limit);
+
+                List<ExpenseResponse> filled = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) filled.add(toResponse(rs));
+                }
+                filled.sort(Comparator.comparing(ExpenseResponse::getId));
+                return filled;
+            }
+        });
+    }
+
+    @Override
+    public List<ExpenseResponse> escalateStale(OffsetDateTime submittedBefore, OffsetDateTime now, int limit) {
+        return em.unwrap(Session.class).doReturningWork(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(ESCALATE_STALE_RETURNING)) {
+                ps.setObject(1, now);
+                ps.setObject(2, now);
+                ps.setObject(3, submittedBefore);
+                ps.setInt(4, limit);
+
+                List<ExpenseResponse> escalated = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) escalated.add(toResponse(rs));
+                }
+                escalated.sort(Comparator.comparing(ExpenseResponse::getId));
+                return escalated;
+            }
+        });
+    }
+
+    @Override
+    public long countSubmittedBefore(OffsetDateTime submittedBefore) {
+        // served by the partial idx_expenses_submitted_queue
+        return em.createQuery("select count(e) from Expense e where e.status = :status and e.createdAt < :before", Long.class)
+                .setParameter("status", ExpenseStatus.SUBMITTED)
+                .setParameter("before", submittedBefore)
+                .getSingleResult();
+    }
+
+    /**
+     * Binds a set of statuses for status = any(?)
+     *
+     * @param conn the connection the statement belongs to
+     * @param statuses the statuses
+     *
+     * @return a varchar array of the status names
+     *
+     * @pre conn != NULL AND statuses != NULL
+     *
+     * @post return != NULL
+     */
+    private static Array statusArray(Connection conn, Collection<ExpenseStatus> statuses) throws SQLException {
+        return conn.createArrayOf("varchar", statuses.stream().map(Enum::name).toArray());
+    }
+
+    /**
+     * Binds the parameters of TRANSITION that follow the two id predicates
+     *
+     * @pre all arguments != NULL
+     */
+    private static void bindTransition(PreparedStatement ps, Connection conn, Collection<ExpenseStatus> from,
+                                       ExpenseStatus to, OffsetDateTime now) throws SQLException {
+        Array sources = statusArray(conn, from);
+        ps.setArray(3, sources);
+        ps.setString(4, to.name());
+        ps.setObject(5, now);
+        ps.setArray(6, sources);
+    }
+
+    /**
+     * Maps the current row of a TRANSITION result
+     *
+     * @param rs result positioned on a row of UPDATE_STATUS_RETURNING or UPDATE_STATUSES_RETURNING
+     *
+     * @return the status the row was seen in, and the change IFF it moved
+     *
+     * @pre rs != NULL AND rs is on a row
+     *
+     * @post return != NULL
+     */
+    private static StatusUpdate toStatusUpdate(ResultSet rs) throws SQLException {
+        ExpenseStatus seen = ExpenseStatus.valueOf(rs.getString("seen_status"));
+        StatusChange change = rs.getObject("id") != null ? new StatusChange(toResponse(rs), seen) : null;
+
+        return new StatusUpdate(rs.getLong("seen_id"), seen, change);
+    }
+
+    private static ExpenseResponse toResponse(ResultSet rs) throws SQLException {
+        return new ExpenseResponse(
+                rs.getLong("id"),
+                rs.getLong("user_id"),
+                rs.getBigDecimal("amount"),
+                rs.getBigDecimal("base_amount"),
+                rs.getString("currency"),
+                ExpenseCategory.valueOf(rs.getString("category")),
+                rs.getString("description"),
+                rs.getObject("expense_date", LocalDate.class),
+                ExpenseStatus.valueOf(rs.getString("status")),
+                rs.getObject("created_at", OffsetDateTime.class),
+                rs.getObject("updated_at", OffsetDateTime.class));
+    }
+}
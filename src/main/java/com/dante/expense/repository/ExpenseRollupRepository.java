@@ -0,0 +1,181 @@
+package com.dante.expense.repository;
+
+import com.dante.expense.dto.ExpenseRollupFilter;
+import com.dante.expense.dto.ExpenseRollupFilter.Dimension;
+import com.dante.expense.dto.ExpenseRollupResponse;
+import com.dante.expense.entity.ExpenseCategory;
+import com.dante.expense.entity.ExpenseStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Native SQL over expense_rollups: one row per (user, month of expenseDate, category, currency, status)
+ * holding the count, sum and base currency sum of the matching expenses (table in schema-postgresql.sql)
+ *
+ * Writers and the rebuild are kept apart by advisory locks striped by user: writers hold the stripes of the users
+ * they touch in shared mode until commit, a stripe rebuild holds its stripe exclusively. A writer either commits
+ * before the rebuild reads expenses, or applies its delta on top of the rebuilt rows after the rebuild commits.
+ *
+ * @invariant jdbc != NULL
+ */
+@Repository
+public class ExpenseRollupRepository {
+
+    /** Lock stripes and rebuild units, a user belongs to stripe mod(user_id, STRIPES) */
+    public static final int STRIPES = 64;
+
+    /**
+     * A change to one rollup row
+     *
+     * @invariant all fields != NULL AND month is the first day of a month
+     */
+    public record Delta(Long userId, LocalDate month, ExpenseCategory category, String currency, ExpenseStatus status,
+                        long count, BigDecimal amount, BigDecimal baseAmount) {}
+
+    private static final String LOCK_SHARED = """
+            select count(pg_advisory_xact_lock_shared(hashtext('expense_rollups'), s)) from unnest(?::int[]) s""";
+
+    private static final String UPSERT = """
+            insert into expense_rollups (user_id, month, category, currency, status, expense_count, total_amount,
+                                         total_base_amount)
+            values (?, ?, ?, ?, ?, ?, ?, ?)
+            on conflict (user_id, month, category, currency, status) do update
+            set expense_count = expense_rollups.expense_count + excluded.expense_count,
+                total_amount = expense_rollups.total_amount + excluded.total_amount,
+                total_base_amount = expense_rollups.total_base_amount + excluded.total_base_amount""";
+
+    private static final String REBUILD_STRIPE = """
+            insert into expense_rollups (user_id, month, category, currency, status, expense_count, total_amount,
+                                         total_base_amount)
+            select user_id, date_trunc('month', expense_date)::date, category, currency, status, count(*), sum(amount),
+                   coalesce(sum(base_amount), 0)
+            from expenses
+            where user_id in (select id from users where mod(id, ?) = ?)
+            group by 1, 2, 3, 4, 5""";
+
+    private final JdbcTemplate jdbc;
+
+    /**
+     * @param jdbc template over the application datasource
+     *
+     * @pre jdbc != NULL
+     *
+     * @post this.jdbc = jdbc
+     */
+    public ExpenseRollupRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Adds the deltas to their rollup rows, creating missing rows, in one batch
+     *
+     * @param deltas the changes, at most one per rollup row, sorted by key so concurrent writers lock rows in one order
+     *
+     * @pre deltas != NULL AND no two deltas share a key
+     * @pre caller is inside a transaction
+     *
+     * @post each row's count and total moved by its delta; the stripes of the users touched stay share-locked until commit
+     */
+    public void apply(List<Delta> deltas) {
+        if (deltas.isEmpty()) return;
+
+        StringJoiner stripes = new StringJoiner(",", "{", "}");
+        deltas.stream().map(d -> stripeOf(d.userId())).distinct().forEach(st -> stripes.add(st.toString()));
+        jdbc.queryForObject(LOCK_SHARED, Long.class, stripes.toString());
+
+        jdbc.batchUpdate(UPSERT, deltas, deltas.size(), (ps, d) -> {
+            ps.setLong(1, d.userId());
+            ps.setDate(2, Date.valueOf(d.month()));
+            ps.setString(3, d.category().name());
+            ps.setString(4, d.currency());
+            ps.setString(5, d.status().name());
+            ps.setLong(6, d.count());
+            ps.setBigDecimal(7, d.amount());
+            ps.setBigDecimal(8, d.baseAmount());
+        });
+    }
+
+    /**
+     * Recomputes the rollup rows of one stripe of users from expenses
+     * The stripe's users are picked from users, so expenses are read through their user_id index and the
+     * stripes of a full rebuild read each expense once between them; rows of users deleted since are dropped
+     *
+     * @param stripe the stripe, 0 <= stripe < STRIPES
+     *
+     * @return the number of rollup rows written
+     *
+     * @pre caller is inside a transaction
+     *
+     * @post the stripe's rows equal a GROUP BY over its users' expenses
+     */
+    public int rebuildStripe(int stripe) {
+        jdbc.queryForObject("select count(pg_advisory_xact_lock(hashtext('expense_rollups'), ?))", Long.class, stripe);
+        jdbc.update("delete from expense_rollups where mod(user_id, ?) = ?", STRIPES, stripe);
+
+        return jdbc.update(REBUILD_STRIPE, STRIPES, stripe);
+    }
+
+    /**
+     * Sums rollup rows into the groups the filter asks for; reads O(rollup rows matched), never expenses
+     *
+     * @param filter filters and grouping
+     *
+     * @return one response per non-empty group, ordered by the grouping columns
+     *
+     * @pre filter != NULL
+     *
+     * @post return != NULL
+     */
+    public List<ExpenseRollupResponse> summarize(ExpenseRollupFilter filter) {
+        Set<Dimension> by = filter.groupBy();
+        StringJoiner cols = new StringJoiner(", ");
+
+        if (by.contains(Dimension.USER)) cols.add("user_id");
+        if (by.contains(Dimension.MONTH)) cols.add("month");
+        if (by.contains(Dimension.CATEGORY)) cols.add("category");
+        cols.add("currency");
+        if (by.contains(Dimension.STATUS)) cols.add("status");
+
+        StringBuilder sql = new StringBuilder("select ").append(cols)
+                .append(", sum(expense_count) as expense_count, sum(total_amount) as total_amount,"
+                        + " sum(total_base_amount) as total_base_amount from expense_rollups where 1 = 1");
+        List<Object> args = new ArrayList<>();
+
+        if (filter.userId() != null) { sql.append(" and user_id = ?"); args.add(filter.userId()); }
+        if (filter.category() != null) { sql.append(" and category = ?"); args.add(filter.category().name()); }
+        if (filter.currency() != null) { sql.append(" and currency = ?"); args.add(filter.currency()); }
+        if (filter.status() != null) { sql.append(" and status = ?"); args.add(filter.status().name()); }
+        if (filter.from() != null) { sql.append(" and month >= ?"); args.add(Date.valueOf(filter.from().atDay(1))); }
+        if (filter.to() != null) { sql.append(" and month <= ?"); args.add(Date.valueOf(filter.to().atDay(1))); }
+
+        sql.append(" group by ").append(cols).append(" having sum(expense_count) > 0 order by ").append(cols);
+
+        return jdbc.query(sql.toString(), (rs, n) -> new ExpenseRollupResponse(
+                by.contains(Dimension.USER) ? rs.getLong("user_id") : null,
+                by.contains(Dimension.MONTH) ? YearMonth.from(rs.getDate("month").toLocalDate()) : null,
+                by.contains(Dimension.CATEGORY) ? ExpenseCategory.valueOf(rs.getString("category")) : null,
+                rs.getString("currency"),
+                by.contains(Dimension.STATUS) ? ExpenseStatus.valueOf(rs.getString("status")) : null,
+                rs.getLong("expense_count"),
+                rs.getBigDecimal("total_amount"),
+                rs.getBigDecimal("total_base_amount")), args.toArray());
+    }
+
+    /**
+     * @param userId a user id
+     *
+     * @return the user's lock stripe, same as mod(user_id, STRIPES) in SQL for non-negative ids
+     */
+    public static int stripeOf(Long userId) {
+        return (int) Math.floorMod(userId, (long) STRIPES);
+    }
+}
@@ -0,0 +1,74 @@
+package com.dante.expense.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Native SQL over fx_rates: one row per (currency, rate_date) giving how many units of the base currency
+ * one unit of currency bought on that day (table in schema-postgresql.sql)
+ * A rate holds from its date until the next date the currency has a rate for
+ *
+ * @invariant jdbc != NULL
+ */
+@Repository
+public class FxRateRepository {
+
+    /** Decimal places rates are stored and applied with, matches the fx_rates.rate column */
+    public static final int RATE_SCALE = 9;
+
+    /**
+     * One published rate
+     *
+     * @invariant currency matches [A-Z]{3} AND date != NULL AND rate > 0 AND rate.scale() <= RATE_SCALE
+     */
+    public record FxRate(String currency, LocalDate date, BigDecimal rate) {}
+
+    private static final String UPSERT = """
+            insert into fx_rates (currency, rate_date, rate) values (?, ?, ?)
+            on conflict (currency, rate_date) do update set rate = excluded.rate""";
+
+    private final JdbcTemplate jdbc;
+
+    /**
+     * @param jdbc template over the application datasource
+     *
+     * @pre jdbc != NULL
+     *
+     * @post this.jdbc = jdbc
+     */
+    public FxRateRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Inserts the rates, replacing any already stored for the same currency and date, in one batch
+     *
+     * @param rates the rates
+     *
+     * @pre rates != NULL AND caller is inside a transaction
+     *
+     * @post every rate is stored
+     */
+    public void upsert(List<FxRate> rates) {
+        jdbc.batchUpdate(UPSERT, rates, 1000, (ps, r) -> {
+            ps.setString(1, r.currency());
+            ps.setDate(2, Date.valueOf(r.date()));
+            ps.setBigDecimal(3, r.rate());
+        });
+    }
+
+    /**
+     * @return every stored rate, ordered by currency then date
+     *
+     * @post return != NULL
+     */
+    public List<FxRate> findAll() {
+        return jdbc.query("select currency, rate_date, rate from fx_rates order by currency, rate_date",
+                (rs, n) -> new FxRate(rs.getString(1), rs.getObject(2, LocalDate.class), rs.getBigDecimal(3)));
+    }
+}
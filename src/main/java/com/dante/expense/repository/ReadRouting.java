@@ -0,0 +1,78 @@
+package com.dante.expense.repository;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-thread hint on where read-only transactions may read from when replicas are configured
+ * By default any replica within the lag bound will do. A thread can require replicas that have replayed every write
+ * committed before a point in time, or keep its reads on the primary. Without replicas the hint is ignored
+ */
+public final class ReadRouting {
+
+    private record Hint(boolean primaryOnly, long replayedSince) {}
+
+    private static final Hint PRIMARY_ONLY = new Hint(true, 0);
+
+    private static final ThreadLocal<Hint> HINT = new ThreadLocal<>();
+
+    private ReadRouting() {}
+
+    /**
+     * Restricts this thread's reads to replicas that have replayed everything committed before the given time
+     *
+     * @param nanos a System.nanoTime() reading
+     *
+     * @pre none
+     *
+     * @post until clear(), replayedSince() = nanos
+     */
+    public static void requireReplayedSince(long nanos) {
+        HINT.set(new Hint(false, nanos));
+    }
+
+    /**
+     * Drops this thread's hint
+     *
+     * @pre none
+     *
+     * @post reads may go to any replica within the lag bound
+     */
+    public static void clear() {
+        HINT.remove();
+    }
+
+    /**
+     * Runs a read with every read-only transaction it starts on the primary, then restores the previous hint
+     *
+     * @param read the read
+     *
+     * @return what read returned
+     *
+     * @pre read != NULL
+     */
+    public static <T> T onPrimary(Supplier<T> read) {
+        Hint previous = HINT.get();
+        HINT.set(PRIMARY_ONLY);
+        try {
+            return read.get();
+        } finally {
+            if (previous == null) HINT.remove(); else HINT.set(previous);
+        }
+    }
+
+    /**
+     * @return whether this thread's reads must go to the primary
+     */
+    public static boolean primaryOnly() {
+        Hint hint = HINT.get();
+        return hint != null && hint.primaryOnly();
+    }
+
+    /**
+     * @return the System.nanoTime() a replica must have replayed up to for this thread, NULL if any will do
+     */
+    public static Long replayedSince() {
+        Hint hint = HINT.get();
+        return hint == null || hint.primaryOnly() ? null : hint.replayedSince();
+    }
+}
@@ -1,9 +1,13 @@
 package com.dante.expense.repository;
 
+import com.dante.expense.entity.Role;
 import com.dante.expense.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Repository interface for persisting / retrieving User obj
@@ -24,4 +28,32 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @post return != NULL
      */
     Optional<User> findByEmail(String email);
+
+    /**
+     * Finds which of the given ids belong to existing users, without loading the users
+     *
+     * @param ids candidate user ids
+     *
+     * @return the subset of ids that exist
+     *
+     * @pre ids != NULL
+     *
+     * @post return != NULL AND return is a subset of ids
+     */
+    @Query("select u.id from User u where u.id in :ids")
+    Set<Long> findExistingIds(Collection<Long> ids);
+
+    /**
+     * Reads only the role column of a user
+     *
+     * @param id the user id
+     *
+     * @return an Optional containing the role IFF the user exists, OW empty
+     *
+     * @pre id != NULL
+     *
+     * @post return != NULL
+     */
+    @Query("select u.role from User u where u.id = :id")
+    Optional<Role> findRoleById(Long id);
 }
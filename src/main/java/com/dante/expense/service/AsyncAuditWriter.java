@@ -0,0 +1,307 @@
+package com.dante.expense.service;
+
+import com.dante.expense.entity.ExpenseAction;
+import com.dante.expense.repository.ExpenseActionRepository;
+import com.dante.expense.repository.ExpenseActionStagingRepository;
+import com.dante.expense.repository.ExpenseActionStagingRepository.StagedAction;
+import com.dante.expense.repository.ExpenseRepository;
+import com.dante.expense.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Audit writer that takes expense_actions inserts off the request path (expense.audit.mode=async)
+ *
+ * Each row is staged in expense_action_staging, one small multi-row INSERT in the caller's transaction, so a rolled
+ * back transition never leaves an audit row and a committed one is never lost. After commit the staged ids are
+ * queued; a single writer thread drains the bounded queue and moves whatever has accumulated, up to batch-size rows,
+ * in one transaction: the staged rows are deleted and their expense_actions rows inserted (multi-row INSERTs through
+ * hibernate batching and reWriteBatchedInserts). Stopping the application drains the queue before the datasource
+ * closes. Rows staged but not moved, because the JVM died or their move failed, are replayed when the writer starts.
+ *
+ * Backpressure: when the queue is full the caller waits up to offer-timeout for space, then moves the row
+ * itself in a new transaction, so the queue bounds memory without delaying audit rows until the next start.
+ *
+ * Metrics: expense.audit.queue.depth, expense.audit.flush (latency), expense.audit.flush.rows (batch size),
+ * expense.audit.rows{result=written|failed}, expense.audit.backpressure{outcome=waited|sync}
+ *
+ * @invariant queue != NULL AND 0 < batchSize
+ */
+@Component
+@ConditionalOnProperty(name = "expense.audit.mode", havingValue = "async")
+public class AsyncAuditWriter implements AuditWriter, SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncAuditWriter.class);
+
+    /** How long the writer blocks on an empty queue before re-checking for shutdown */
+    private static final long IDLE_POLL_MS = 200;
+
+    private final BlockingQueue<Long> queue;
+    private final int batchSize;
+    private final Duration offerTimeout;
+    private final ExpenseActionRepository actionRepo;
+    private final ExpenseActionStagingRepository stagingRepo;
+    private final ExpenseRepository expenseRepo;
+    private final UserRepository userRepo;
+    private final TransactionTemplate tx;
+
+    private final Timer flushTimer;
+    private final DistributionSummary flushRows;
+    private final Counter written;
+    private final Counter failed;
+    private final Counter waited;
+    private final Counter syncFallback;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * @param actionRepo audit repository
+     * @param stagingRepo staged audit rows, written in the caller's transaction
+     * @param expenseRepo expense repository, for FK references
+     * @param userRepo user repository, for FK references
+     * @param txManager transaction manager, flushes run in their own transactions
+     * @param meterRegistry registry for the writer's metrics
+     * @param capacity max queued rows
+     * @param batchSize max rows per flush
+     * @param offerTimeout how long a caller waits for queue space before writing the row itself
+     *
+     * @pre all objects != NULL AND capacity > 0 AND batchSize > 0
+     *
+     * @post the queue is empty and the writer thread isn't started
+     */
+    public AsyncAuditWriter(ExpenseActionRepository actionRepo, ExpenseActionStagingRepository stagingRepo,
+                            ExpenseRepository expenseRepo, UserRepository userRepo, PlatformTransactionManager txManager, MeterRegistry meterRegistry,
+                            @Value("${expense.audit.queue-capacity:10000}") int capacity,
+                            @Value("${expense.audit.batch-size:500}") int batchSize,
+                            @Value("${expense.audit.offer-timeout:PT0.05S}") Duration offerTimeout) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.offerTimeout = offerTimeout;
+        this.actionRepo = actionRepo;
+        this.stagingRepo = stagingRepo;
+        this.expenseRepo = expenseRepo;
+        this.userRepo = userRepo;
+        this.tx = new TransactionTemplate(txManager);
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        Gauge.builder("expense.audit.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        this.flushTimer = Timer.builder("expense.audit.flush").register(meterRegistry);
+        this.flushRows = DistributionSummary.builder("expense.audit.flush.rows").register(meterRegistry);
+        this.written = Counter.builder("expense.audit.rows").tag("result", "written").register(meterRegistry);
+        this.failed = Counter.builder("expense.audit.rows").tag("result", "failed").register(meterRegistry);
+        this.waited = Counter.builder("expense.audit.backpressure").tag("outcome", "waited").register(meterRegistry);
+        this.syncFallback = Counter.builder("expense.audit.backpressure").tag("outcome", "sync").register(meterRegistry);
+    }
+
+    @Override
+    public void write(List<ExpenseAction> actions) {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<StagedAction> rows = new ArrayList<>(actions.size());
+
+        for (ExpenseAction a : actions) {
+            Long actorUserId = a.getActor() != null ? a.getActor().getId() : null;
+            rows.add(new StagedAction(null, a.getExpense().getId(), actorUserId, a.getActionType(), a.getComment(),
+                    a.getTimestamp() != null ? a.getTimestamp() : now));
+        }
+
+        List<Long> staged = stagingRepo.append(rows);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(staged);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(staged);
+            }
+        });
+    }
+
+    /**
+     * Queues staged ids, waiting up to offerTimeout per id for space; ids that still don't fit are moved inline
+     *
+     * @param staged ids of committed staged rows
+     *
+     * @pre staged != NULL
+     *
+     * @post every id is queued or its row moved (or left staged for the next replay)
+     */
+    void enqueue(List<Long> staged) {
+        List<Long> overflow = null;
+
+        for (Long p : staged) {
+            if (queue.offer(p)) continue;
+
+            waited.increment();
+            if (offerWithTimeout(p)) continue;
+
+            if (overflow == null) overflow = new ArrayList<>();
+            overflow.add(p);
+        }
+
+        if (overflow != null) {
+            syncFallback.increment(overflow.size());
+            flush(overflow);
+        }
+    }
+
+    private boolean offerWithTimeout(Long p) {
+        try {
+            return queue.offer(p, offerTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Moves every row staged before the writer started, batchSize at a time in id order
+     * Rows queued meanwhile may be taken here or by drain, whichever deletes them first writes them
+     *
+     * @pre none
+     *
+     * @post every row staged when this was called is moved, or failed and is left staged
+     */
+    void replay() {
+        long replayed = 0;
+        long after = 0;
+        List<Long> ids;
+
+        while (!(ids = stagingRepo.idsAfter(after, batchSize)).isEmpty()) {
+            flush(ids);
+            replayed += ids.size();
+            after = ids.get(ids.size() - 1);
+        }
+
+        if (replayed > 0) log.info("Replayed {} staged audit rows", replayed);
+    }
+
+    /**
+     * Writer thread body: replay leftovers, then block for the first id, take whatever else is queued, move, repeat
+     * Keeps going after stop() until the queue is empty
+     */
+    private void drain() {
+        try {
+            replay();
+        } catch (RuntimeException ex) {
+            log.error("Audit replay failed, staged rows are left for the next start", ex);
+        }
+
+        List<Long> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                Long first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException ex) {
+                // stop() never interrupts, it clears running and waits; the loop condition drains the rest
+                log.debug("Audit writer interrupted, {} rows still queued", queue.size());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Moves staged rows to expense_actions in one transaction; if that fails, retries them one by one so a single
+     * bad row (e.g. its expense was deleted) doesn't take the batch down with it
+     * Ids no longer staged, already moved by a replay or another node, are skipped
+     *
+     * @param staged staged ids
+     *
+     * @pre staged != NULL AND staged is non-empty
+     *
+     * @post every row is moved, or counted as failed, logged and left staged for the next replay
+     */
+    void flush(List<Long> staged) {
+        long start = System.nanoTime();
+
+        try {
+            written.increment(tx.execute(status -> move(staged)));
+        } catch (RuntimeException batchFailure) {
+            log.warn("Audit batch of {} rows failed, retrying row by row", staged.size(), batchFailure);
+
+            for (Long id : staged) {
+                try {
+                    written.increment(tx.execute(status -> move(List.of(id))));
+                } catch (RuntimeException ex) {
+                    failed.increment();
+                    log.error("Audit row {} failed, left staged for the next replay", id, ex);
+                }
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            flushRows.record(staged.size());
+        }
+    }
+
+    /**
+     * @return how many rows were moved
+     */
+    private int move(List<Long> staged) {
+        List<StagedAction> rows = stagingRepo.take(staged);
+        if (!rows.isEmpty()) actionRepo.saveAll(rows.stream().map(this::toEntity).toList());
+        return rows.size();
+    }
+
+    private ExpenseAction toEntity(StagedAction row) {
+        ExpenseAction action = ExpenseService.newAction(expenseRepo.getReferenceById(row.expenseId()),
+                row.actorUserId() != null ? userRepo.getReferenceById(row.actorUserId()) : null, row.type(), row.comment());
+        action.setTimestamp(row.timestamp());
+
+        return action;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::drain, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,39 @@
+package com.dante.expense.service;
+
+import com.dante.expense.entity.ExpenseAction;
+
+import java.util.List;
+
+/**
+ * Where ExpenseService sends audit rows
+ * expense.audit.mode selects the implementation: sync (default) inserts in the caller's transaction,
+ * async stages rows in the caller's transaction and moves them to expense_actions from a background batch writer
+ *
+ * @invariant this != NULL
+ */
+public interface AuditWriter {
+
+    /**
+     * Records audit rows for the current unit of work
+     *
+     * @param actions unsaved actions, expense and actor may be uninitialized references
+     *
+     * @pre actions != NULL AND every action has expense, actor and actionType set
+     *
+     * @post each action is persisted, or will be once the current transaction commits
+     */
+    void write(List<ExpenseAction> actions);
+
+    /**
+     * Records one audit row
+     *
+     * @param action unsaved action
+     *
+     * @pre action != NULL
+     *
+     * @post as write(List.of(action))
+     */
+    default void write(ExpenseAction action) {
+        write(List.of(action));
+    }
+}
@@ -0,0 +1,52 @@
+package com.dante.expense.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Read-through on an AsyncCache where the thread that misses runs the load itself
+ * A plain Cache.get runs the loader inside the map's compute, holding a bin lock for the whole database read; a
+ * virtual thread blocked there pins its carrier. Here the lock only covers installing a future. Concurrent misses for
+ * a key still share one load, and a load that fails or returns NULL leaves nothing cached
+ */
+final class CacheLoads {
+
+    private CacheLoads() {}
+
+    /**
+     * Returns the cached value, loading it on the calling thread on a miss
+     *
+     * @param cache the cache
+     * @param key the key
+     * @param loader reads the value, may return NULL or throw
+     *
+     * @return the value, NULL if the loader returned NULL
+     *
+     * @pre all arguments != NULL
+     *
+     * @throws RuntimeException whatever the load that served this call threw
+     */
+    static <K, V> V get(AsyncCache<K, V> cache, K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> shared = cache.get(key, (k, executor) -> mine);
+
+        if (shared == mine) {
+            try {
+                mine.complete(loader.apply(key));
+            } catch (RuntimeException | Error ex) {
+                mine.completeExceptionally(ex);
+            }
+        }
+
+        try {
+            return shared.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) throw cause;
+            if (ex.getCause() instanceof Error cause) throw cause;
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.dante.expense.service;
+
+import com.dante.expense.exception.ConflictException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * In-process IdempotencyStore: each key maps to a future its first request completes
+ * Waiting requests block on that future, so in-flight duplicates cost no polling. Entries expire ttl after they're
+ * claimed and the whole store is bounded by the bytes of the bodies it holds, least recently used keys go first
+ *
+ * @invariant entries != NULL AND wait > 0
+ */
+@Component
+@ConditionalOnProperty(name = "expense.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class CaffeineIdempotencyStore implements IdempotencyStore {
+
+    // a key's own bytes plus a rough allowance for the entry around them
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final Cache<String, CompletableFuture<StoredResponse>> entries;
+    private final ConcurrentMap<String, CompletableFuture<StoredResponse>> map;
+    private final Duration wait;
+
+    /**
+     * @param ttl how long a key is remembered after it's claimed
+     * @param maxSize upper bound on the stored bodies plus per-entry overhead
+     * @param wait how long a request waits for another holding its key
+     *
+     * @pre ttl > 0 AND maxSize > 0 AND wait > 0
+     *
+     * @post the store is empty
+     */
+    public CaffeineIdempotencyStore(@Value("${expense.idempotency.ttl:PT24H}") Duration ttl,
+                                    @Value("${expense.idempotency.memory.max-size:64MB}") DataSize maxSize,
+                                    @Value("${expense.idempotency.wait:PT10S}") Duration wait) {
+        this.entries = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxSize.toBytes())
+                .<String, CompletableFuture<StoredResponse>>weigher((key, f) -> ENTRY_OVERHEAD + key.length()
+                        + (f.isDone() && f.getNow(null) != null ? f.getNow(null).body().length : 0))
+                .build();
+        this.map = entries.asMap();
+        this.wait = wait;
+    }
+
+    @Override
+    public Optional<StoredResponse> begin(String key) {
+        long deadline = System.nanoTime() + wait.toNanos();
+
+        while (true) {
+            CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+            CompletableFuture<StoredResponse> held = map.putIfAbsent(key, mine);
+            if (held == null) return Optional.empty();
+
+            try {
+                StoredResponse done = held.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (done != null) return Optional.of(done);
+                // released: race the other waiters to claim it
+            } catch (TimeoutException ex) {
+                throw new ConflictException("A request with this Idempotency-Key is still in progress, retry later.");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ConflictException("Interrupted waiting for a request with this Idempotency-Key.");
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(ex.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void complete(String key, StoredResponse response) {
+        CompletableFuture<StoredResponse> held = map.get(key);
+        if (held == null) return;
+
+        held.complete(response);
+        // re-put a completed future so the weigher counts the body
+        map.replace(key, held, CompletableFuture.completedFuture(response));
+    }
+
+    @Override
+    public void release(String key) {
+        CompletableFuture<StoredResponse> held = map.get(key);
+        if (held == null) return;
+
+        map.remove(key, held);
+        held.complete(null);
+    }
+}
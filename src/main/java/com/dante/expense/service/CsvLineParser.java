@@ -0,0 +1,67 @@
+package com.dante.expense.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal RFC 4180 field splitter for one CSV record held on a single line
+ * Supports quoted fields, embedded commas and doubled quotes; unquoted fields are trimmed
+ */
+final class CsvLineParser {
+
+    private CsvLineParser() {}
+
+    /**
+     * Splits a line into fields
+     *
+     * @param line one CSV record without its line terminator
+     *
+     * @return the fields in order
+     *
+     * @pre line != NULL
+     *
+     * @post return.size() >= 1
+     *
+     * @throws IllegalArgumentException if a quoted field is not closed
+     */
+    static List<String> parse(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+
+        int i = 0;
+        int n = line.length();
+
+        while (true) {
+            field.setLength(0);
+
+            // skip leading blanks, then decide whether the field is quoted
+            while (i < n && line.charAt(i) == ' ') i++;
+
+            if (i < n && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= n) throw new IllegalArgumentException("unterminated quoted field");
+
+                    char c = line.charAt(i++);
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < n && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                while (i < n && line.charAt(i) != ',') i++;
+                fields.add(field.toString());
+            } else {
+                int start = i;
+                while (i < n && line.charAt(i) != ',') i++;
+                fields.add(line.substring(start, i).trim());
+            }
+
+            if (i >= n) return fields;
+            i++; // the comma
+        }
+    }
+}
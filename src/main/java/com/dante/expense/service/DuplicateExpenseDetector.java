@@ -0,0 +1,166 @@
+package com.dante.expense.service;
+
+import com.dante.expense.entity.Expense;
+import com.dante.expense.repository.ExpenseRepository;
+import com.dante.expense.repository.ExpenseRepositoryCustom.DuplicateCandidate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Spots expenses that repeat one the same user already submitted
+ * An exact duplicate has the same owner, amount, currency, expense date and normalized description, found by
+ * fingerprint at any age. A near duplicate has the same owner, amount and currency, an expense date at most
+ * windowDays away and descriptions whose word sets overlap by at least minSimilarity (Jaccard)
+ *
+ * @invariant expenseRepo != NULL
+ * @invariant windowDays >= 0
+ * @invariant 0 < minSimilarity <= 1
+ */
+@Component
+public class DuplicateExpenseDetector {
+
+    /** Most candidates compared per check, the index probes rarely find more than a handful */
+    static final int MAX_CANDIDATES = 20;
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ExpenseRepository expenseRepo;
+    private final int windowDays;
+    private final double minSimilarity;
+
+    /**
+     * @param expenseRepo expense repository
+     * @param windowDays how many days apart two near duplicates may be dated
+     * @param minSimilarity smallest description overlap that counts as a near duplicate
+     *
+     * @pre expenseRepo != NULL
+     *
+     * @post this.expenseRepo = expenseRepo AND this.windowDays = windowDays AND this.minSimilarity = minSimilarity
+     *
+     * @throws IllegalArgumentException if windowDays < 0 or minSimilarity is outside (0, 1]
+     */
+    public DuplicateExpenseDetector(ExpenseRepository expenseRepo,
+                                    @Value("${expense.duplicates.window-days:3}") int windowDays,
+                                    @Value("${expense.duplicates.min-similarity:0.6}") double minSimilarity) {
+        if (windowDays < 0) throw new IllegalArgumentException("expense.duplicates.window-days must be >= 0");
+        if (!(minSimilarity > 0 && minSimilarity <= 1)) {
+            throw new IllegalArgumentException("expense.duplicates.min-similarity must be in (0, 1]");
+        }
+
+        this.expenseRepo = expenseRepo;
+        this.windowDays = windowDays;
+        this.minSimilarity = minSimilarity;
+    }
+
+    /**
+     * Looks for an existing expense the unsaved one duplicates
+     *
+     * @param e the expense about to be created, fingerprint set
+     *
+     * @return id of the duplicated expense, an exact duplicate preferred over a near one, empty if there is none
+     *
+     * @pre e != NULL AND e.user != NULL AND e.fingerprint != NULL
+     * @pre the caller holds expenseRepo.lockCreates(e.user.id) if the answer must still hold at insert time
+     *
+     * @post return present IMPLIES the expense with that id isn't REJECTED
+     */
+    public Optional<Long> findDuplicate(Expense e) {
+        LocalDate date = e.getExpenseDate();
+
+        String words = normalize(e.getDescription());
+        for (DuplicateCandidate c : expenseRepo.findDuplicateCandidates(e.getUser().getId(), e.getFingerprint(),
+                e.getAmount(), e.getCurrency(), date.minusDays(windowDays), date.plusDays(windowDays), MAX_CANDIDATES)) {
+            if (c.exact() || similarity(words, normalize(c.description())) >= minSimilarity) return Optional.of(c.id());
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Fingerprint of an expense, equal for expenses that differ only in amount scale, currency case or
+     * description case, accents, punctuation and spacing
+     *
+     * @param userId the owner
+     * @param amount the amount
+     * @param currency 3 letter currency code
+     * @param expenseDate the expense date
+     * @param description the description
+     *
+     * @return 32 hex chars, the first 128 bits of a SHA-256 over the normalized fields
+     *
+     * @pre all arguments != NULL
+     *
+     * @post return.length() = 32
+     */
+    public static String fingerprint(Long userId, BigDecimal amount, String currency, LocalDate expenseDate,
+                                     String description) {
+        String key = userId + "|" + amount.stripTrailingZeros().toPlainString() + "|" + currency.toUpperCase(Locale.ROOT)
+                + "|" + expenseDate + "|" + normalize(description);
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is unavailable", ex);
+        }
+    }
+
+    /**
+     * Reduces a description to lower-case words: accents are stripped, punctuation and runs of spaces become
+     * one space
+     *
+     * @param description the description
+     *
+     * @return the normalized description, possibly empty
+     *
+     * @pre description != NULL
+     *
+     * @post return has no leading, trailing or doubled spaces
+     */
+    static String normalize(String description) {
+        String folded = Normalizer.normalize(description, Normalizer.Form.NFKD).replaceAll("\\p{M}+", "");
+
+        return NON_WORD.matcher(folded.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * Jaccard similarity of the word sets of two normalized descriptions
+     *
+     * @param a normalized description
+     * @param b normalized description
+     *
+     * @return |words(a) ∩ words(b)| / |words(a) ∪ words(b)|, 1 when both have no words
+     *
+     * @pre a != NULL AND b != NULL
+     *
+     * @post 0 <= return <= 1
+     */
+    static double similarity(String a, String b) {
+        Set<String> wa = words(a);
+        Set<String> wb = words(b);
+        if (wa.isEmpty() && wb.isEmpty()) return 1;
+
+        long common = wa.stream().filter(wb::contains).count();
+        return (double) common / (wa.size() + wb.size() - common);
+    }
+
+    private static Set<String> words(String normalized) {
+        if (normalized.isEmpty()) return Set.of();
+
+        return Arrays.stream(normalized.split(" ")).collect(Collectors.toSet());
+    }
+}
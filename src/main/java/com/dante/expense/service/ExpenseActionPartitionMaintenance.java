@@ -0,0 +1,218 @@
+package com.dante.expense.service;
+
+import com.dante.expense.repository.ExpenseActionPartitionRepository;
+import com.dante.expense.repository.ExpenseActionPartitionRepository.Partition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps expense_actions range-partitioned by month on "timestamp" (UTC months)
+ *
+ * Converting the plain table Hibernate creates is an opt-in operator step (expense.audit.partitions.enabled=true):
+ * the unique index and bound CHECK the conversion needs are built first without blocking writes, then a short
+ * exclusive lock swaps the table for a partitioned one (see ExpenseActionPartitionRepository). Left off, a plain
+ * table is left alone. Once the table is partitioned each run, on startup and then on expense.audit.partitions.cron:
+ *  - creates the partitions for the current month and the next months-ahead months, so inserts never
+ *    hit a missing partition while the job is down for less than that
+ *  - detaches every partition whose rows are all older than retention-months before the current month,
+ *    and moves it to archive-schema; vacuum and index scans no longer touch it
+ * Runs take an advisory lock, so with several instances only one does the work.
+ *
+ * @invariant monthsAhead >= 1 AND retentionMonths >= 1 AND archiveSchema matches IDENTIFIER
+ */
+@Component
+public class ExpenseActionPartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpenseActionPartitionMaintenance.class);
+
+    private final ExpenseActionPartitionRepository partitions;
+    private final TransactionTemplate tx;
+    private final boolean convert;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final String archiveSchema;
+
+    /**
+     * @param partitions partition DDL
+     * @param txManager transaction manager, each run is one transaction
+     * @param convert whether a plain expense_actions is converted; a partitioned one is maintained either way
+     * @param monthsAhead how many months past the current one get a partition ahead of time
+     * @param retentionMonths how many whole months before the current one stay attached
+     * @param archiveSchema schema detached partitions are moved to
+     *
+     * @pre partitions != NULL AND txManager != NULL AND monthsAhead >= 1 AND retentionMonths >= 1
+     *
+     * @post fields are set
+     *
+     * @throws IllegalArgumentException if a setting is out of range or archiveSchema isn't a plain identifier
+     */
+    public ExpenseActionPartitionMaintenance(ExpenseActionPartitionRepository partitions, PlatformTransactionManager txManager,
+                                             @Value("${expense.audit.partitions.enabled:false}") boolean convert,
+                                             @Value("${expense.audit.partitions.months-ahead:3}") int monthsAhead,
+                                             @Value("${expense.audit.partitions.retention-months:24}") int retentionMonths,
+                                             @Value("${expense.audit.partitions.archive-schema:audit_archive}") String archiveSchema) {
+        if (monthsAhead < 1 || retentionMonths < 1) {
+            throw new IllegalArgumentException("expense.audit.partitions months-ahead and retention-months must be >= 1");
+        }
+        if (!archiveSchema.matches(ExpenseActionPartitionRepository.IDENTIFIER)) {
+            throw new IllegalArgumentException("expense.audit.partitions.archive-schema is not a plain identifier: " + archiveSchema);
+        }
+
+        this.partitions = partitions;
+        this.tx = new TransactionTemplate(txManager);
+        this.convert = convert;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.archiveSchema = archiveSchema;
+    }
+
+    /**
+     * Runs once the schema scripts have run, so upcoming partitions exist before the first request
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    /**
+     * Converts the table if asked to and needed, then creates upcoming partitions and archives expired ones
+     * in one transaction
+     *
+     * @pre none
+     *
+     * @post if the lock was free and the table is partitioned: partitions cover the current month through
+     *       monthsAhead months ahead AND no attached partition ends on or before the retention cutoff
+     */
+    @Scheduled(cron = "${expense.audit.partitions.cron:0 30 2 * * *}", zone = "UTC")
+    public void maintain() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+
+        if (!partitions.isPartitioned()) {
+            if (convert) convert(start(current.plusMonths(1)));
+            if (!partitions.isPartitioned()) return;
+        }
+
+        tx.executeWithoutResult(status -> maintainInTransaction(current));
+    }
+
+    /**
+     * Prepares the plain table while writes go on, then swaps it for a partitioned one in a short transaction
+     * If the swap fails the bound CHECK is dropped again, the next run starts over
+     */
+    private void convert(OffsetDateTime legacyUpper) {
+        if (!partitions.prepareConversion(legacyUpper)) {
+            log.info("expense_actions partition maintenance is running elsewhere, skipping");
+            return;
+        }
+
+        try {
+            tx.executeWithoutResult(status -> {
+                if (!partitions.tryLock() || partitions.isPartitioned()) return;
+
+                partitions.convertToPartitioned(legacyUpper);
+                log.info("Converted expense_actions to a partitioned table, existing rows kept in {}", ExpenseActionPartitionRepository.LEGACY);
+            });
+        } catch (RuntimeException ex) {
+            log.warn("Converting expense_actions to a partitioned table failed, retrying on the next run", ex);
+            try {
+                tx.executeWithoutResult(status -> {
+                    if (!partitions.isPartitioned()) partitions.dropLegacyBound();
+                });
+            } catch (RuntimeException dropFailure) {
+                log.error("Could not drop {}, inserts from {} on fail until the next run replaces it",
+                        ExpenseActionPartitionRepository.LEGACY_BOUND, legacyUpper, dropFailure);
+            }
+        }
+    }
+
+    private void maintainInTransaction(YearMonth current) {
+        if (!partitions.tryLock()) {
+            log.info("expense_actions partition maintenance is running elsewhere, skipping");
+            return;
+        }
+
+        List<Partition> attached = partitions.partitions();
+
+        for (YearMonth m : monthsToCreate(attached, current, monthsAhead)) {
+            partitions.createPartition(nameOf(m), start(m), start(m.plusMonths(1)));
+            log.info("Created partition {}", nameOf(m));
+        }
+
+        for (Partition p : partitionsToArchive(attached, current, retentionMonths)) {
+            partitions.detachAndArchive(p.name(), archiveSchema);
+            log.info("Archived partition {} (rows before {}) to schema {}", p.name(), p.to(), archiveSchema);
+        }
+    }
+
+    /**
+     * Months in [current, current + ahead] with no partition yet. Only months at or after the highest existing
+     * upper bound qualify, those before it are already covered
+     *
+     * @param attached existing partitions
+     * @param current the current month
+     * @param ahead months past current to cover
+     *
+     * @return months to create, ascending
+     *
+     * @pre attached != NULL AND current != NULL AND ahead >= 0
+     *
+     * @post return != NULL
+     */
+    static List<YearMonth> monthsToCreate(List<Partition> attached, YearMonth current, int ahead) {
+        OffsetDateTime covered = attached.stream().map(Partition::to).max(OffsetDateTime::compareTo).orElse(null);
+
+        // a gap left by a long outage is filled month by month from the end of coverage
+        YearMonth first = current;
+        if (covered != null) {
+            YearMonth end = YearMonth.from(covered.withOffsetSameInstant(ZoneOffset.UTC));
+            if (end.isBefore(first)) first = end;
+        }
+
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth m = first; !m.isAfter(current.plusMonths(ahead)); m = m.plusMonths(1)) {
+            if (covered == null || !start(m).isBefore(covered)) months.add(m);
+        }
+
+        return months;
+    }
+
+    /**
+     * Partitions whose upper bound is on or before the first day of current - retention
+     *
+     * @param attached existing partitions
+     * @param current the current month
+     * @param retention months kept before current
+     *
+     * @return partitions to detach
+     *
+     * @pre attached != NULL AND current != NULL AND retention >= 0
+     *
+     * @post return != NULL
+     */
+    static List<Partition> partitionsToArchive(List<Partition> attached, YearMonth current, int retention) {
+        OffsetDateTime cutoff = start(current.minusMonths(retention));
+
+        return attached.stream().filter(p -> !p.to().isAfter(cutoff)).toList();
+    }
+
+    static String nameOf(YearMonth m) {
+        return String.format("%s_p%04d_%02d", ExpenseActionPartitionRepository.TABLE, m.getYear(), m.getMonthValue());
+    }
+
+    private static OffsetDateTime start(YearMonth m) {
+        return m.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+    }
+}
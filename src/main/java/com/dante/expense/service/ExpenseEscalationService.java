@@ -0,0 +1,162 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.ExpenseEvent;
+import com.dante.expense.dto.ExpenseResponse;
+import com.dante.expense.entity.ExpenseAction;
+import com.dante.expense.entity.ExpenseActionType;
+import com.dante.expense.entity.ExpenseStatus;
+import com.dante.expense.repository.ExpenseRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Escalates expenses left SUBMITTED longer than the approval SLA (expense.sla.enabled=true)
+ *
+ * Every scan-interval the oldest un-escalated breaches are marked escalated in chunks of chunk-size, one transaction
+ * per chunk, each with an ESCALATE action (no actor) and an ExpenseEvent through the outbox and event streams, so
+ * managers watching the approval queue see it. An expense is escalated once; it stays SUBMITTED until a manager acts.
+ * Chunks claim rows with SKIP LOCKED, so scans on several nodes split the breaches and never wait on a transition.
+ *
+ * Metrics: expense.sla.escalations (breaches escalated), expense.sla.scan (scan duration), expense.sla.breached
+ * (expenses SUBMITTED past the SLA at the end of the last scan, escalated or not)
+ *
+ * @invariant all collaborators != NULL AND maxAge > 0 AND chunkSize > 0
+ */
+@Service
+@ConditionalOnProperty(name = "expense.sla.enabled", havingValue = "true")
+public class ExpenseEscalationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpenseEscalationService.class);
+
+    private final ExpenseRepository expenseRepo;
+    private final AuditWriter auditWriter;
+    private final ExpenseResponseCache expenseCache;
+    private final ExpenseOutbox outbox;
+    private final ExpenseEventPublisher events;
+    private final TransactionTemplate tx;
+    private final Duration maxAge;
+    private final int chunkSize;
+
+    private final AtomicLong breached = new AtomicLong();
+    private final Counter escalations;
+    private final Timer scans;
+
+    /**
+     * @param expenseRepo expense repository
+     * @param auditWriter where ESCALATE actions go
+     * @param expenseCache read-through cache behind getExpense
+     * @param outbox outbox taking each chunk's events, in the chunk's transaction
+     * @param events where committed escalations are announced
+     * @param txManager transaction manager, each chunk runs in its own transaction
+     * @param meterRegistry registry for the SLA metrics
+     * @param maxAge how long an expense may stay SUBMITTED before it's escalated
+     * @param chunkSize expenses escalated per transaction
+     *
+     * @pre all objects != NULL AND maxAge > 0 AND chunkSize > 0
+     *
+     * @post fields are set and the metrics are registered
+     */
+    public ExpenseEscalationService(ExpenseRepository expenseRepo, AuditWriter auditWriter, ExpenseResponseCache expenseCache,
+                                    ExpenseOutbox outbox, ExpenseEventPublisher events, PlatformTransactionManager txManager,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${expense.sla.submitted-max-age:P3D}") Duration maxAge,
+                                    @Value("${expense.sla.chunk-size:500}") int chunkSize) {
+        this.expenseRepo = expenseRepo;
+        this.auditWriter = auditWriter;
+        this.expenseCache = expenseCache;
+        this.outbox = outbox;
+        this.events = events;
+        this.tx = new TransactionTemplate(txManager);
+        this.maxAge = maxAge;
+        this.chunkSize = chunkSize;
+
+        Gauge.builder("expense.sla.breached", breached, AtomicLong::get).register(meterRegistry);
+        this.escalations = Counter.builder("expense.sla.escalations").register(meterRegistry);
+        this.scans = Timer.builder("expense.sla.scan").register(meterRegistry);
+    }
+
+    /**
+     * Escalates every breach not held by another node, then refreshes the breach gauge
+     *
+     * @pre none
+     *
+     * @post every SUBMITTED expense created more than maxAge ago is escalated, unless another transaction held it
+     */
+    @Scheduled(fixedDelayString = "${expense.sla.scan-interval:PT5M}")
+    public void scan() {
+        long escalated = scans.record(() -> {
+            OffsetDateTime now = OffsetDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            OffsetDateTime cutoff = now.minus(maxAge);
+
+            long total = 0;
+            int n;
+            do {
+                n = escalateChunk(cutoff, now);
+                escalations.increment(n);
+                total += n;
+            } while (n == chunkSize);
+
+            breached.set(expenseRepo.countSubmittedBefore(cutoff));
+            return total;
+        });
+
+        if (escalated > 0) log.info("Escalated {} expenses SUBMITTED for more than {}", escalated, maxAge);
+    }
+
+    /**
+     * Escalates one chunk of the oldest breaches in its own transaction
+     *
+     * @param cutoff expenses created before this are in breach
+     * @param now the escalation time
+     *
+     * @return how many expenses were escalated
+     *
+     * @pre cutoff != NULL AND now != NULL
+     *
+     * @post each escalated expense has an ESCALATE action, an outbox row and an event published for after commit
+     */
+    int escalateChunk(OffsetDateTime cutoff, OffsetDateTime now) {
+        return tx.execute(status -> {
+            List<ExpenseResponse> escalated = expenseRepo.escalateStale(cutoff, now, chunkSize);
+            if (escalated.isEmpty()) return 0;
+
+            String comment = "No decision within " + maxAge + ".";
+            List<ExpenseAction> actions = new ArrayList<>(escalated.size());
+            List<ExpenseEvent> changes = new ArrayList<>(escalated.size());
+            List<Long> ids = new ArrayList<>(escalated.size());
+
+            for (ExpenseResponse e : escalated) {
+                ExpenseAction action = ExpenseService.newAction(expenseRepo.getReferenceById(e.getId()), null,
+                        ExpenseActionType.ESCALATE, comment);
+                action.setTimestamp(now);
+                actions.add(action);
+                changes.add(ExpenseService.eventOf(e, ExpenseStatus.SUBMITTED, null, ExpenseActionType.ESCALATE, comment));
+                ids.add(e.getId());
+            }
+
+            auditWriter.write(actions);
+            expenseCache.evictAllAfterCommit(ids);
+            outbox.append(changes);
+            events.publish(changes);
+
+            return escalated.size();
+        });
+    }
+}
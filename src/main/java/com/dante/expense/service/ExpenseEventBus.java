@@ -0,0 +1,95 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.ExpenseEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * In-process fan-out of committed expense events to this instance's subscribers
+ * An ExpenseEventPublisher feeds it, either straight from committing transactions or from other instances through
+ * the database. Delivery runs on the delivering thread, so listeners must only hand events off, never block
+ *
+ * @invariant subscribers != NULL
+ */
+@Component
+public class ExpenseEventBus {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpenseEventBus.class);
+
+    /**
+     * A registered listener, closing it stops delivery
+     */
+    public interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private record Subscriber(Predicate<ExpenseEvent> filter, Consumer<ExpenseEvent> listener) {}
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Counter delivered;
+
+    /**
+     * @param meterRegistry registry for expense.events.subscribers and expense.events.delivered
+     *
+     * @pre meterRegistry != NULL
+     *
+     * @post there are no subscribers
+     */
+    public ExpenseEventBus(MeterRegistry meterRegistry) {
+        Gauge.builder("expense.events.subscribers", subscribers, Set::size).register(meterRegistry);
+        this.delivered = Counter.builder("expense.events.delivered").register(meterRegistry);
+    }
+
+    /**
+     * Registers a listener for the events matching a filter
+     *
+     * @param filter which events the listener wants
+     * @param listener receives matching events on the delivering thread, must not block
+     *
+     * @return the subscription
+     *
+     * @pre filter != NULL AND listener != NULL
+     *
+     * @post until return is closed, every delivered event that matches filter reaches listener
+     */
+    public Subscription subscribe(Predicate<ExpenseEvent> filter, Consumer<ExpenseEvent> listener) {
+        Subscriber s = new Subscriber(filter, listener);
+        subscribers.add(s);
+        return () -> subscribers.remove(s);
+    }
+
+    /**
+     * Hands committed events to every matching subscriber, in order
+     * A listener that throws is logged and skipped, the others still get the event
+     *
+     * @param events the events
+     *
+     * @pre events != NULL
+     *
+     * @post each matching subscriber's listener has been called with each event it matches
+     */
+    public void deliver(List<ExpenseEvent> events) {
+        for (ExpenseEvent e : events) {
+            for (Subscriber s : subscribers) {
+                if (!s.filter().test(e)) continue;
+                try {
+                    s.listener().accept(e);
+                    delivered.increment();
+                } catch (RuntimeException ex) {
+                    log.warn("Expense event listener failed on expense {}", e.expenseId(), ex);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.ExpenseEvent;
+
+import java.util.List;
+
+/**
+ * Where ExpenseService sends the events of a workflow change
+ * expense.events.fanout selects the implementation: local (default) delivers to this instance's ExpenseEventBus after
+ * commit, notify sends them through Postgres NOTIFY so every instance's bus gets them
+ *
+ * @invariant this != NULL
+ */
+public interface ExpenseEventPublisher {
+
+    /**
+     * Publishes events for the current unit of work
+     *
+     * @param events the events
+     *
+     * @pre events != NULL
+     *
+     * @post subscribers receive events once the current transaction commits, never if it rolls back
+     */
+    void publish(List<ExpenseEvent> events);
+}
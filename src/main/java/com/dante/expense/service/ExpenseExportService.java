@@ -0,0 +1,78 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.ExpenseExportFilter;
+import com.dante.expense.entity.Role;
+import com.dante.expense.exception.ForbiddenException;
+import com.dante.expense.exception.NotFoundException;
+import com.dante.expense.repository.ExpenseExportRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Ledger export of expenses as CSV, streamed from the database to the caller's output
+ *
+ * @invariant userRoles != NULL AND exportRepo != NULL
+ */
+@Service
+public class ExpenseExportService {
+
+    /**
+     * Opens the output only once the caller is authorized, so errors can still become a normal error response
+     */
+    @FunctionalInterface
+    public interface ExportTarget {
+        /**
+         * @return the stream the CSV is written to
+         */
+        OutputStream open() throws IOException;
+    }
+
+    private final UserRoleCache userRoles;
+    private final ExpenseExportRepository exportRepo;
+
+    /**
+     * @param userRoles cached user roles
+     * @param exportRepo CSV export repository
+     *
+     * @pre userRoles != NULL AND exportRepo != NULL
+     *
+     * @post this.userRoles = userRoles AND this.exportRepo = exportRepo
+     */
+    public ExpenseExportService(UserRoleCache userRoles, ExpenseExportRepository exportRepo) {
+        this.userRoles = userRoles;
+        this.exportRepo = exportRepo;
+    }
+
+    /**
+     * Streams every expense matching the filter as CSV
+     * Runs in one read-only transaction so the fallback cursor can fetch in batches
+     *
+     * @param actorUserId the finance user running the export
+     * @param filter export filters
+     * @param target where the CSV goes, opened after the role check and closed when done
+     *
+     * @pre actorUserId != NULL AND filter != NULL AND target != NULL
+     *
+     * @post the opened stream holds a header line and one line per matching expense
+     *
+     * @throws NotFoundException if actor user doesn't exist
+     * @throws ForbiddenException if actor isn't FINANCE
+     * @throws UncheckedIOException if the output can't be opened or written
+     */
+    @Transactional(readOnly = true)
+    public void exportCsv(Long actorUserId, ExpenseExportFilter filter, ExportTarget target) {
+        if (userRoles.roleOf(actorUserId) != Role.FINANCE) {
+            throw new ForbiddenException("Only FINANCE can export expenses.");
+        }
+
+        try (OutputStream out = target.open()) {
+            exportRepo.writeCsv(filter, out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.CreateExpenseRequest;
+import com.dante.expense.dto.ExpenseImportRow;
+import com.dante.expense.dto.ImportReport;
+import com.dante.expense.dto.ImportReport.RowError;
+import com.dante.expense.entity.Expense;
+import com.dante.expense.entity.ExpenseAction;
+import com.dante.expense.entity.ExpenseActionType;
+import com.dante.expense.entity.ExpenseCategory;
+import com.dante.expense.entity.Role;
+import com.dante.expense.entity.User;
+import com.dante.expense.exception.BadRequestException;
+import com.dante.expense.exception.ForbiddenException;
+import com.dante.expense.exception.NotFoundException;
+import com.dante.expense.repository.ExpenseActionRepository;
+import com.dante.expense.repository.ExpenseRepository;
+import com.dante.expense.repository.UserRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk ingest of expenses from CSV or NDJSON, e.g. a corporate-card feed
+ *
+ * The body is read one line at a time; valid rows are written in CHUNK_SIZE transactions (expenses plus their
+ * SUBMIT actions, batched by Hibernate) and then dropped, so memory use doesn't grow with the size of the file.
+ * A failed chunk rolls back alone, chunks already committed stay.
+ *
+ * @invariant expenseRepo != NULL AND userRepo != NULL AND actionRepo != NULL
+ * @invariant validator != NULL AND objectMapper != NULL AND tx != NULL AND userRoles != NULL AND outbox != NULL
+ */
+@Service
+public class ExpenseImportService {
+
+    /** Rows written per transaction */
+    public static final int CHUNK_SIZE = 500;
+
+    /** CSV columns, matched case-insensitively against the header line */
+    private static final List<String> CSV_COLUMNS = List.of("userId", "amount", "currency", "category", "description", "expenseDate");
+
+    /**
+     * Supported body formats
+     */
+    public enum Format { CSV, NDJSON }
+
+    private final ExpenseRepository expenseRepo;
+    private final UserRepository userRepo;
+    private final ExpenseActionRepository actionRepo;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate tx;
+    private final UserRoleCache userRoles;
+    private final ExpenseRollupService rollups;
+    private final FxRateCache fx;
+    private final ExpenseOutbox outbox;
+
+    /**
+     * Constructs the import service
+     *
+     * @param expenseRepo expense repository
+     * @param userRepo user repository
+     * @param actionRepo audit repository
+     * @param validator bean validator applying the CreateExpenseRequest rules
+     * @param objectMapper json mapper for NDJSON rows
+     * @param txManager transaction manager used for per-chunk transactions
+     * @param userRoles cached user roles for the FINANCE check
+     * @param rollups spend rollups, moved in the same transaction as each chunk
+     * @param fx cached FX rates for the base currency amount of each row
+     * @param outbox outbox taking each chunk's SUBMIT events, in the chunk's transaction
+     *
+     * @pre all arguments != NULL
+     *
+     * @post fields are set from the arguments
+     */
+    public ExpenseImportService(ExpenseRepository expenseRepo, UserRepository userRepo, ExpenseActionRepository actionRepo,
+                                Validator validator, ObjectMapper objectMapper, PlatformTransactionManager txManager,
+                                UserRoleCache userRoles, ExpenseRollupService rollups,
+                                FxRateCache fx, ExpenseOutbox outbox) {
+        this.expenseRepo = expenseRepo;
+        this.userRepo = userRepo;
+        this.actionRepo = actionRepo;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.tx = new TransactionTemplate(txManager);
+        this.userRoles = userRoles;
+        this.rollups = rollups;
+        this.fx = fx;
+        this.outbox = outbox;
+    }
+
+    /**
+     * Imports every valid row of the body as a SUBMITTED expense owned by the row's userId
+     *
+     * @param actorUserId the finance user running the import
+     * @param format body format
+     * @param body the raw body, read to the end but not closed
+     *
+     * @return counts plus the first MAX_REPORTED_ERRORS row errors
+     *
+     * @pre actorUserId != NULL AND format != NULL AND body != NULL
+     *
+     * @post return.imported expenses are persisted, each with a SUBMIT action by its owner
+     * @post every other row is counted in return.failed
+     *
+     * @throws NotFoundException if the actor doesn't exist
+     * @throws ForbiddenException if the actor isn't FINANCE
+     * @throws BadRequestException if a CSV header is missing or lacks a column
+     */
+    public ImportReport importExpenses(Long actorUserId, Format format, InputStream body) {
+        if (userRoles.roleOf(actorUserId) != Role.FINANCE) {
+            throw new ForbiddenException("Only FINANCE can import expenses.");
+        }
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        RowReader rows = (format == Format.CSV) ? new CsvRows(in) : new NdjsonRows(in);
+        Tally tally = new Tally();
+        String comment = "Imported by user " + actorUserId;
+
+        List<PendingRow> chunk = new ArrayList<>(CHUNK_SIZE);
+
+        try {
+            for (ParsedRow r = rows.next(); r != null; r = rows.next()) {
+                tally.rowsRead++;
+
+                String error = (r.error() != null) ? r.error() : validate(r.row());
+                if (error != null) {
+                    tally.fail(r.line(), error);
+                    continue;
+                }
+
+                chunk.add(new PendingRow(r.line(), r.row().userId(), r.row().toRequest()));
+
+                if (chunk.size() == CHUNK_SIZE) {
+                    writeChunk(chunk, comment, tally);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed reading import body after line " + tally.rowsRead, ex);
+        }
+
+        if (!chunk.isEmpty()) writeChunk(chunk, comment, tally);
+
+        return tally.toReport();
+    }
+
+    /**
+     * Applies the CreateExpenseRequest rules plus the owner check to one row
+     *
+     * @param row parsed row
+     *
+     * @return NULL if valid, OW a description of every violation
+     *
+     * @pre row != NULL
+     *
+     * @post none
+     */
+    private String validate(ExpenseImportRow row) {
+        Set<ConstraintViolation<CreateExpenseRequest>> violations = validator.validate(row.toRequest());
+
+        List<String> problems = violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        if (row.userId() == null) problems.add(0, "userId: must not be null");
+
+        return problems.isEmpty() ? null : String.join("; ", problems);
+    }
+
+    /**
+     * Writes one chunk in its own transaction
+     * Owners are checked with one id query; rows with unknown owners fail individually,
+     * a database error fails every row of the chunk
+     *
+     * @param chunk validated rows
+     * @param comment comment recorded on each SUBMIT action
+     * @param tally running totals
+     *
+     * @pre chunk != NULL AND chunk.size() <= CHUNK_SIZE
+     *
+     * @post each row in chunk is counted as imported or failed
+     */
+    private void writeChunk(List<PendingRow> chunk, String comment, Tally tally) {
+        Set<Long> owners = new HashSet<>();
+        for (PendingRow r : chunk) owners.add(r.userId());
+
+        List<PendingRow> unknownOwner = new ArrayList<>();
+
+        try {
+            tx.executeWithoutResult(status -> {
+                Set<Long> known = userRepo.findExistingIds(owners);
+                List<Expense> expenses = new ArrayList<>(chunk.size());
+                List<ExpenseAction> actions = new ArrayList<>(chunk.size());
+
+                for (PendingRow r : chunk) {
+                    if (!known.contains(r.userId())) {
+                        unknownOwner.add(r);
+                        continue;
+                    }
+
+                    User owner = userRepo.getReferenceById(r.userId());
+                    Expense e = ExpenseService.newExpense(owner, r.request(), fx);
+
+                    expenses.add(e);
+                    actions.add(ExpenseService.newAction(e, owner, ExpenseActionType.SUBMIT, comment));
+                }
+
+                expenseRepo.saveAll(expenses);
+                actionRepo.saveAll(actions);
+                rollups.recordCreated(expenses);
+                outbox.append(expenses.stream().map(e -> ExpenseService.submitted(e, comment)).toList());
+            });
+        } catch (DataAccessException | TransactionException ex) {
+            for (PendingRow r : chunk) tally.fail(r.line(), "Chunk rolled back: " + ex.getMostSpecificCause().getMessage());
+            return;
+        }
+
+        tally.imported += chunk.size() - unknownOwner.size();
+
+        for (PendingRow r : unknownOwner) tally.fail(r.line(), "User " + r.userId() + " not found.");
+    }
+
+    /**
+     * A row that passed validation, waiting for its chunk
+     */
+    private record PendingRow(long line, Long userId, CreateExpenseRequest request) {}
+
+    /**
+     * Output of a row reader: either a row or the reason it couldn't be parsed
+     *
+     * @invariant (row = NULL) != (error = NULL)
+     */
+    private record ParsedRow(long line, ExpenseImportRow row, String error) {}
+
+    /**
+     * Pulls rows off the body one line at a time, skipping blank lines
+     */
+    private interface RowReader {
+        /**
+         * @return the next row, NULL at end of input
+         */
+        ParsedRow next() throws IOException;
+    }
+
+    /**
+     * CSV with a header line naming the CSV_COLUMNS in any order
+     */
+    private static final class CsvRows implements RowReader {
+        private final BufferedReader in;
+        private Map<String, Integer> columns;
+        private long line;
+
+        CsvRows(BufferedReader in) {
+            this.in = in;
+        }
+
+        @Override
+        public ParsedRow next() throws IOException {
+            String text = nextLine();
+            if (text == null) return null;
+
+            if (columns == null) {
+                columns = header(text);
+                text = nextLine();
+                if (text == null) return null;
+            }
+
+            try {
+                List<String> f = CsvLineParser.parse(text);
+
+                ExpenseImportRow row = new ExpenseImportRow(
+                        parse(f, "userId", Long::valueOf),
+                        parse(f, "amount", BigDecimal::new),
+                        parse(f, "currency", s -> s),
+                        parse(f, "category", s -> ExpenseCategory.valueOf(s.toUpperCase(Locale.ROOT))),
+                        parse(f, "description", s -> s),
+                        parse(f, "expenseDate", LocalDate::parse)
+                );
+                return new ParsedRow(line, row, null);
+            } catch (RuntimeException ex) {
+                return new ParsedRow(line, null, ex.getMessage());
+            }
+        }
+
+        private String nextLine() throws IOException {
+            String text;
+            do {
+                text = in.readLine();
+                line++;
+            } while (text != null && text.isBlank());
+            return text;
+        }
+
+        private Map<String, Integer> header(String text) {
+            List<String> names = CsvLineParser.parse(text);
+            Map<String, Integer> byName = new HashMap<>();
+
+            for (int i = 0; i < names.size(); i++) byName.put(names.get(i).toLowerCase(Locale.ROOT), i);
+
+            for (String col : CSV_COLUMNS) {
+                if (!byName.containsKey(col.toLowerCase(Locale.ROOT))) {
+                    throw new BadRequestException("CSV header is missing column " + col + ", expected " + CSV_COLUMNS);
+                }
+            }
+            return byName;
+        }
+
+        private <T> T parse(List<String> fields, String column, Function<String, T> conv) {
+            int i = columns.get(column.toLowerCase(Locale.ROOT));
+            String raw = (i < fields.size()) ? fields.get(i) : "";
+
+            if (raw.isEmpty()) return null;
+
+            try {
+                return conv.apply(raw);
+            } catch (RuntimeException ex) {
+                throw new IllegalArgumentException(column + ": invalid value '" + raw + "'");
+            }
+        }
+    }
+
+    /**
+     * One JSON object per line with the ExpenseImportRow fields
+     */
+    private final class NdjsonRows implements RowReader {
+        private final BufferedReader in;
+        private long line;
+
+        NdjsonRows(BufferedReader in) {
+            this.in = in;
+        }
+
+        @Override
+        public ParsedRow next() throws IOException {
+            String text;
+            do {
+                text = in.readLine();
+                line++;
+            } while (text != null && text.isBlank());
+
+            if (text == null) return null;
+
+            try {
+                return new ParsedRow(line, objectMapper.readValue(text, ExpenseImportRow.class), null);
+            } catch (JacksonException ex) {
+                return new ParsedRow(line, null, "Invalid JSON: " + ex.getOriginalMessage());
+            }
+        }
+    }
+
+    /**
+     * Running totals, keeps at most MAX_REPORTED_ERRORS errors
+     */
+    private static final class Tally {
+        long rowsRead;
+        long imported;
+        long failed;
+        final List<RowError> errors = new ArrayList<>();
+
+        void fail(long line, String message) {
+            failed++;
+            if (errors.size() < ImportReport.MAX_REPORTED_ERRORS) errors.add(new RowError(line, message));
+        }
+
+        ImportReport toReport() {
+            // owner checks run per chunk, so errors can arrive slightly out of line order
+            errors.sort(Comparator.comparingLong(RowError::line));
+            return new ImportReport(rowsRead, imported, failed, errors, failed > errors.size());
+        }
+    }
+}
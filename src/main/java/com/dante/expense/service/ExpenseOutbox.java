@@ -0,0 +1,59 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.ExpenseEvent;
+import com.dante.expense.repository.ExpenseOutboxRepository;
+import com.dante.expense.repository.ExpenseOutboxRepository.NewEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes workflow events to expense_outbox in the caller's transaction, for OutboxRelay to deliver downstream
+ * An event is in the outbox exactly when its action committed. Does nothing unless expense.outbox.enabled is true,
+ * so the table doesn't grow without a relay draining it
+ *
+ * @invariant outboxRepo != NULL AND objectMapper != NULL
+ */
+@Component
+public class ExpenseOutbox {
+
+    private final ExpenseOutboxRepository outboxRepo;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+
+    /**
+     * @param outboxRepo outbox repository
+     * @param objectMapper writes the stored payloads
+     * @param enabled whether events are recorded
+     *
+     * @pre outboxRepo != NULL AND objectMapper != NULL
+     *
+     * @post fields are set
+     */
+    public ExpenseOutbox(ExpenseOutboxRepository outboxRepo, ObjectMapper objectMapper,
+                         @Value("${expense.outbox.enabled:false}") boolean enabled) {
+        this.outboxRepo = outboxRepo;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Records events in the current transaction
+     *
+     * @param events the events, in the order they happened
+     *
+     * @pre events != NULL AND a transaction is active
+     *
+     * @post enabled IMPLIES one outbox row per event, committed or rolled back with the caller
+     */
+    public void append(List<ExpenseEvent> events) {
+        if (!enabled || events.isEmpty()) return;
+
+        List<NewEvent> rows = new ArrayList<>(events.size());
+        for (ExpenseEvent e : events) rows.add(new NewEvent(e.expenseId(), e.action(), objectMapper.writeValueAsString(e)));
+        outboxRepo.append(rows);
+    }
+}
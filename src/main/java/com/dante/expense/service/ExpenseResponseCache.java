@@ -0,0 +1,109 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.ExpenseResponse;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of expense responses keyed by expense id
+ * Writers evict after their transaction commits, so a reader can't re-cache the pre-commit row;
+ * the TTL bounds staleness from writes made by other instances or directly in the database
+ * Statistics are published as the "cache.*" meters with tag cache=expenses
+ *
+ * @invariant responses != NULL
+ */
+@Component
+public class ExpenseResponseCache {
+
+    /** Name the cache metrics are tagged with */
+    public static final String CACHE_NAME = "expenses";
+
+    private final AsyncCache<Long, ExpenseResponse> responses;
+
+    /**
+     * @param meterRegistry registry the cache statistics are bound to
+     * @param maxSize max number of cached expenses
+     * @param ttl how long an entry is trusted after it's loaded
+     *
+     * @pre meterRegistry != NULL AND maxSize > 0 AND ttl > 0
+     *
+     * @post the cache is empty and registered with meterRegistry
+     */
+    public ExpenseResponseCache(MeterRegistry meterRegistry,
+                                @Value("${expense.cache.expenses.max-size:10000}") long maxSize,
+                                @Value("${expense.cache.expenses.ttl:PT10M}") Duration ttl) {
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, CACHE_NAME);
+    }
+
+    /**
+     * Returns the cached response, loading it on a miss
+     * Concurrent misses for the same id share one load, run on the first caller's thread outside any cache lock
+     *
+     * @param expenseId the expense id
+     * @param loader reads the expense, may throw to signal it doesn't exist
+     *
+     * @return the response
+     *
+     * @pre expenseId != NULL AND loader != NULL
+     *
+     * @post return != NULL
+     */
+    public ExpenseResponse get(Long expenseId, Function<Long, ExpenseResponse> loader) {
+        return CacheLoads.get(responses, expenseId, loader);
+    }
+
+    /**
+     * Evicts an expense once the current transaction commits, or right away if there is none
+     *
+     * @param expenseId the changed expense
+     *
+     * @pre expenseId != NULL
+     *
+     * @post after commit, the next get(expenseId, ...) reloads
+     */
+    public void evictAfterCommit(Long expenseId) {
+        evictAllAfterCommit(List.of(expenseId));
+    }
+
+    /**
+     * Evicts several expenses once the current transaction commits, or right away if there is none
+     *
+     * @param expenseIds the changed expenses
+     *
+     * @pre expenseIds != NULL
+     *
+     * @post after commit, the next get for any of expenseIds reloads
+     */
+    public void evictAllAfterCommit(Collection<Long> expenseIds) {
+        if (expenseIds.isEmpty()) return;
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            responses.synchronous().invalidateAll(expenseIds);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                responses.synchronous().invalidateAll(expenseIds);
+            }
+        });
+    }
+}
@@ -0,0 +1,259 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.ExpenseResponse;
+import com.dante.expense.dto.ExpenseRollupFilter;
+import com.dante.expense.dto.ExpenseRollupResponse;
+import com.dante.expense.dto.RollupRebuildReport;
+import com.dante.expense.entity.Expense;
+import com.dante.expense.entity.ExpenseCategory;
+import com.dante.expense.entity.ExpenseStatus;
+import com.dante.expense.entity.Role;
+import com.dante.expense.exception.ForbiddenException;
+import com.dante.expense.exception.NotFoundException;
+import com.dante.expense.repository.ExpenseRepositoryCustom.StatusChange;
+import com.dante.expense.repository.ExpenseRollupRepository;
+import com.dante.expense.repository.ExpenseRollupRepository.Delta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.SimpleAsyncTaskExecutorBuilder;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Spend totals per (user, month of expenseDate, category, currency, status), kept in expense_rollups
+ * Expenses without a base currency amount yet count 0 towards the base total until FxRateService fills it in
+ *
+ * ExpenseService and ExpenseImportService report every created expense and every status change inside their
+ * own transactions, so a rollup row moves exactly when the expenses behind it do. Summaries read only rollup rows.
+ * rebuild() recomputes everything from expenses, one stripe of users per transaction on a small thread pool;
+ * it is safe to run while writes continue (see ExpenseRollupRepository).
+ *
+ * @invariant rollupRepo != NULL AND userRoles != NULL AND rebuildThreads > 0
+ */
+@Service
+public class ExpenseRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpenseRollupService.class);
+
+    /** Key order of rollup rows, deltas are applied in it so concurrent writers lock rows in the same order */
+    private static final Comparator<RollupKey> KEY_ORDER = Comparator.comparing(RollupKey::userId)
+            .thenComparing(RollupKey::month)
+            .thenComparing(RollupKey::category)
+            .thenComparing(RollupKey::currency)
+            .thenComparing(RollupKey::status);
+
+    private record RollupKey(Long userId, LocalDate month, ExpenseCategory category, String currency, ExpenseStatus status) {}
+
+    private final ExpenseRollupRepository rollupRepo;
+    private final UserRoleCache userRoles;
+    private final TransactionTemplate tx;
+    private final SimpleAsyncTaskExecutorBuilder taskExecutors;
+    private final int rebuildThreads;
+
+    /**
+     * @param rollupRepo rollup SQL
+     * @param userRoles cached user roles for the summary and rebuild checks
+     * @param txManager transaction manager, each rebuild stripe is one transaction
+     * @param taskExecutors Boot's executor builder, rebuild threads are virtual when spring.threads.virtual.enabled
+     * @param rebuildThreads how many stripes are rebuilt at once
+     *
+     * @pre all objects != NULL AND rebuildThreads > 0
+     *
+     * @post fields are set
+     */
+    public ExpenseRollupService(ExpenseRollupRepository rollupRepo, UserRoleCache userRoles, PlatformTransactionManager txManager,
+                                SimpleAsyncTaskExecutorBuilder taskExecutors,
+                                @Value("${expense.rollups.rebuild.threads:4}") int rebuildThreads) {
+        this.rollupRepo = rollupRepo;
+        this.userRoles = userRoles;
+        this.tx = new TransactionTemplate(txManager);
+        this.taskExecutors = taskExecutors;
+        this.rebuildThreads = rebuildThreads;
+    }
+
+    /**
+     * Adds newly persisted expenses to their rollups
+     *
+     * @param expenses saved expenses, id and status assigned
+     *
+     * @pre expenses != NULL AND caller is inside the transaction that persisted them
+     *
+     * @post each expense is counted once in its (user, month, category, currency, status) row
+     */
+    public void recordCreated(Collection<Expense> expenses) {
+        Map<RollupKey, Delta> deltas = new TreeMap<>(KEY_ORDER);
+
+        for (Expense e : expenses) {
+            add(deltas, e.getUser().getId(), e.getExpenseDate(), e.getCategory(), e.getCurrency(), e.getStatus(),
+                    1, e.getAmount(), base(e.getBaseAmount()));
+        }
+
+        rollupRepo.apply(List.copyOf(deltas.values()));
+    }
+
+    /**
+     * Moves transitioned expenses from the rollup of their old status to that of the new one
+     *
+     * @param changes rows returned by a status update
+     *
+     * @pre changes != NULL AND caller is inside the transaction that updated them
+     *
+     * @post each expense is counted under change.expense.status instead of change.from
+     */
+    public void recordTransitions(Collection<StatusChange> changes) {
+        Map<RollupKey, Delta> deltas = new TreeMap<>(KEY_ORDER);
+
+        for (StatusChange c : changes) {
+            ExpenseResponse e = c.expense();
+            BigDecimal base = base(e.getBaseAmount());
+            add(deltas, e.getUserId(), e.getExpenseDate(), e.getCategory(), e.getCurrency(), c.from(),
+                    -1, e.getAmount().negate(), base.negate());
+            add(deltas, e.getUserId(), e.getExpenseDate(), e.getCategory(), e.getCurrency(), e.getStatus(),
+                    1, e.getAmount(), base);
+        }
+
+        rollupRepo.apply(List.copyOf(deltas.values()));
+    }
+
+    /**
+     * Adds base currency amounts that were filled in after the expenses were counted
+     *
+     * @param filled rows returned by ExpenseRepository.fillBaseAmounts
+     *
+     * @pre filled != NULL AND caller is inside the transaction that filled them
+     *
+     * @post each row's baseAmount is added to the base total of the rollup it is counted in
+     */
+    public void recordBaseAmounts(Collection<ExpenseResponse> filled) {
+        Map<RollupKey, Delta> deltas = new TreeMap<>(KEY_ORDER);
+
+        for (ExpenseResponse e : filled) {
+            add(deltas, e.getUserId(), e.getExpenseDate(), e.getCategory(), e.getCurrency(), e.getStatus(),
+                    0, BigDecimal.ZERO, e.getBaseAmount());
+        }
+
+        rollupRepo.apply(List.copyOf(deltas.values()));
+    }
+
+    private static BigDecimal base(BigDecimal baseAmount) {
+        return (baseAmount == null) ? BigDecimal.ZERO : baseAmount;
+    }
+
+    private static void add(Map<RollupKey, Delta> deltas, Long userId, LocalDate expenseDate, ExpenseCategory category,
+                            String currency, ExpenseStatus status, long count, BigDecimal amount, BigDecimal baseAmount) {
+        LocalDate month = expenseDate.withDayOfMonth(1);
+
+        deltas.merge(new RollupKey(userId, month, category, currency, status),
+                new Delta(userId, month, category, currency, status, count, amount, baseAmount),
+                (a, b) -> new Delta(userId, month, category, currency, status, a.count() + b.count(),
+                        a.amount().add(b.amount()), a.baseAmount().add(b.baseAmount())));
+    }
+
+    /**
+     * Spend summary; employees see only their own expenses, managers and finance see everyone's
+     *
+     * @param actorUserId the user asking
+     * @param filter filters and grouping
+     *
+     * @return one row per group, see ExpenseRollupRepository.summarize
+     *
+     * @pre actorUserId != NULL AND filter != NULL
+     *
+     * @post return != NULL
+     * @post actor is EMPLOYEE IMPLIES every row belongs to actorUserId
+     *
+     * @throws NotFoundException if the actor doesn't exist
+     * @throws ForbiddenException if an employee asks for another user's totals
+     */
+    @Transactional(readOnly = true)
+    public List<ExpenseRollupResponse> summarize(Long actorUserId, ExpenseRollupFilter filter) {
+        if (userRoles.roleOf(actorUserId) == Role.EMPLOYEE) {
+            if (filter.userId() != null && !filter.userId().equals(actorUserId)) {
+                throw new ForbiddenException("Employees can only see their own totals.");
+            }
+            filter = filter.withUserId(actorUserId);
+        }
+
+        return rollupRepo.summarize(filter);
+    }
+
+    /**
+     * Recomputes every rollup row from expenses on behalf of a finance user
+     *
+     * @param actorUserId the finance user asking
+     *
+     * @return stripe and row counts of the rebuild
+     *
+     * @throws NotFoundException if the actor doesn't exist
+     * @throws ForbiddenException if the actor isn't FINANCE
+     */
+    public RollupRebuildReport rebuild(Long actorUserId) {
+        if (userRoles.roleOf(actorUserId) != Role.FINANCE) {
+            throw new ForbiddenException("Only FINANCE can rebuild rollups.");
+        }
+
+        return rebuild();
+    }
+
+    /**
+     * Scheduled rebuild, off unless expense.rollups.rebuild.cron is set
+     */
+    @Scheduled(cron = "${expense.rollups.rebuild.cron:-}", zone = "UTC")
+    public void scheduledRebuild() {
+        RollupRebuildReport report = rebuild();
+        log.info("Rebuilt {} rollup rows across {} stripes in {} ms", report.groups(), report.stripes(), report.millis());
+    }
+
+    /**
+     * Recomputes every rollup row, rebuildThreads stripes at a time, each stripe in its own transaction
+     * The concurrency limit, not the kind of thread, is what keeps the rebuild from draining the connection pool
+     *
+     * @return stripe and row counts of the rebuild
+     *
+     * @post every stripe's rows were recomputed from expenses
+     *
+     * @throws IllegalStateException if a stripe failed; the other stripes are still rebuilt and committed
+     */
+    public RollupRebuildReport rebuild() {
+        long start = System.nanoTime();
+        SimpleAsyncTaskExecutor pool = taskExecutors.threadNamePrefix("rollup-rebuild-")
+                .concurrencyLimit(rebuildThreads)
+                .build();
+
+        try {
+            List<Future<Integer>> stripes = new ArrayList<>(ExpenseRollupRepository.STRIPES);
+            for (int s = 0; s < ExpenseRollupRepository.STRIPES; s++) {
+                int stripe = s;
+                stripes.add(pool.submit(() -> tx.execute(status -> rollupRepo.rebuildStripe(stripe))));
+            }
+
+            long groups = 0;
+            for (Future<Integer> f : stripes) groups += f.get();
+
+            return new RollupRebuildReport(ExpenseRollupRepository.STRIPES, groups, (System.nanoTime() - start) / 1_000_000);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Rollup rebuild failed", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Rollup rebuild interrupted", ex);
+        } finally {
+            pool.close();
+        }
+    }
+}
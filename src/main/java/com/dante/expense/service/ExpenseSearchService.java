@@ -0,0 +1,108 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.ExpenseCursor;
+import com.dante.expense.dto.ExpensePage;
+import com.dante.expense.dto.ExpenseResponse;
+import com.dante.expense.dto.ExpenseSearchCursor;
+import com.dante.expense.dto.ExpenseSearchFilter;
+import com.dante.expense.entity.Role;
+import com.dante.expense.exception.BadRequestException;
+import com.dante.expense.exception.ForbiddenException;
+import com.dante.expense.exception.NotFoundException;
+import com.dante.expense.repository.ExpenseRepository;
+import com.dante.expense.repository.ExpenseRepositoryCustom.SearchHit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Full-text search over expense descriptions, one keyset page at a time
+ * Employees only search their own expenses, managers and finance search everyone's
+ * A ranked search is pinned to the time its first page was read, so later pages rank the same set of rows.
+ * It ranks the matches RANK_WINDOW at a time, newest window first: once a window's matches are all listed, paging
+ * carries on into the next window, so every match is reached and only the last page has no nextCursor
+ *
+ * @invariant expenseRepo != NULL AND userRoles != NULL
+ */
+@Service
+public class ExpenseSearchService {
+
+    private final ExpenseRepository expenseRepo;
+    private final UserRoleCache userRoles;
+
+    /**
+     * @param expenseRepo expense repository
+     * @param userRoles cached user roles for the visibility check
+     *
+     * @pre expenseRepo != NULL AND userRoles != NULL
+     *
+     * @post this.expenseRepo = expenseRepo AND this.userRoles = userRoles
+     */
+    public ExpenseSearchService(ExpenseRepository expenseRepo, UserRoleCache userRoles) {
+        this.expenseRepo = expenseRepo;
+        this.userRoles = userRoles;
+    }
+
+    /**
+     * Searches descriptions, fetching one row past the page to know whether another page exists
+     * A RANK page that runs out of its window is filled from the next one
+     *
+     * @param actorUserId the user searching
+     * @param filter query, filters and order
+     * @param cursor opaque cursor from a previous page of the same search (NULL for the first page)
+     * @param limit requested page size (NULL for the default), capped at ExpenseService.MAX_PAGE_SIZE
+     *
+     * @return page of matching expenses in filter.sort order, nextCursor = NULL on the last page
+     *
+     * @pre actorUserId != NULL AND filter != NULL
+     *
+     * @post return != NULL AND return.items.size() <= min(limit, ExpenseService.MAX_PAGE_SIZE)
+     * @post actor is EMPLOYEE IMPLIES every item belongs to actorUserId
+     *
+     * @throws NotFoundException if the actor doesn't exist
+     * @throws ForbiddenException if an employee searches another user's expenses
+     * @throws BadRequestException if the cursor or limit is invalid
+     */
+    @Transactional(readOnly = true)
+    public ExpensePage search(Long actorUserId, ExpenseSearchFilter filter, String cursor, Integer limit) {
+        if (userRoles.roleOf(actorUserId) == Role.EMPLOYEE) {
+            if (filter.userId() != null && !filter.userId().equals(actorUserId)) {
+                throw new ForbiddenException("Employees can only search their own expenses.");
+            }
+            filter = filter.withUserId(actorUserId);
+        }
+
+        int size = ExpenseService.pageSize(limit);
+
+        ExpenseSearchCursor after = (cursor == null || cursor.isBlank()) ? null : ExpenseSearchCursor.decode(cursor);
+        OffsetDateTime asOf = (after == null) ? OffsetDateTime.now() : after.asOf();
+
+        ExpenseCursor window = (after == null) ? null : after.window();
+
+        List<SearchHit> hits = new ArrayList<>(expenseRepo.search(filter, asOf, window, after, size + 1));
+        // the rank window each hit came from, for the cursor
+        List<ExpenseCursor> windows = new ArrayList<>();
+        while (windows.size() < hits.size()) windows.add(window);
+
+        while (filter.sort() == ExpenseSearchFilter.Sort.RANK && hits.size() <= size) {
+            Optional<ExpenseCursor> next = expenseRepo.rankWindowEnd(filter, asOf, window);
+            if (next.isEmpty()) break;
+
+            window = next.get();
+            hits.addAll(expenseRepo.search(filter, asOf, window, null, size + 1 - hits.size()));
+            while (windows.size() < hits.size()) windows.add(window);
+        }
+
+        List<ExpenseResponse> items = hits.stream().limit(size).map(SearchHit::expense).toList();
+
+        if (hits.size() <= size) return new ExpensePage(items, null);
+
+        SearchHit last = hits.get(size - 1);
+        return new ExpensePage(items, new ExpenseSearchCursor(last.score(), last.expense().getCreatedAt(),
+                last.expense().getId(), asOf, windows.get(size - 1)).encode());
+    }
+}
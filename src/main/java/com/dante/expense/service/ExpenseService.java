@@ -1,6 +1,14 @@
 package com.dante.expense.service;
 
+import com.dante.expense.dto.BulkTransitionResponse;
+import com.dante.expense.dto.BulkTransitionResult;
+import com.dante.expense.dto.BulkTransitionResult.Outcome;
 import com.dante.expense.dto.CreateExpenseRequest;
+import com.dante.expense.dto.ExpenseActionResponse;
+import com.dante.expense.dto.ExpenseCursor;
+import com.dante.expense.dto.ExpenseEvent;
+import com.dante.expense.dto.ExpenseFilter;
+import com.dante.expense.dto.ExpensePage;
 import com.dante.expense.dto.ExpenseResponse;
 import com.dante.expense.entity.Expense;
 import com.dante.expense.entity.ExpenseAction;
@@ -9,15 +17,30 @@ import com.dante.expense.entity.User;
 import com.dante.expense.exception.NotFoundException;
 import com.dante.expense.exception.ForbiddenException;
 import com.dante.expense.exception.BadRequestException;
+import com.dante.expense.exception.ConflictException;
 import com.dante.expense.repository.ExpenseActionRepository;
 import com.dante.expense.repository.ExpenseRepository;
+import com.dante.expense.repository.ExpenseRepositoryCustom.StatusChange;
+import com.dante.expense.repository.ExpenseRepositoryCustom.StatusUpdate;
+import com.dante.expense.repository.ReadRouting;
 import com.dante.expense.repository.UserRepository;
 import com.dante.expense.entity.Role;
 import com.dante.expense.entity.ExpenseStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * A service class responsible for business logic for expense actions
@@ -25,13 +48,36 @@ import java.util.List;
  * @invariant expenseRepo != NULL
  * @invariant userRepo != NULL
  * @invariant actionRepo != NULL
+ * @invariant userRoles != NULL
+ * @invariant expenseCache != NULL
+ * @invariant auditWriter != NULL
+ * @invariant duplicates != NULL
+ * @invariant events != NULL
+ * @invariant outbox != NULL
  */
 @Service
 public class ExpenseService {
 
+    /** Page size used when the client doesn't ask for one */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    /** Hard cap on page size, larger requests are clamped */
+    public static final int MAX_PAGE_SIZE = 100;
+
+    /** Longest accepted Idempotency-Key */
+    public static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
+
     private final ExpenseRepository expenseRepo;
     private final UserRepository userRepo;
     private final ExpenseActionRepository actionRepo;
+    private final UserRoleCache userRoles;
+    private final ExpenseResponseCache expenseCache;
+    private final AuditWriter auditWriter;
+    private final ExpenseRollupService rollups;
+    private final FxRateCache fx;
+    private final DuplicateExpenseDetector duplicates;
+    private final ExpenseEventPublisher events;
+    private final ExpenseOutbox outbox;
 
     /**
      * Constructs expense service with repositories
@@ -39,23 +85,52 @@ public class ExpenseService {
      * @param expenseRepo expense repository
      * @param userRepo user repository
      * @param actionRepo audit repository
+     * @param userRoles cached user roles for authorization checks
+     * @param expenseCache read-through cache behind getExpense
+     * @param auditWriter where new audit rows go
+     * @param rollups spend rollups, moved along with every create and transition
+     * @param fx cached FX rates for the base currency amount of new expenses
+     * @param duplicates duplicate check run before a new expense is saved
+     * @param events where committed workflow changes are announced
+     * @param outbox where workflow changes are recorded for downstream consumers, in the same transaction
      *
      * @pre expenseRepo != NULL AND userRepo != NULL AND actionRepo != NULL
+     * @pre userRoles != NULL AND expenseCache != NULL AND auditWriter != NULL AND rollups != NULL
+     * @pre fx != NULL AND duplicates != NULL AND events != NULL AND outbox != NULL
      *
      * @post this.expenseRepo = expenseRepo AND this.userRepo = userRepo AND this.actionRepo = actionRepo
+     * @post this.userRoles = userRoles AND this.expenseCache = expenseCache AND this.auditWriter = auditWriter
+     * @post this.rollups = rollups AND this.fx = fx AND this.duplicates = duplicates AND this.events = events
+     * @post this.outbox = outbox
      */
-    public ExpenseService(ExpenseRepository expenseRepo, UserRepository userRepo, ExpenseActionRepository actionRepo) {
+    public ExpenseService(ExpenseRepository expenseRepo, UserRepository userRepo, ExpenseActionRepository actionRepo,
+                          UserRoleCache userRoles, ExpenseResponseCache expenseCache, AuditWriter auditWriter,
+                          ExpenseRollupService rollups, FxRateCache fx, DuplicateExpenseDetector duplicates,
+                          ExpenseEventPublisher events, ExpenseOutbox outbox) {
         this.expenseRepo = expenseRepo;
         this.userRepo = userRepo;
         this.actionRepo = actionRepo;
+        this.userRoles = userRoles;
+        this.expenseCache = expenseCache;
+        this.auditWriter = auditWriter;
+        this.rollups = rollups;
+        this.fx = fx;
+        this.duplicates = duplicates;
+        this.events = events;
+        this.outbox = outbox;
     }
 
     /**
      * Creates and submits an expense for the indicated user
      * Also writes a "SUBMIT" audit log
+     * A request repeating an Idempotency-Key the user already sent returns the expense the key created and changes
+     * nothing. Otherwise the expense is refused if it duplicates one of the user's expenses (see
+     * DuplicateExpenseDetector), unless allowDuplicate is set. Creates are serialized per user so neither check races
      *
      * @param userId owner user id
      * @param req request callback
+     * @param idempotencyKey the client's Idempotency-Key, NULL for none
+     * @param allowDuplicate whether to save the expense even if it looks like a duplicate
      *
      * @return response representing the created expense
      *
@@ -71,12 +146,73 @@ public class ExpenseService {
      * @post return.userId = userId
      * @post return.status = SUBMITTED
      * @post an ExpenseAction is persisted with action = "SUBMIT" for created expense
+     * @post the expense is counted in its SUBMITTED spend rollup
+     * @post a SUBMIT ExpenseEvent is in the outbox and published for after commit
+     * @post idempotencyKey was used before by userId IMPLIES return is the expense it created and nothing is written
      *
      * @throws NotFoundException if user with userId doesn't exist
+     * @throws BadRequestException if idempotencyKey is blank or longer than MAX_IDEMPOTENCY_KEY_LENGTH
+     * @throws ConflictException if idempotencyKey was used for a different expense, or the expense duplicates
+     *         another and allowDuplicate is false
      */
-    public ExpenseResponse createExpense(Long userId, CreateExpenseRequest req) {
-        User user = userRepo.findById(userId).orElseThrow(() -> new NotFoundException("User " + userId + " not found."));
+    @Transactional
+    public ExpenseResponse createExpense(Long userId, CreateExpenseRequest req, String idempotencyKey, boolean allowDuplicate) {
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            throw new BadRequestException("Idempotency-Key must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+
+        userRoles.roleOf(userId);
+        User user = userRepo.getReferenceById(userId);
+
+        Expense e = newExpense(user, req, fx);
+        e.setIdempotencyKey(idempotencyKey);
+
+        expenseRepo.lockCreates(userId);
+
+        if (idempotencyKey != null) {
+            Optional<Expense> earlier = expenseRepo.findByUser_IdAndIdempotencyKey(userId, idempotencyKey);
+            if (earlier.isPresent()) {
+                if (!earlier.get().getFingerprint().equals(e.getFingerprint())) {
+                    throw new ConflictException("Idempotency-Key " + idempotencyKey + " was already used for expense "
+                            + earlier.get().getId() + " with different details.");
+                }
+                return toResponse(earlier.get());
+            }
+        }
+
+        if (!allowDuplicate) {
+            duplicates.findDuplicate(e).ifPresent(id -> {
+                throw new ConflictException("Expense looks like a duplicate of expense " + id
+                        + ", resubmit with allowDuplicate=true to keep both.");
+            });
+        }
+
+        Expense saved = expenseRepo.save(e);
+        ExpenseResponse created = toResponse(saved);
 
+        logAction(saved, user, ExpenseActionType.SUBMIT, null);
+        rollups.recordCreated(List.of(saved));
+        announce(List.of(submitted(saved, null)));
+
+        return created;
+
+    }
+
+    /**
+     * Builds an unsaved expense for the given owner from a create request
+     *
+     * @param user the owning user
+     * @param req the create request
+     * @param fx cached FX rates, baseAmount is converted with the rate of expenseDate
+     *
+     * @return the new expense, currency upper-cased, fingerprint set
+     *
+     * @pre user != NULL AND req satisfies the CreateExpenseRequest invariants AND fx != NULL
+     *
+     * @post return.id = NULL AND return.user = user
+     * @post return.baseAmount = NULL IFF fx has no rate for the currency on or before expenseDate
+     */
+    static Expense newExpense(User user, CreateExpenseRequest req, FxRateCache fx) {
         Expense e = new Expense();
 
         e.setUser(user);
@@ -85,17 +221,17 @@ public class ExpenseService {
         e.setCategory(req.getCategory());
         e.setDescription(req.getDescription());
         e.setExpenseDate(req.getExpenseDate());
+        e.setBaseAmount(fx.toBase(e.getAmount(), e.getCurrency(), e.getExpenseDate()));
+        e.setFingerprint(DuplicateExpenseDetector.fingerprint(user.getId(), e.getAmount(), e.getCurrency(),
+                e.getExpenseDate(), e.getDescription()));
 
-        Expense saved = expenseRepo.save(e);
-
-        logAction(saved, user, ExpenseActionType.SUBMIT, null);
-
-        return toResponse(saved);
-
+        return e;
     }
 
     /**
-     * Retrieves an expense via id
+     * Retrieves an expense via id, served from the response cache when possible
+     * Misses load from the primary: the cache is shared by every reader, so a replica that hasn't yet replayed the
+     * write that evicted the entry would cache the old state until the TTL
      *
      * @param id the id of the expense
      *
@@ -109,9 +245,11 @@ public class ExpenseService {
      * @throws NotFoundException if no expense exists with inputted id
      */
     public ExpenseResponse getExpense(Long id)  {
-        Expense e = expenseRepo.findById(id).orElseThrow(() -> new NotFoundException("Expense " + id + " not found"));
+        return expenseCache.get(id, key -> ReadRouting.onPrimary(() -> {
+            Expense e = expenseRepo.findById(key).orElseThrow(() -> new NotFoundException("Expense " + key + " not found"));
 
-        return toResponse(e);
+            return toResponse(e);
+        }));
     }
 
     /**
@@ -119,54 +257,173 @@ public class ExpenseService {
      *
      * @param expenseId the id of the expense whose action history is requested
      *
-     * @return list of ExpenseAction rows for the expense in ascending timestamp order
+     * @return the expense's actions in ascending timestamp order
      *
      * @pre expenseId != NULL AND expenseId >= 0
      *
      * @post return != NULL
-     * @post for each action in return: action.expense.id = expenseId
+     * @post for each action in return: action.expenseId = expenseId
      * @post return is ordered by timestamp in ascending order
      *
      * @throws NotFoundException if the expense doesn't exist
      */
     @Transactional(readOnly = true)
-    public List<ExpenseAction> getExpenseActions(Long expenseId) {
-        Expense expense = expenseRepo.findById(expenseId).orElseThrow(() -> new NotFoundException("Expense " + expenseId + " not found."));
+    public List<ExpenseActionResponse> getExpenseActions(Long expenseId) {
+        List<ExpenseActionResponse> actions = actionRepo.findHistories(List.of(expenseId));
 
-        return actionRepo.findByExpense_IdOrderByTimestampAsc(expenseId);
+        // every expense has its SUBMIT row, so only an empty history needs the existence check
+        if (actions.isEmpty() && !expenseRepo.existsById(expenseId)) {
+            throw new NotFoundException("Expense " + expenseId + " not found.");
+        }
+
+        return actions;
     }
 
     /**
-     * Lists all expenses belonging to the specified user
+     * Returns the histories of many expenses with one query
+     * Ids with no expense simply contribute no rows
      *
-     * @param userId the user's id
+     * @param expenseIds ids of the expenses whose histories are requested
      *
-     * @return list of expense responses ([] if none)
+     * @return the actions grouped by expense id ascending, each group oldest first
      *
-     * @pre userId != NULL AND userId >= 0
+     * @pre expenseIds != NULL AND no id is NULL
+     *
+     * @post return != NULL
+     * @post for each action in return: action.expenseId in expenseIds
+     *
+     * @throws BadRequestException if expenseIds is empty or holds more than MAX_PAGE_SIZE distinct ids
+     */
+    @Transactional(readOnly = true)
+    public List<ExpenseActionResponse> getExpenseHistories(List<Long> expenseIds) {
+        Set<Long> distinct = new HashSet<>(expenseIds);
+
+        if (distinct.isEmpty() || distinct.size() > MAX_PAGE_SIZE) {
+            throw new BadRequestException("expenseIds must hold between 1 and " + MAX_PAGE_SIZE + " ids");
+        }
+
+        return actionRepo.findHistories(distinct);
+    }
+
+    /**
+     * Lists one keyset page of expenses belonging to the specified user, newest first
+     *
+     * @param filter optional status / category / expenseDate range filters, filter.userId is required
+     * @param cursor opaque cursor from a previous page (NULL for the first page)
+     * @param limit requested page size (NULL for the default), capped at MAX_PAGE_SIZE
+     *
+     * @return page of expense responses, nextCursor = NULL on the last page
+     *
+     * @pre filter != NULL AND filter.userId != NULL AND filter.userId >= 0
      *
      * @post return != NULL
-     * @post for all r in return, r.userId = userId
+     * @post for all r in return.items, r.userId = filter.userId
+     * @post return.items.size() <= min(limit, MAX_PAGE_SIZE)
+     *
+     * @throws BadRequestException if the cursor, limit or date range is invalid
      */
-    public List<ExpenseResponse> listExpensesByUser(Long userId) {
-        return expenseRepo.findByUserId(userId).stream().map(this::toResponse).toList();
+    @Transactional(readOnly = true)
+    public ExpensePage listExpensesByUser(ExpenseFilter filter, String cursor, Integer limit) {
+        return listExpenses(filter, cursor, limit);
     }
 
     /**
+     * Lists one keyset page of expenses with the given status, newest first
+     *
      * @param status the status to filter expenses by
+     * @param cursor opaque cursor from a previous page (NULL for the first page)
+     * @param limit requested page size (NULL for the default), capped at MAX_PAGE_SIZE
      *
-     * @return a list of ExpenseResponse objs from all matching expenses
+     * @return page of ExpenseResponse objs from matching expenses
      *
      * @pre status != null
      *
      * @post result != null
-     * @post for all r in result: r.status == status
-     * @post result.size() == # of expense rows with Expense.status == #status
+     * @post for all r in result.items: r.status == status
+     *
+     * @throws BadRequestException if the cursor or limit is invalid
+     */
+    @Transactional(readOnly = true)
+    public ExpensePage listExpenseByStatus(ExpenseStatus status, String cursor, Integer limit) {
+        return listExpenses(new ExpenseFilter(null, status, null, null, null), cursor, limit);
+    }
+
+    /**
+     * Streams the manager approval queue (every SUBMITTED expense, oldest first) to the given consumer
+     * Rows are read through a server-side cursor inside one read-only transaction, the queue is never materialized
+     *
+     * @param actorUserId the manager asking for the queue
+     * @param sink receives each expense response in queue order
+     *
+     * @pre actorUserId != NULL AND actorUserId >= 0
+     * @pre sink != NULL
+     *
+     * @post sink has received every SUBMITTED expense in createdAt asc, id asc order
+     *
+     * @throws NotFoundException if actor user doesn't exist
+     * @throws ForbiddenException if actor isn't a MANAGER
      */
-    public List<ExpenseResponse> listExpenseByStatus(ExpenseStatus status) {
-        return expenseRepo.findByStatus(status).stream()
-                .map(this::toResponse)
-                .toList();
+    @Transactional(readOnly = true)
+    public void streamApprovalQueue(Long actorUserId, Consumer<ExpenseResponse> sink) {
+        if (userRoles.roleOf(actorUserId) != Role.MANAGER) {
+            throw new ForbiddenException("Only a MANAGER can view the approval queue.");
+        }
+
+        try (Stream<ExpenseResponse> queue = expenseRepo.streamByStatusOldestFirst(ExpenseStatus.SUBMITTED)) {
+            queue.forEach(sink);
+        }
+    }
+
+    /**
+     * Shared keyset listing, fetches one row past the page to know whether another page exists
+     *
+     * @param filter filters to apply
+     * @param cursor opaque cursor (NULL for the first page)
+     * @param limit requested page size (NULL for the default)
+     *
+     * @return the page
+     *
+     * @pre filter != NULL
+     *
+     * @post return != NULL
+     *
+     * @throws BadRequestException if the cursor, limit or date range is invalid
+     */
+    private ExpensePage listExpenses(ExpenseFilter filter, String cursor, Integer limit) {
+        int size = pageSize(limit);
+
+        if (filter.from() != null && filter.to() != null && filter.from().isAfter(filter.to())) {
+            throw new BadRequestException("from must not be after to");
+        }
+
+        ExpenseCursor after = (cursor == null || cursor.isBlank()) ? null : ExpenseCursor.decode(cursor);
+
+        List<ExpenseResponse> rows = expenseRepo.findPage(filter, after, size + 1);
+
+        if (rows.size() <= size) return new ExpensePage(rows, null);
+
+        List<ExpenseResponse> items = rows.subList(0, size);
+        return new ExpensePage(items, ExpenseCursor.of(items.get(size - 1)).encode());
+    }
+
+    /**
+     * Resolves the requested page size
+     *
+     * @param limit requested size, may be NULL
+     *
+     * @return DEFAULT_PAGE_SIZE if limit is NULL, OW min(limit, MAX_PAGE_SIZE)
+     *
+     * @pre none
+     *
+     * @post 0 < return <= MAX_PAGE_SIZE
+     *
+     * @throws BadRequestException if limit < 1
+     */
+    static int pageSize(Integer limit) {
+        if (limit == null) return DEFAULT_PAGE_SIZE;
+        if (limit < 1) throw new BadRequestException("limit must be at least 1");
+
+        return Math.min(limit, MAX_PAGE_SIZE);
     }
 
     /**
@@ -187,6 +444,7 @@ public class ExpenseService {
         r.setId(e.getId());
         r.setUserId(e.getUser().getId());
         r.setAmount(e.getAmount());
+        r.setBaseAmount(e.getBaseAmount());
         r.setCurrency(e.getCurrency());
         r.setCategory(e.getCategory());
         r.setDescription(e.getDescription());
@@ -198,6 +456,152 @@ public class ExpenseService {
         return r;
     }
 
+    /**
+     * Records workflow events in the outbox, in the current transaction, and publishes them for after commit
+     *
+     * @param changes the events, in the order they happened
+     *
+     * @pre changes != NULL
+     *
+     * @post outbox and events have both been handed changes
+     */
+    private void announce(List<ExpenseEvent> changes) {
+        outbox.append(changes);
+        events.publish(changes);
+    }
+
+    /**
+     * Builds the SUBMIT event of a newly saved expense
+     *
+     * @param e the saved expense
+     * @param comment the SUBMIT action's comment, may be NULL
+     *
+     * @return the event, the owner as actor, timestamped with createdAt
+     *
+     * @pre e != NULL AND e.id != NULL AND e.user != NULL AND e.createdAt != NULL
+     */
+    static ExpenseEvent submitted(Expense e, String comment) {
+        Long ownerId = e.getUser().getId();
+        return new ExpenseEvent(e.getId(), ownerId, ownerId, ExpenseActionType.SUBMIT, null, e.getStatus(), comment,
+                e.getCreatedAt());
+    }
+
+    /**
+     * Builds the event announcing a workflow change
+     *
+     * @param expense the expense after the change
+     * @param from the status it left, NULL for a SUBMIT
+     * @param actorUserId who made the change, NULL for ESCALATE
+     * @param action what they did
+     * @param comment the audit comment, may be NULL
+     *
+     * @return the event, timestamped with the expense's updatedAt
+     *
+     * @pre expense != NULL AND expense.updatedAt != NULL AND action != NULL
+     * @pre actorUserId = NULL IFF action = ESCALATE
+     */
+    static ExpenseEvent eventOf(ExpenseResponse expense, ExpenseStatus from, Long actorUserId,
+                                        ExpenseActionType action, String comment) {
+        return new ExpenseEvent(expense.getId(), expense.getUserId(), actorUserId, action, from, expense.getStatus(),
+                comment, expense.getUpdatedAt());
+    }
+
+    /**
+     * Explains why a guarded update didn't move an existing expense
+     *
+     * @param update what the update saw
+     * @param from the statuses the transition could start from
+     * @param to the status it would have set
+     *
+     * @return ConflictException if the expense was in a legal status but changed concurrently,
+     *         OW BadRequestException naming the status it was in
+     *
+     * @pre all arguments != NULL AND update.change = NULL
+     *
+     * @post return != NULL
+     */
+    private static RuntimeException rejectedTransition(StatusUpdate update, Set<ExpenseStatus> from, ExpenseStatus to) {
+        if (from.contains(update.seen())) {
+            return new ConflictException("Expense " + update.id() + " was modified concurrently, reload and retry.");
+        }
+
+        return new BadRequestException(illegalStateMessage(from, to, update.seen()));
+    }
+
+    /**
+     * @param from the statuses the transition could start from
+     * @param to the status it would have set
+     * @param current the expense's status
+     *
+     * @return message explaining why the expense can't move to #to
+     *
+     * @pre all arguments != NULL AND from is non-empty
+     */
+    private static String illegalStateMessage(Set<ExpenseStatus> from, ExpenseStatus to, ExpenseStatus current) {
+        StringJoiner allowed = new StringJoiner(" or ");
+        from.forEach(s -> allowed.add(s.name()));
+
+        return "Only " + allowed + " expenses can be " + to + ". Current: " + current;
+    }
+
+    /**
+     * Looks up where an action leads
+     *
+     * @param action the action
+     *
+     * @return the action's target status
+     *
+     * @pre action != NULL
+     *
+     * @post return != NULL
+     *
+     * @throws BadRequestException if action isn't a transition on an existing expense
+     */
+    private static ExpenseStatus targetOf(ExpenseActionType action) {
+        ExpenseStatus to = ExpenseStateMachine.target(action);
+
+        if (to == null) {
+            throw new BadRequestException(action + " is not a transition.");
+        }
+
+        return to;
+    }
+
+    /**
+     * Resolves the statuses the actor's cached role may apply an action from
+     *
+     * @param actorUserId the acting user's id
+     * @param action the action, a transition
+     *
+     * @return non-empty, unmodifiable set of source statuses
+     *
+     * @pre actorUserId != NULL AND ExpenseStateMachine.target(action) != NULL
+     *
+     * @post return != NULL AND return is non-empty
+     *
+     * @throws NotFoundException if actor user doesn't exist
+     * @throws ForbiddenException if no rule lets the actor's role perform action
+     */
+    private Set<ExpenseStatus> sourcesFor(Long actorUserId, ExpenseActionType action) {
+        Set<ExpenseStatus> from = ExpenseStateMachine.sources(action, userRoles.roleOf(actorUserId));
+
+        if (from.isEmpty()) {
+            StringJoiner roles = new StringJoiner(" or ");
+            ExpenseStateMachine.roles(action).forEach(r -> roles.add(r.name()));
+
+            throw new ForbiddenException("Only " + roles + " can " + action + " expenses.");
+        }
+
+        return from;
+    }
+
+    /**
+     * @return the current time at the precision postgres stores, so responses match later reads
+     */
+    private static OffsetDateTime now() {
+        return OffsetDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
     /**
      * Helper method for logging each action for record
      *
@@ -210,11 +614,29 @@ public class ExpenseService {
      * @pre actor != NULL AND actor.id != NULL
      * @pre type != NULL
      *
-     * @post One ExpenseAction obj is persisted
+     * @post One ExpenseAction obj is handed to the audit writer
      * @post expense = #expense AND actor = #actor AND type = #type AND comment = #comment
      * @post createdAt = current timestamp
      */
     private void logAction(Expense expense, User actor, ExpenseActionType type, String comment) {
+        auditWriter.write(newAction(expense, actor, type, comment));
+    }
+
+    /**
+     * Builds an unsaved audit row
+     *
+     * @param expense the expense that the action was for
+     * @param actor the user performing the action, NULL for a system action
+     * @param type what type of action was performed
+     * @param comment an optional comment
+     *
+     * @return the new action
+     *
+     * @pre expense != NULL AND type != NULL
+     *
+     * @post return.id = NULL
+     */
+    static ExpenseAction newAction(Expense expense, User actor, ExpenseActionType type, String comment) {
         ExpenseAction action = new ExpenseAction();
 
         action.setExpense(expense);
@@ -222,7 +644,7 @@ public class ExpenseService {
         action.setActionType(type);
         action.setComment(comment);
 
-        actionRepo.save(action);
+        return action;
     }
 
     /**
@@ -245,27 +667,11 @@ public class ExpenseService {
      * @throws NotFoundException if actor user / expense doesn't exist
      * @throws ForbiddenException if actor isn't a MANAGER
      * @throws BadRequestException if expense.status != SUBMITTED
+     * @throws ConflictException if a concurrent request changed the expense while this one ran
      */
     @Transactional
     public ExpenseResponse approveExpense(Long actorUserId, Long expenseId) {
-        User actor = userRepo.findById(actorUserId).orElseThrow(() -> new NotFoundException("User " + actorUserId + " not found."));
-
-        if (actor.getRole() != Role.MANAGER) {
-            throw new ForbiddenException("Only a MANAGER can approve expenses.");
-        }
-
-        Expense expense = expenseRepo.findById(expenseId).orElseThrow(() -> new NotFoundException("Expense " + expenseId + " not found."));
-
-        if (expense.getStatus() != ExpenseStatus.SUBMITTED) {
-            throw new BadRequestException("Only SUBMITTED expenses can be approved. Current: " + expense.getStatus());
-        }
-
-        expense.setStatus(ExpenseStatus.APPROVED);
-        Expense saved = expenseRepo.save(expense);
-
-        logAction(saved, actor, ExpenseActionType.APPROVE, null);
-
-        return toResponse(saved);
+        return transition(actorUserId, expenseId, ExpenseActionType.APPROVE, null);
     }
 
     /**
@@ -290,27 +696,11 @@ public class ExpenseService {
      * @throws NotFoundException if actor user / expense doesn't exist
      * @throws ForbiddenException if actor isn't a MANAGER
      * @throws BadRequestException if expense.status != SUBMITTED
+     * @throws ConflictException if a concurrent request changed the expense while this one ran
      */
     @Transactional
     public ExpenseResponse rejectExpense(Long actorUserId, Long expenseId, String reason) {
-        User actor = userRepo.findById(actorUserId).orElseThrow(() -> new NotFoundException("User " + actorUserId + " not found."));
-
-        if (actor.getRole() != Role.MANAGER) {
-            throw new ForbiddenException("Only a MANAGER can reject expenses.");
-        }
-
-        Expense expense = expenseRepo.findById(expenseId).orElseThrow(() -> new NotFoundException("Expense " + expenseId + " not found."));
-
-        if (expense.getStatus() != ExpenseStatus.SUBMITTED) {
-            throw new BadRequestException("Only SUBMITTED expenses can be rejected. Current: " + expense.getStatus());
-        }
-
-        expense.setStatus(ExpenseStatus.REJECTED);
-        Expense saved = expenseRepo.save(expense);
-
-        logAction(saved, actor, ExpenseActionType.REJECT, reason);
-
-        return toResponse(saved);
+        return transition(actorUserId, expenseId, ExpenseActionType.REJECT, reason);
     }
 
     /**
@@ -333,28 +723,125 @@ public class ExpenseService {
      * @throws NotFoundException if actor user / expense doesn't exist
      * @throws ForbiddenException if actor isn't a FINANCE user
      * @throws BadRequestException if expense isn't approved
-     *
+     * @throws ConflictException if a concurrent request changed the expense while this one ran
      */
+    @Transactional
     public ExpenseResponse reimburseExpense(Long expenseId, Long actorUserId, String comment) {
-        Expense expense = expenseRepo.findById(expenseId).orElseThrow(() -> new NotFoundException("Expense not found: " + expenseId));
+        return transition(actorUserId, expenseId, ExpenseActionType.REIMBURSE, comment);
+    }
 
-        User actor = userRepo.findById(actorUserId).orElseThrow(() -> new NotFoundException("User not found: " + actorUserId));
+    /**
+     * Applies any workflow action to one expense, as declared in ExpenseStateMachine
+     * The actor's role picks the statuses the action may start from, and one guarded
+     * UPDATE ... RETURNING moves the expense to the action's target status, then the audit row is inserted
+     *
+     * @param actorUserId id of the user performing the action
+     * @param expenseId id of the expense
+     * @param action the action to apply
+     * @param comment optional comment for the audit row
+     *
+     * @return response representing the updated expense
+     *
+     * @pre actorUserId != NULL AND expenseId != NULL AND action != NULL
+     *
+     * @post return.id = expenseId AND return.status = ExpenseStateMachine.target(action)
+     * @post an ExpenseAction is persisted with actionType = action, actor.id = actorUserId, comment = comment
+     * @post an ExpenseEvent for the change is in the outbox and published for after commit
+     *
+     * @throws BadRequestException if action isn't a transition, or the expense isn't in a status the actor may apply it from
+     * @throws NotFoundException if actor user / expense doesn't exist
+     * @throws ForbiddenException if no rule lets the actor's role perform action
+     * @throws ConflictException if a concurrent request changed the expense while this one ran
+     */
+    @Transactional
+    public ExpenseResponse transition(Long actorUserId, Long expenseId, ExpenseActionType action, String comment) {
+        ExpenseStatus to = targetOf(action);
+        Set<ExpenseStatus> from = sourcesFor(actorUserId, action);
+        User actor = userRepo.getReferenceById(actorUserId);
+
+        StatusUpdate update = expenseRepo.updateStatus(expenseId, from, to, now())
+                .orElseThrow(() -> new NotFoundException("Expense " + expenseId + " not found."));
+        StatusChange change = update.change();
+        if (change == null) throw rejectedTransition(update, from, to);
+
+        logAction(expenseRepo.getReferenceById(expenseId), actor, action, comment);
+        rollups.recordTransitions(List.of(change));
+        expenseCache.evictAfterCommit(expenseId);
+        announce(List.of(eventOf(change.expense(), change.from(), actorUserId, action, comment)));
+
+        return change.expense();
+    }
 
-        if (actor.getRole() != Role.FINANCE) {
-            throw new ForbiddenException("Only FINANCE can reimburse expenses");
+    /**
+     * Applies one workflow action to many expenses in a single transaction
+     * The actor's role comes from the cache and every target moves in one guarded statement, which also reports
+     * the status each id was seen in to explain the ones it didn't move. The audit rows are flushed at commit,
+     * batched by hibernate.jdbc.batch_size
+     *
+     * @param actorUserId id of the user performing the transition
+     * @param action the transition to apply
+     * @param expenseIds ids of the target expenses
+     * @param comment optional comment recorded on every audit row
+     *
+     * @return one result per id, in request order
+     *
+     * @pre actorUserId != NULL AND actorUserId >= 0
+     * @pre action != NULL
+     * @pre expenseIds != NULL AND no id is NULL
+     *
+     * @post return.results.size() = expenseIds.size()
+     * @post for each result with outcome = OK, an ExpenseAction is persisted with
+     *      actionType = action, actor.id = actorUserId, comment = comment
+     * @post expenses whose result isn't OK are unchanged by this call
+     * @post one ExpenseEvent per OK result is in the outbox and published for after commit
+     *
+     * @throws NotFoundException if actor user doesn't exist
+     * @throws ForbiddenException if actor's role may not perform action
+     * @throws BadRequestException if action isn't a transition
+     */
+    @Transactional
+    public BulkTransitionResponse bulkTransition(Long actorUserId, ExpenseActionType action, List<Long> expenseIds, String comment) {
+        ExpenseStatus to = targetOf(action);
+        Set<ExpenseStatus> from = sourcesFor(actorUserId, action);
+        User actor = userRepo.getReferenceById(actorUserId);
+
+        Map<Long, StatusUpdate> updates = new HashMap<>();
+        List<StatusChange> changes = new ArrayList<>();
+        for (StatusUpdate u : expenseRepo.updateStatuses(new HashSet<>(expenseIds), from, to, now())) {
+            updates.put(u.id(), u);
+            if (u.change() != null) changes.add(u.change());
         }
-
-        if (expense.getStatus() != ExpenseStatus.APPROVED) {
-            throw new BadRequestException("Only approved expenses can be reimbursed");
+        Set<Long> updated = new HashSet<>();
+        for (StatusChange c : changes) updated.add(c.expense().getId());
+
+        List<BulkTransitionResult> results = new ArrayList<>(expenseIds.size());
+        List<ExpenseAction> actions = new ArrayList<>(updated.size());
+        Set<Long> reported = new HashSet<>();
+
+        for (Long id : expenseIds) {
+            StatusUpdate u = updates.get(id);
+
+            if (updated.contains(id) && reported.add(id)) {
+                actions.add(newAction(expenseRepo.getReferenceById(id), actor, action, comment));
+                results.add(new BulkTransitionResult(id, Outcome.OK, to, null));
+            } else if (updated.contains(id)) {
+                results.add(new BulkTransitionResult(id, Outcome.INVALID_STATE, to, "Expense " + id + " is listed more than once."));
+            } else if (u == null) {
+                results.add(new BulkTransitionResult(id, Outcome.NOT_FOUND, null, "Expense " + id + " not found."));
+            } else if (from.contains(u.seen())) {
+                results.add(new BulkTransitionResult(id, Outcome.CONFLICT, u.seen(),
+                        "Expense " + id + " was modified concurrently, reload and retry."));
+            } else {
+                results.add(new BulkTransitionResult(id, Outcome.INVALID_STATE, u.seen(), illegalStateMessage(from, to, u.seen())));
+            }
         }
 
-        expense.setStatus(ExpenseStatus.REIMBURSED);
-
-        logAction(expense, actor, ExpenseActionType.REIMBURSE, comment);
+        auditWriter.write(actions);
+        rollups.recordTransitions(changes);
+        expenseCache.evictAllAfterCommit(updated);
+        announce(changes.stream().map(c -> eventOf(c.expense(), c.from(), actorUserId, action, comment)).toList());
 
-        Expense saved = expenseRepo.save(expense);
-        return toResponse(saved);
+        return new BulkTransitionResponse(actions.size(), results.size() - actions.size(), results);
     }
 
-
 }
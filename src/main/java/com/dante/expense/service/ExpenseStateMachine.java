@@ -0,0 +1,100 @@
+package com.dante.expense.service;
+
+import com.dante.expense.entity.ExpenseActionType;
+import com.dante.expense.entity.ExpenseStatus;
+import com.dante.expense.entity.Role;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The expense workflow as a table of (from status, action, role) -> to status rules
+ * RULES is the only place a transition is declared, the lookup tables below are derived from it once at class
+ * load, so every check on the request path is an EnumMap / EnumSet lookup with no allocation.
+ * Each action has a single target status; an action may start from several statuses and be open to several roles.
+ *
+ * @invariant for every action a with a rule, target(a) != NULL AND every rule for a has to = target(a)
+ */
+final class ExpenseStateMachine {
+
+    /**
+     * One legal transition
+     *
+     * @invariant all fields != NULL
+     */
+    private record Rule(ExpenseStatus from, ExpenseActionType action, Role role, ExpenseStatus to) {}
+
+    private static final List<Rule> RULES = List.of(
+            new Rule(ExpenseStatus.SUBMITTED, ExpenseActionType.APPROVE, Role.MANAGER, ExpenseStatus.APPROVED),
+            new Rule(ExpenseStatus.SUBMITTED, ExpenseActionType.REJECT, Role.MANAGER, ExpenseStatus.REJECTED),
+            new Rule(ExpenseStatus.APPROVED, ExpenseActionType.REIMBURSE, Role.FINANCE, ExpenseStatus.REIMBURSED)
+    );
+
+    private static final Map<ExpenseActionType, ExpenseStatus> TARGETS = new EnumMap<>(ExpenseActionType.class);
+    private static final Map<ExpenseActionType, Map<Role, Set<ExpenseStatus>>> SOURCES = new EnumMap<>(ExpenseActionType.class);
+    private static final Map<ExpenseActionType, Set<Role>> ROLES = new EnumMap<>(ExpenseActionType.class);
+
+    static {
+        for (Rule r : RULES) {
+            ExpenseStatus prior = TARGETS.putIfAbsent(r.action(), r.to());
+            if (prior != null && prior != r.to()) {
+                throw new IllegalStateException(r.action() + " leads to both " + prior + " and " + r.to());
+            }
+
+            SOURCES.computeIfAbsent(r.action(), a -> new EnumMap<>(Role.class))
+                    .computeIfAbsent(r.role(), role -> EnumSet.noneOf(ExpenseStatus.class))
+                    .add(r.from());
+            ROLES.computeIfAbsent(r.action(), a -> EnumSet.noneOf(Role.class)).add(r.role());
+        }
+
+        SOURCES.values().forEach(byRole -> byRole.replaceAll((role, from) -> Collections.unmodifiableSet(from)));
+        ROLES.replaceAll((action, roles) -> Collections.unmodifiableSet(roles));
+    }
+
+    private ExpenseStateMachine() {}
+
+    /**
+     * @param action the action
+     *
+     * @return the status the action leads to, NULL if action isn't a transition (e.g. SUBMIT)
+     *
+     * @pre action != NULL
+     */
+    static ExpenseStatus target(ExpenseActionType action) {
+        return TARGETS.get(action);
+    }
+
+    /**
+     * @param action the action
+     * @param role the actor's role
+     *
+     * @return the statuses role may apply action from, empty if none
+     *
+     * @pre action != NULL AND role != NULL
+     *
+     * @post return != NULL AND return is unmodifiable
+     */
+    static Set<ExpenseStatus> sources(ExpenseActionType action, Role role) {
+        Map<Role, Set<ExpenseStatus>> byRole = SOURCES.get(action);
+        Set<ExpenseStatus> from = byRole == null ? null : byRole.get(role);
+
+        return from == null ? Set.of() : from;
+    }
+
+    /**
+     * @param action the action
+     *
+     * @return the roles that may perform action from at least one status
+     *
+     * @pre action != NULL
+     *
+     * @post return != NULL AND return is unmodifiable
+     */
+    static Set<Role> roles(ExpenseActionType action) {
+        return ROLES.getOrDefault(action, Set.of());
+    }
+}
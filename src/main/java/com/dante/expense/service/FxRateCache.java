@@ -0,0 +1,147 @@
+package com.dante.expense.service;
+
+import com.dante.expense.repository.FxRateRepository;
+import com.dante.expense.repository.FxRateRepository.FxRate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory copy of fx_rates, indexed by currency then date, used to convert amounts on the write path
+ *
+ * Each currency's rates sit in two parallel sorted arrays, epoch days and rates scaled by 10^RATE_SCALE to longs,
+ * so a lookup is one hash probe plus a binary search, and a conversion is one long multiply and divide.
+ * BigDecimal is only used if that multiply would overflow. Reloads build a new snapshot and swap it in whole,
+ * readers never lock and never see a half-loaded table.
+ *
+ * @invariant baseCurrency matches [A-Z]{3} AND snapshot != NULL
+ */
+@Component
+public class FxRateCache {
+
+    private static final long SCALE = BigDecimal.ONE.movePointRight(FxRateRepository.RATE_SCALE).longValueExact();
+    private static final BigDecimal SCALE_DECIMAL = BigDecimal.valueOf(SCALE);
+
+    /**
+     * Rates of one currency
+     *
+     * @invariant days is strictly increasing AND days.length = rates.length > 0
+     */
+    private record Series(long[] days, long[] rates) {}
+
+    private final String baseCurrency;
+    private volatile Map<String, Series> snapshot = Map.of();
+
+    /**
+     * @param baseCurrency the currency amounts are converted into
+     *
+     * @pre baseCurrency is a 3-letter code
+     *
+     * @post the cache is empty, only baseCurrency amounts convert until the first load
+     */
+    public FxRateCache(@Value("${expense.fx.base-currency:USD}") String baseCurrency) {
+        this.baseCurrency = baseCurrency.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the currency amounts are converted into
+     */
+    public String baseCurrency() {
+        return baseCurrency;
+    }
+
+    /**
+     * Replaces the cached rates
+     *
+     * @param rates every known rate, ordered by currency then date as FxRateRepository.findAll returns them
+     *
+     * @pre rates != NULL AND no two rates share currency and date
+     *
+     * @post later lookups see exactly rates
+     */
+    public void load(List<FxRate> rates) {
+        Map<String, Series> next = new HashMap<>();
+
+        int start = 0;
+        while (start < rates.size()) {
+            String currency = rates.get(start).currency();
+            int end = start;
+            while (end < rates.size() && rates.get(end).currency().equals(currency)) end++;
+
+            long[] days = new long[end - start];
+            long[] scaled = new long[end - start];
+            for (int i = start; i < end; i++) {
+                days[i - start] = rates.get(i).date().toEpochDay();
+                scaled[i - start] = scale(rates.get(i).rate());
+            }
+
+            next.put(currency, new Series(days, scaled));
+            start = end;
+        }
+
+        snapshot = next;
+    }
+
+    /**
+     * Converts an amount into the base currency at the rate in force on a date
+     *
+     * @param amount the amount, 2 decimal places
+     * @param currency its 3-letter currency code
+     * @param date the day whose rate applies, the latest rate on or before it is used
+     *
+     * @return the base currency amount with 2 decimal places, rounded half up, NULL if no rate on or before date is known
+     *
+     * @pre amount != NULL AND amount >= 0 AND currency != NULL AND date != NULL
+     *
+     * @post currency = baseCurrency IMPLIES return = amount
+     */
+    public BigDecimal toBase(BigDecimal amount, String currency, LocalDate date) {
+        if (currency.equals(baseCurrency)) return amount.setScale(2, RoundingMode.HALF_UP);
+
+        Series s = snapshot.get(currency);
+        if (s == null) return null;
+
+        int i = Arrays.binarySearch(s.days(), date.toEpochDay());
+        if (i < 0) i = -i - 2;
+        if (i < 0) return null;
+
+        long cents = amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        return BigDecimal.valueOf(convertCents(cents, s.rates()[i]), 2);
+    }
+
+    /**
+     * @param cents amount in hundredths
+     * @param scaledRate rate times 10^RATE_SCALE
+     *
+     * @return cents * rate in hundredths, rounded half up
+     *
+     * @pre cents >= 0 AND scaledRate > 0
+     */
+    static long convertCents(long cents, long scaledRate) {
+        long product = cents * scaledRate;
+
+        if (Math.multiplyHigh(cents, scaledRate) == 0 && product >= 0 && product <= Long.MAX_VALUE - SCALE / 2) {
+            return (product + SCALE / 2) / SCALE;
+        }
+
+        return BigDecimal.valueOf(cents).multiply(BigDecimal.valueOf(scaledRate))
+                .divide(SCALE_DECIMAL, 0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * @param rate a rate with at most RATE_SCALE decimal places
+     *
+     * @return rate times 10^RATE_SCALE
+     */
+    static long scale(BigDecimal rate) {
+        return rate.setScale(FxRateRepository.RATE_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
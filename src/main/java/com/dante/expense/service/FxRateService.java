@@ -0,0 +1,243 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.ExpenseResponse;
+import com.dante.expense.dto.FxLoadReport;
+import com.dante.expense.entity.Role;
+import com.dante.expense.exception.BadRequestException;
+import com.dante.expense.exception.ForbiddenException;
+import com.dante.expense.exception.NotFoundException;
+import com.dante.expense.repository.ExpenseRepository;
+import com.dante.expense.repository.FxRateRepository;
+import com.dante.expense.repository.FxRateRepository.FxRate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Loads FX rates into fx_rates and FxRateCache, and converts expenses that were created before their rate was known
+ *
+ * Rates come as CSV with a header naming the columns date (ISO), currency and rate (base currency units per
+ * unit of currency). They are read from expense.fx.source (any Spring resource location: file:, classpath:, https:)
+ * on startup and every expense.fx.refresh-interval, or uploaded by a finance user. Each load and each refresh also
+ * reloads the cache from the table, so rates loaded by another instance are picked up, and fills in baseAmount
+ * for expenses that now have a rate.
+ *
+ * @invariant all collaborators != NULL AND source != NULL
+ */
+@Service
+public class FxRateService {
+
+    private static final Logger log = LoggerFactory.getLogger(FxRateService.class);
+
+    /** Expenses converted per backfill transaction */
+    static final int BACKFILL_CHUNK = 1000;
+
+    private final FxRateRepository fxRepo;
+    private final ExpenseRepository expenseRepo;
+    private final FxRateCache fx;
+    private final ExpenseRollupService rollups;
+    private final ExpenseResponseCache expenseCache;
+    private final UserRoleCache userRoles;
+    private final ResourceLoader resources;
+    private final TransactionTemplate tx;
+    private final String source;
+
+    /**
+     * @param fxRepo rate table
+     * @param expenseRepo expense repository, for the baseAmount backfill
+     * @param fx in-memory rates used on the write path
+     * @param rollups spend rollups, their base totals move with the backfill
+     * @param expenseCache read-through cache behind getExpense
+     * @param userRoles cached user roles for the FINANCE check
+     * @param resources resolves the source location
+     * @param txManager transaction manager, loads and backfill chunks each run in their own transaction
+     * @param source rate file or URL, blank to only use uploaded rates
+     *
+     * @pre all arguments != NULL
+     *
+     * @post fields are set from the arguments
+     */
+    public FxRateService(FxRateRepository fxRepo, ExpenseRepository expenseRepo, FxRateCache fx, ExpenseRollupService rollups,
+                         ExpenseResponseCache expenseCache, UserRoleCache userRoles, ResourceLoader resources,
+                         PlatformTransactionManager txManager, @Value("${expense.fx.source:}") String source) {
+        this.fxRepo = fxRepo;
+        this.expenseRepo = expenseRepo;
+        this.fx = fx;
+        this.rollups = rollups;
+        this.expenseCache = expenseCache;
+        this.userRoles = userRoles;
+        this.resources = resources;
+        this.tx = new TransactionTemplate(txManager);
+        this.source = source.trim();
+    }
+
+    /**
+     * Stores rates uploaded by a finance user, replacing stored rates for the same currency and date
+     *
+     * @param actorUserId the finance user uploading
+     * @param csv the rates, read to the end but not closed
+     *
+     * @return how many rates were stored and how many expenses got a baseAmount as a result
+     *
+     * @pre actorUserId != NULL AND csv != NULL
+     *
+     * @post the rates are stored and cached AND every expense with a rate now has a baseAmount
+     *
+     * @throws NotFoundException if the actor doesn't exist
+     * @throws ForbiddenException if the actor isn't FINANCE
+     * @throws BadRequestException if a line can't be parsed, nothing is stored then
+     */
+    public FxLoadReport upload(Long actorUserId, InputStream csv) {
+        if (userRoles.roleOf(actorUserId) != Role.FINANCE) {
+            throw new ForbiddenException("Only FINANCE can load FX rates.");
+        }
+
+        List<FxRate> rates = parse(csv, fx.baseCurrency());
+        tx.executeWithoutResult(status -> fxRepo.upsert(rates));
+
+        return new FxLoadReport(rates.size(), refreshCacheAndBackfill());
+    }
+
+    /**
+     * Runs once the schema scripts have run, so the cache is warm before the first request
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        refresh();
+    }
+
+    /**
+     * Reloads the configured source, then the cache, then converts expenses that now have a rate
+     * A source that can't be read or parsed is logged and skipped, the rates already stored stay in use
+     *
+     * @pre none
+     *
+     * @post the cache holds every stored rate
+     */
+    @Scheduled(fixedDelayString = "${expense.fx.refresh-interval:PT1H}", initialDelayString = "${expense.fx.refresh-interval:PT1H}")
+    public void refresh() {
+        if (!source.isEmpty()) {
+            try (InputStream in = resources.getResource(source).getInputStream()) {
+                List<FxRate> rates = parse(in, fx.baseCurrency());
+                tx.executeWithoutResult(status -> fxRepo.upsert(rates));
+                log.info("Loaded {} FX rates from {}", rates.size(), source);
+            } catch (IOException | UncheckedIOException | BadRequestException ex) {
+                log.warn("Could not load FX rates from {}: {}", source, ex.getMessage());
+            }
+        }
+
+        long converted = refreshCacheAndBackfill();
+        if (converted > 0) log.info("Converted {} expenses into {}", converted, fx.baseCurrency());
+    }
+
+    /**
+     * @return how many expenses got a baseAmount
+     */
+    private long refreshCacheAndBackfill() {
+        fx.load(fxRepo.findAll());
+
+        long converted = 0;
+        int n;
+        do {
+            n = tx.execute(status -> {
+                List<ExpenseResponse> filled = expenseRepo.fillBaseAmounts(fx.baseCurrency(),
+                        OffsetDateTime.now().truncatedTo(ChronoUnit.MICROS), BACKFILL_CHUNK);
+
+                rollups.recordBaseAmounts(filled);
+                expenseCache.evictAllAfterCommit(filled.stream().map(ExpenseResponse::getId).toList());
+
+                return filled.size();
+            });
+            converted += n;
+        } while (n == BACKFILL_CHUNK);
+
+        return converted;
+    }
+
+    /**
+     * Parses a rate CSV; blank lines are skipped and rates for the base currency are dropped
+     *
+     * @param csv the CSV, with a header naming date, currency and rate in any order
+     * @param baseCurrency the FX base currency
+     *
+     * @return the rates in file order
+     *
+     * @pre csv != NULL AND baseCurrency != NULL
+     *
+     * @post return != NULL
+     *
+     * @throws BadRequestException naming the first line that is malformed, or if the header lacks a column
+     */
+    static List<FxRate> parse(InputStream csv, String baseCurrency) {
+        BufferedReader in = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8));
+        List<FxRate> rates = new ArrayList<>();
+        Map<String, Integer> columns = null;
+        long line = 0;
+
+        try {
+            for (String text = in.readLine(); text != null; text = in.readLine()) {
+                line++;
+                if (text.isBlank()) continue;
+
+                List<String> f = CsvLineParser.parse(text);
+
+                if (columns == null) {
+                    columns = new HashMap<>();
+                    for (int i = 0; i < f.size(); i++) columns.put(f.get(i).toLowerCase(Locale.ROOT), i);
+                    for (String c : List.of("date", "currency", "rate")) {
+                        if (!columns.containsKey(c)) throw new BadRequestException("FX header is missing column " + c);
+                    }
+                    continue;
+                }
+
+                FxRate rate = parseRow(f, columns, line);
+                if (!rate.currency().equals(baseCurrency)) rates.add(rate);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed reading FX rates after line " + line, ex);
+        }
+
+        return rates;
+    }
+
+    private static FxRate parseRow(List<String> f, Map<String, Integer> columns, long line) {
+        try {
+            LocalDate date = LocalDate.parse(f.get(columns.get("date")));
+            String currency = f.get(columns.get("currency")).toUpperCase(Locale.ROOT);
+            BigDecimal rate = new BigDecimal(f.get(columns.get("rate")));
+
+            if (!currency.matches("[A-Z]{3}")) throw new IllegalArgumentException("currency must be a 3-letter code");
+            if (rate.signum() <= 0) throw new IllegalArgumentException("rate must be > 0");
+            if (rate.stripTrailingZeros().scale() > FxRateRepository.RATE_SCALE) {
+                throw new IllegalArgumentException("rate has more than " + FxRateRepository.RATE_SCALE + " decimal places");
+            }
+
+            return new FxRate(currency, date, rate);
+        } catch (RuntimeException ex) {
+            throw new BadRequestException("FX line " + line + ": " + ex.getMessage());
+        }
+    }
+}
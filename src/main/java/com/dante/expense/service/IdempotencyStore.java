@@ -0,0 +1,63 @@
+package com.dante.expense.service;
+
+import com.dante.expense.exception.ConflictException;
+
+import java.util.Optional;
+
+/**
+ * Remembers the responses of requests sent with an Idempotency-Key so retries can be answered without re-running them
+ * A key is claimed by the first request that begins with it, completed with its response, or released if there is
+ * nothing worth replaying. Requests that begin with a key another request holds wait for that one to finish
+ * expense.idempotency.store selects the implementation: memory (default) for one instance, jdbc to share keys
+ * between instances
+ *
+ * @invariant this != NULL
+ */
+public interface IdempotencyStore {
+
+    /**
+     * A response as first sent, replayed byte for byte
+     *
+     * @invariant requestHash != NULL AND body != NULL
+     * @invariant 100 <= status <= 599
+     */
+    record StoredResponse(String requestHash, int status, String contentType, byte[] body) {}
+
+    /**
+     * Claims key, or returns the response already recorded for it
+     * If another request holds the key, waits until it completes or releases it; a release lets the caller
+     * claim the key in its place
+     *
+     * @param key the scoped Idempotency-Key
+     *
+     * @return empty if the caller now holds key and must complete or release it, otherwise the recorded response
+     *
+     * @pre key != NULL
+     *
+     * @throws ConflictException if the key stays held longer than the configured wait
+     */
+    Optional<StoredResponse> begin(String key);
+
+    /**
+     * Records the response of a held key; later begin calls return it until the key expires
+     *
+     * @param key a key the caller holds
+     * @param response the response that was sent
+     *
+     * @pre key != NULL AND response != NULL
+     *
+     * @post the caller no longer holds key
+     */
+    void complete(String key, StoredResponse response);
+
+    /**
+     * Gives up a held key without recording anything, so a retry runs again
+     *
+     * @param key a key the caller holds
+     *
+     * @pre key != NULL
+     *
+     * @post the caller no longer holds key
+     */
+    void release(String key);
+}
@@ -0,0 +1,50 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.OutboxEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * OutboxSink that keeps the latest MAX_EVENTS events in memory (expense.outbox.sink=memory), a stand-in for tests
+ *
+ * @invariant received.size() <= MAX_EVENTS
+ */
+@Component
+@ConditionalOnProperty(name = "expense.outbox.sink", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOutboxSink implements OutboxSink {
+
+    /** Most events kept, older ones are dropped */
+    public static final int MAX_EVENTS = 10_000;
+
+    private final Deque<OutboxEvent> received = new ArrayDeque<>();
+
+    @Override
+    public synchronized void send(List<OutboxEvent> batch) {
+        for (OutboxEvent e : batch) {
+            if (received.size() == MAX_EVENTS) received.removeFirst();
+            received.addLast(e);
+        }
+    }
+
+    /**
+     * @return the events received so far, oldest first
+     */
+    public synchronized List<OutboxEvent> received() {
+        return List.copyOf(received);
+    }
+
+    /**
+     * Forgets every received event
+     *
+     * @pre none
+     *
+     * @post received() is empty
+     */
+    public synchronized void clear() {
+        received.clear();
+    }
+}
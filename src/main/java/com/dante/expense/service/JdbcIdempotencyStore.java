@@ -0,0 +1,116 @@
+package com.dante.expense.service;
+
+import com.dante.expense.exception.ConflictException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * IdempotencyStore over the idempotency_keys table (schema-postgresql.sql), shared by every instance
+ * A claim is an insert that only one request can win; a row without a status is in flight. Each statement runs in
+ * its own autocommit transaction so keys are visible to other instances at once, whatever the request does.
+ * Waiting requests poll the row. An in-flight row older than the lease is taken to belong to a dead instance and
+ * can be claimed again; rows older than ttl are claimable too and are purged in the background
+ *
+ * @invariant jdbc != NULL AND ttl > 0 AND lease > 0 AND wait > 0
+ */
+@Component
+@ConditionalOnProperty(name = "expense.idempotency.store", havingValue = "jdbc")
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final long MIN_POLL_MILLIS = 20;
+    private static final long MAX_POLL_MILLIS = 250;
+
+    private static final String CLAIM = """
+            insert into idempotency_keys (key, claimed_at) values (?, now())
+            on conflict (key) do update
+            set claimed_at = excluded.claimed_at, request_hash = null, status = null, content_type = null, body = null
+            where idempotency_keys.claimed_at < now() - make_interval(secs => ?)
+               or (idempotency_keys.status is null and idempotency_keys.claimed_at < now() - make_interval(secs => ?))
+            returning 1""";
+
+    private final JdbcTemplate jdbc;
+    private final Duration ttl;
+    private final Duration lease;
+    private final Duration wait;
+
+    /**
+     * @param jdbc template over the application datasource
+     * @param ttl how long a key is remembered after it's claimed
+     * @param lease how long an in-flight key is held before another request may take it over
+     * @param wait how long a request waits for another holding its key
+     *
+     * @pre jdbc != NULL AND ttl > 0 AND lease > 0 AND wait > 0
+     *
+     * @post fields are set
+     */
+    public JdbcIdempotencyStore(JdbcTemplate jdbc,
+                                @Value("${expense.idempotency.ttl:PT24H}") Duration ttl,
+                                @Value("${expense.idempotency.jdbc.lease:PT5M}") Duration lease,
+                                @Value("${expense.idempotency.wait:PT10S}") Duration wait) {
+        this.jdbc = jdbc;
+        this.ttl = ttl;
+        this.lease = lease;
+        this.wait = wait;
+    }
+
+    @Override
+    public Optional<StoredResponse> begin(String key) {
+        long deadline = System.nanoTime() + wait.toNanos();
+        long poll = MIN_POLL_MILLIS;
+
+        while (true) {
+            if (!jdbc.queryForList(CLAIM, Integer.class, key, ttl.toSeconds(), lease.toSeconds()).isEmpty()) {
+                return Optional.empty();
+            }
+
+            List<StoredResponse> done = jdbc.query(
+                    "select request_hash, status, content_type, body from idempotency_keys where key = ? and status is not null",
+                    (rs, i) -> new StoredResponse(rs.getString(1), rs.getInt(2), rs.getString(3), rs.getBytes(4)),
+                    key);
+            if (!done.isEmpty()) return Optional.of(done.get(0));
+
+            if (System.nanoTime() + poll * 1_000_000 > deadline) {
+                throw new ConflictException("A request with this Idempotency-Key is still in progress, retry later.");
+            }
+            try {
+                Thread.sleep(poll);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ConflictException("Interrupted waiting for a request with this Idempotency-Key.");
+            }
+            poll = Math.min(poll * 2, MAX_POLL_MILLIS);
+        }
+    }
+
+    @Override
+    public void complete(String key, StoredResponse response) {
+        jdbc.update("""
+                update idempotency_keys set request_hash = ?, status = ?, content_type = ?, body = ?
+                where key = ? and status is null""",
+                response.requestHash(), response.status(), response.contentType(), response.body(), key);
+    }
+
+    @Override
+    public void release(String key) {
+        jdbc.update("delete from idempotency_keys where key = ? and status is null", key);
+    }
+
+    /**
+     * Deletes keys older than ttl
+     *
+     * @pre none
+     *
+     * @post no row in idempotency_keys was claimed more than ttl ago
+     */
+    @Scheduled(fixedDelayString = "${expense.idempotency.jdbc.purge-interval:PT10M}")
+    public void purgeExpired() {
+        jdbc.update("delete from idempotency_keys where claimed_at < now() - make_interval(secs => ?)", ttl.toSeconds());
+    }
+}
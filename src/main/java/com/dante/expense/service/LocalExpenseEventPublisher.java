@@ -0,0 +1,50 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.ExpenseEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Publishes to this instance's ExpenseEventBus once the transaction commits (expense.events.fanout=local)
+ * Subscribers connected to other instances don't see the events
+ *
+ * @invariant bus != NULL
+ */
+@Component
+@ConditionalOnProperty(name = "expense.events.fanout", havingValue = "local", matchIfMissing = true)
+public class LocalExpenseEventPublisher implements ExpenseEventPublisher {
+
+    private final ExpenseEventBus bus;
+
+    /**
+     * @param bus this instance's bus
+     *
+     * @pre bus != NULL
+     *
+     * @post this.bus = bus
+     */
+    public LocalExpenseEventPublisher(ExpenseEventBus bus) {
+        this.bus = bus;
+    }
+
+    @Override
+    public void publish(List<ExpenseEvent> events) {
+        if (events.isEmpty()) return;
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bus.deliver(events);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                bus.deliver(events);
+            }
+        });
+    }
+}
@@ -0,0 +1,220 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.ExpenseEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Publishes events through Postgres LISTEN/NOTIFY so every instance's ExpenseEventBus gets them
+ * (expense.events.fanout=notify)
+ * pg_notify runs in the publishing transaction, and Postgres delivers the notification only if that transaction
+ * commits. Events are sent as JSON arrays packed under the 8000 byte payload limit. Each instance holds one
+ * connection outside the pool that LISTENs on the channel and delivers what arrives to its bus, its own events
+ * included. Notifications sent while that connection is down are missed; it reconnects after RECONNECT_MS
+ *
+ * @invariant jdbc != NULL AND bus != NULL AND objectMapper != NULL AND channel is a plain identifier
+ */
+@Component
+@ConditionalOnProperty(name = "expense.events.fanout", havingValue = "notify")
+public class NotifyExpenseEventPublisher implements ExpenseEventPublisher, SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(NotifyExpenseEventPublisher.class);
+
+    /** Postgres rejects payloads of 8000 bytes or more */
+    private static final int MAX_PAYLOAD_BYTES = 7_900;
+
+    /** How long the listener blocks waiting for notifications before re-checking for shutdown */
+    private static final int LISTEN_POLL_MS = 500;
+
+    private static final long RECONNECT_MS = 1_000;
+
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+
+    private static final TypeReference<List<ExpenseEvent>> EVENTS = new TypeReference<>() {};
+
+    private final JdbcTemplate jdbc;
+    private final ExpenseEventBus bus;
+    private final ObjectMapper objectMapper;
+    private final DataSourceProperties dataSource;
+    private final String channel;
+    private final Counter sent;
+    private final Counter received;
+    private final Counter reconnects;
+
+    private volatile boolean running;
+    private Thread listener;
+
+    /**
+     * @param jdbc template over the application datasource, joins the caller's transaction
+     * @param bus this instance's bus
+     * @param objectMapper writes and reads the payloads
+     * @param dataSource connection settings for the listening connection
+     * @param meterRegistry registry for the expense.events.notifications counters
+     * @param channel the NOTIFY channel
+     *
+     * @pre all arguments != NULL
+     *
+     * @post the listener isn't started
+     *
+     * @throws IllegalArgumentException if channel isn't a lower case identifier
+     */
+    public NotifyExpenseEventPublisher(JdbcTemplate jdbc, ExpenseEventBus bus, ObjectMapper objectMapper,
+                                       DataSourceProperties dataSource, MeterRegistry meterRegistry,
+                                       @Value("${expense.events.notify.channel:expense_events}") String channel) {
+        if (!CHANNEL.matcher(channel).matches()) {
+            throw new IllegalArgumentException("expense.events.notify.channel must be a lower case identifier: " + channel);
+        }
+
+        this.jdbc = jdbc;
+        this.bus = bus;
+        this.objectMapper = objectMapper;
+        this.dataSource = dataSource;
+        this.channel = channel;
+        this.sent = Counter.builder("expense.events.notifications").tag("direction", "sent").register(meterRegistry);
+        this.received = Counter.builder("expense.events.notifications").tag("direction", "received").register(meterRegistry);
+        this.reconnects = Counter.builder("expense.events.notifications").tag("direction", "reconnect").register(meterRegistry);
+    }
+
+    @Override
+    public void publish(List<ExpenseEvent> events) {
+        for (String payload : payloads(events)) {
+            jdbc.queryForList("select pg_notify(?, ?)", channel, payload);
+            sent.increment();
+        }
+    }
+
+    /**
+     * Packs events into as few JSON arrays as fit the payload limit
+     * An event too large on its own (a long comment) is sent without its comment
+     *
+     * @param events the events
+     *
+     * @return JSON arrays holding every event, in order
+     *
+     * @pre events != NULL
+     *
+     * @post every element of return is under MAX_PAYLOAD_BYTES in UTF-8
+     */
+    List<String> payloads(List<ExpenseEvent> events) {
+        List<String> payloads = new ArrayList<>();
+        StringBuilder chunk = new StringBuilder("[");
+        int bytes = 2;
+
+        for (ExpenseEvent e : events) {
+            String json = objectMapper.writeValueAsString(e);
+            int size = json.getBytes(StandardCharsets.UTF_8).length;
+            if (size + 2 > MAX_PAYLOAD_BYTES) {
+                json = objectMapper.writeValueAsString(new ExpenseEvent(e.expenseId(), e.ownerId(), e.actorUserId(),
+                        e.action(), e.from(), e.status(), null, e.timestamp()));
+                size = json.getBytes(StandardCharsets.UTF_8).length;
+            }
+
+            if (chunk.length() > 1 && bytes + 1 + size > MAX_PAYLOAD_BYTES) {
+                payloads.add(chunk.append(']').toString());
+                chunk = new StringBuilder("[");
+                bytes = 2;
+            }
+            if (chunk.length() > 1) {
+                chunk.append(',');
+                bytes++;
+            }
+            chunk.append(json);
+            bytes += size;
+        }
+
+        if (chunk.length() > 1) payloads.add(chunk.append(']').toString());
+        return payloads;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        listener = new Thread(this::listen, "expense-events-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listener == null) return;
+
+        try {
+            listener.join(LISTEN_POLL_MS * 4L);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Listener loop: LISTENs on its own connection and delivers each notification, reconnecting on failure
+     */
+    private void listen() {
+        while (running) {
+            try (Connection con = DriverManager.getConnection(dataSource.determineUrl(),
+                    dataSource.determineUsername(), dataSource.determinePassword())) {
+                try (Statement st = con.createStatement()) {
+                    st.execute("LISTEN " + channel);
+                }
+                PGConnection pg = con.unwrap(PGConnection.class);
+
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(LISTEN_POLL_MS);
+                    if (notifications == null) continue;
+
+                    for (PGNotification n : notifications) {
+                        received.increment();
+                        deliver(n.getParameter());
+                    }
+                }
+            } catch (SQLException ex) {
+                if (!running) return;
+                reconnects.increment();
+                log.warn("Expense event listener lost its connection, reconnecting: {}", ex.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_MS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void deliver(String payload) {
+        List<ExpenseEvent> events;
+        try {
+            events = objectMapper.readValue(payload, EVENTS);
+        } catch (JacksonException ex) {
+            log.warn("Dropping unreadable expense event notification: {}", ex.getMessage());
+            return;
+        }
+        bus.deliver(events);
+    }
+}
@@ -0,0 +1,134 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.OutboxEvent;
+import com.dante.expense.repository.ExpenseOutboxRepository;
+import com.dante.expense.repository.ExpenseOutboxRepository.Backlog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Delivers expense_outbox rows to the OutboxSink (expense.outbox.enabled=true)
+ *
+ * Each batch is one transaction: claim the oldest due row of up to batch-size expenses with SKIP LOCKED, send them,
+ * then delete them, or on failure push them back with exponential backoff. Delivery is at least once: a batch the sink
+ * took but whose delete didn't commit is sent again. An expense's next row is only claimed once the previous one is
+ * gone, so every expense's events arrive in order, across nodes too.
+ *
+ * Metrics: expense.outbox.events{result=published|failed}, expense.outbox.delivery (commit to delivery),
+ * expense.outbox.pending and expense.outbox.lag (age of the oldest pending row, seconds), refreshed every poll
+ *
+ * @invariant outboxRepo != NULL AND sink != NULL AND tx != NULL AND batchSize > 0 AND maxBackoff > 0
+ */
+@Component
+@ConditionalOnProperty(name = "expense.outbox.enabled", havingValue = "true")
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    /** Bounds one poll so a steady stream of events doesn't hold the scheduler thread */
+    private static final int MAX_BATCHES_PER_POLL = 100;
+
+    private final ExpenseOutboxRepository outboxRepo;
+    private final OutboxSink sink;
+    private final TransactionTemplate tx;
+    private final int batchSize;
+    private final Duration maxBackoff;
+
+    private final AtomicReference<Backlog> backlog = new AtomicReference<>(new Backlog(0, 0));
+    private final Counter published;
+    private final Counter failed;
+    private final Timer delivery;
+
+    /**
+     * @param outboxRepo outbox repository
+     * @param sink where events go
+     * @param txManager transaction manager, each batch runs in its own transaction
+     * @param meterRegistry registry for the relay's metrics
+     * @param batchSize max events per batch
+     * @param maxBackoff longest wait between attempts at a failing row
+     *
+     * @pre all objects != NULL AND batchSize > 0 AND maxBackoff > 0
+     *
+     * @post fields are set and the metrics are registered
+     */
+    public OutboxRelay(ExpenseOutboxRepository outboxRepo, OutboxSink sink, PlatformTransactionManager txManager,
+                       MeterRegistry meterRegistry,
+                       @Value("${expense.outbox.batch-size:100}") int batchSize,
+                       @Value("${expense.outbox.max-backoff:PT5M}") Duration maxBackoff) {
+        this.outboxRepo = outboxRepo;
+        this.sink = sink;
+        this.tx = new TransactionTemplate(txManager);
+        this.batchSize = batchSize;
+        this.maxBackoff = maxBackoff;
+
+        Gauge.builder("expense.outbox.pending", backlog, b -> b.get().pending()).register(meterRegistry);
+        Gauge.builder("expense.outbox.lag", backlog, b -> b.get().oldestAgeSeconds()).baseUnit("seconds").register(meterRegistry);
+        this.published = Counter.builder("expense.outbox.events").tag("result", "published").register(meterRegistry);
+        this.failed = Counter.builder("expense.outbox.events").tag("result", "failed").register(meterRegistry);
+        this.delivery = Timer.builder("expense.outbox.delivery").register(meterRegistry);
+    }
+
+    /**
+     * Sends batches until nothing is due, a batch fails or MAX_BATCHES_PER_POLL were sent, then refreshes the
+     * backlog gauges
+     *
+     * @pre none
+     *
+     * @post due rows not held by another node were delivered or rescheduled, up to MAX_BATCHES_PER_POLL batches
+     */
+    @Scheduled(fixedDelayString = "${expense.outbox.poll-interval:PT1S}")
+    public void relay() {
+        for (int i = 0; i < MAX_BATCHES_PER_POLL && relayBatch() > 0; i++) {
+            // keep going while batches are delivered
+        }
+        backlog.set(outboxRepo.backlog());
+    }
+
+    /**
+     * Claims, sends and settles one batch
+     *
+     * @return number of events delivered, 0 if none were due or the batch failed
+     *
+     * @pre none
+     *
+     * @post the claimed rows are deleted if the sink took them, OW rescheduled
+     */
+    int relayBatch() {
+        return tx.execute(status -> {
+            List<OutboxEvent> batch = outboxRepo.claimHeads(batchSize);
+            if (batch.isEmpty()) return 0;
+
+            List<Long> ids = batch.stream().map(OutboxEvent::eventId).toList();
+            try {
+                sink.send(batch);
+            } catch (RuntimeException ex) {
+                log.warn("Outbox batch of {} failed, retrying with backoff: {}", batch.size(), ex.getMessage());
+                outboxRepo.reschedule(ids, String.valueOf(ex.getMessage()), maxBackoff);
+                failed.increment(batch.size());
+                return 0;
+            }
+
+            outboxRepo.delete(ids);
+            published.increment(batch.size());
+            OffsetDateTime now = OffsetDateTime.now();
+            for (OutboxEvent e : batch) delivery.record(Duration.between(e.createdAt(), now));
+
+            return batch.size();
+        });
+    }
+}
@@ -0,0 +1,29 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Where OutboxRelay delivers outbox events
+ * expense.outbox.sink selects the implementation: webhook POSTs each batch, file appends JSON lines, memory keeps
+ * them in process for tests
+ *
+ * @invariant this != NULL
+ */
+public interface OutboxSink {
+
+    /**
+     * Delivers a batch, all or nothing as far as the relay is concerned
+     * A batch that fails is retried whole, so a sink may see an event more than once
+     *
+     * @param batch events in eventId order, at most one per expense
+     *
+     * @pre batch != NULL AND batch is non-empty
+     *
+     * @post every event in batch is durably with the sink
+     *
+     * @throws RuntimeException if the batch couldn't be delivered
+     */
+    void send(List<OutboxEvent> batch);
+}
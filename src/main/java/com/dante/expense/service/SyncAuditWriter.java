@@ -0,0 +1,36 @@
+package com.dante.expense.service;
+
+import com.dante.expense.entity.ExpenseAction;
+import com.dante.expense.repository.ExpenseActionRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Default audit writer: rows are saved in the caller's transaction and commit or roll back with it
+ *
+ * @invariant actionRepo != NULL
+ */
+@Component
+@ConditionalOnProperty(name = "expense.audit.mode", havingValue = "sync", matchIfMissing = true)
+public class SyncAuditWriter implements AuditWriter {
+
+    private final ExpenseActionRepository actionRepo;
+
+    /**
+     * @param actionRepo audit repository
+     *
+     * @pre actionRepo != NULL
+     *
+     * @post this.actionRepo = actionRepo
+     */
+    public SyncAuditWriter(ExpenseActionRepository actionRepo) {
+        this.actionRepo = actionRepo;
+    }
+
+    @Override
+    public void write(List<ExpenseAction> actions) {
+        actionRepo.saveAll(actions);
+    }
+}
@@ -0,0 +1,77 @@
+package com.dante.expense.service;
+
+import com.dante.expense.entity.Role;
+import com.dante.expense.exception.NotFoundException;
+import com.dante.expense.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Bounded in-process cache of user id to role, used for authorization checks
+ * Entries expire after a fixed TTL so role changes made in the database are picked up
+ * Unknown ids are not cached, they hit the database every time and fail with NotFoundException
+ * Hit / miss / eviction counts are published as the "cache.*" meters with tag cache=user-roles
+ *
+ * @invariant userRepo != NULL AND roles != NULL
+ */
+@Component
+public class UserRoleCache {
+
+    /** Name the cache metrics are tagged with */
+    public static final String CACHE_NAME = "user-roles";
+
+    private final UserRepository userRepo;
+    private final AsyncCache<Long, Role> roles;
+
+    /**
+     * @param userRepo user repository
+     * @param meterRegistry registry the cache statistics are bound to
+     * @param maxSize max number of cached users
+     * @param ttl how long an entry is trusted after it's loaded
+     *
+     * @pre userRepo != NULL AND meterRegistry != NULL AND maxSize > 0 AND ttl > 0
+     *
+     * @post the cache is empty and registered with meterRegistry
+     */
+    public UserRoleCache(UserRepository userRepo, MeterRegistry meterRegistry,
+                         @Value("${expense.cache.user-roles.max-size:10000}") long maxSize,
+                         @Value("${expense.cache.user-roles.ttl:PT5M}") Duration ttl) {
+        this.userRepo = userRepo;
+        this.roles = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, roles, CACHE_NAME);
+    }
+
+    /**
+     * Returns the role of a user, reading the users table only on a cache miss
+     *
+     * @param userId the user id
+     *
+     * @return the user's role
+     *
+     * @pre userId != NULL
+     *
+     * @post return != NULL
+     *
+     * @throws NotFoundException if no user exists with userId
+     */
+    public Role roleOf(Long userId) {
+        Role role = CacheLoads.get(roles, userId, id -> userRepo.findRoleById(id).orElse(null));
+
+        if (role == null) {
+            throw new NotFoundException("User " + userId + " not found.");
+        }
+
+        return role;
+    }
+}
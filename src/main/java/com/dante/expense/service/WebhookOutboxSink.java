@@ -0,0 +1,74 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.OutboxEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * OutboxSink POSTing each batch as a JSON array of OutboxEvent to a webhook (expense.outbox.sink=webhook)
+ * Any 2xx answer means the receiver has the batch; anything else, or no answer within timeout, fails it and the
+ * relay retries. Receivers see repeats after such failures and should dedupe on eventId
+ *
+ * @invariant url != NULL AND timeout > 0 AND http != NULL AND objectMapper != NULL
+ */
+@Component
+@ConditionalOnProperty(name = "expense.outbox.sink", havingValue = "webhook")
+public class WebhookOutboxSink implements OutboxSink {
+
+    private final URI url;
+    private final Duration timeout;
+    private final ObjectMapper objectMapper;
+    private final HttpClient http;
+
+    /**
+     * @param url where batches are POSTed
+     * @param timeout how long one POST may take
+     * @param objectMapper writes the request bodies
+     *
+     * @pre url is an absolute http(s) URI AND timeout > 0 AND objectMapper != NULL
+     *
+     * @post fields are set
+     */
+    public WebhookOutboxSink(@Value("${expense.outbox.webhook.url}") URI url,
+                             @Value("${expense.outbox.webhook.timeout:PT10S}") Duration timeout,
+                             ObjectMapper objectMapper) {
+        this.url = url;
+        this.timeout = timeout;
+        this.objectMapper = objectMapper;
+        this.http = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @Override
+    public void send(List<OutboxEvent> batch) {
+        HttpRequest request = HttpRequest.newBuilder(url)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(batch)))
+                .build();
+
+        HttpResponse<Void> response;
+        try {
+            response = http.send(request, HttpResponse.BodyHandlers.discarding());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Outbox webhook " + url + " failed", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted posting to outbox webhook " + url, ex);
+        }
+
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException("Outbox webhook " + url + " answered " + response.statusCode());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+-- Postgres specific schema that Hibernate's ddl-auto can't express.
+-- Runs after Hibernate on every startup (spring.jpa.defer-datasource-initialization), so every statement must be idempotent.
+
+-- Manager approval queue: SUBMITTED expenses oldest first. Only the pending slice of the table is indexed.
+CREATE INDEX IF NOT EXISTS idx_expenses_submitted_queue ON expenses (created_at, id) WHERE status = 'SUBMITTED';
+
+-- Id generation moved from IDENTITY columns to pooled-lo sequences (INCREMENT BY 50, see IdGeneration).
+-- Databases created before the switch still carry identity defaults and rows the sequences know nothing about:
+-- drop the identity so nothing can draw ids from it, then move each sequence past MAX(id) whenever existing ids
+-- lie beyond the highest block it has handed out. A no-op once the sequence is ahead.
+ALTER TABLE users ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE expenses ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE expense_actions ALTER COLUMN id DROP IDENTITY IF EXISTS;
+
+SELECT setval('users_seq', (SELECT MAX(id) + 1 FROM users), false) FROM users_seq
+WHERE (SELECT MAX(id) FROM users) >= last_value + CASE WHEN is_called THEN 50 ELSE 0 END;
+SELECT setval('expenses_seq', (SELECT MAX(id) + 1 FROM expenses), false) FROM expenses_seq
+WHERE (SELECT MAX(id) FROM expenses) >= last_value + CASE WHEN is_called THEN 50 ELSE 0 END;
+SELECT setval('expense_actions_seq', (SELECT MAX(id) + 1 FROM expense_actions), false) FROM expense_actions_seq
+WHERE (SELECT MAX(id) FROM expense_actions) >= last_value + CASE WHEN is_called THEN 50 ELSE 0 END;
+
+-- Optimistic lock column on expenses (see Expense.getVersion). Hibernate adds it nullable, rows that predate it start at 0.
+UPDATE expenses SET version = 0 WHERE version IS NULL;
+ALTER TABLE expenses ALTER COLUMN version SET DEFAULT 0;
+ALTER TABLE expenses ALTER COLUMN version SET NOT NULL;
+
+-- Spend rollups (see ExpenseRollupRepository): one row per (user, month of expense_date, category, currency, status),
+-- moved in the same transaction as the expenses behind it. The first startup with the table seeds it from expenses;
+-- once it holds rows the seed is a no-op and POST /api/expenses/summary/rebuild is the way to recompute it.
+CREATE TABLE IF NOT EXISTS expense_rollups (
+    user_id bigint NOT NULL,
+    month date NOT NULL,
+    category varchar(255) NOT NULL,
+    currency varchar(3) NOT NULL,
+    status varchar(255) NOT NULL,
+    expense_count bigint NOT NULL,
+    total_amount numeric(19,2) NOT NULL,
+    total_base_amount numeric(19,2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (user_id, month, category, currency, status)
+);
+ALTER TABLE expense_rollups ADD COLUMN IF NOT EXISTS total_base_amount numeric(19,2) NOT NULL DEFAULT 0;
+INSERT INTO expense_rollups (user_id, month, category, currency, status, expense_count, total_amount, total_base_amount)
+SELECT user_id, date_trunc('month', expense_date)::date, category, currency, status, count(*), sum(amount),
+       coalesce(sum(base_amount), 0)
+FROM expenses
+WHERE NOT EXISTS (SELECT 1 FROM expense_rollups)
+GROUP BY 1, 2, 3, 4, 5;
+
+-- FX rates into expense.fx.base-currency (see FxRateRepository), a rate holds until the currency's next rate_date.
+-- Expenses created before their rate was known keep a NULL base_amount until FxRateService fills it in;
+-- the partial index keeps that search to the pending rows.
+CREATE TABLE IF NOT EXISTS fx_rates (
+    currency varchar(3) NOT NULL,
+    rate_date date NOT NULL,
+    rate numeric(19,9) NOT NULL CHECK (rate > 0),
+    PRIMARY KEY (currency, rate_date)
+);
+CREATE INDEX IF NOT EXISTS idx_expenses_base_pending ON expenses (id) WHERE base_amount IS NULL;
+
+-- Full-text search over descriptions (see ExpenseRepositoryCustom.search). A stored generated column is kept
+-- current by Postgres on every insert and update; the first startup after it's added rewrites expenses once.
+ALTER TABLE expenses ADD COLUMN IF NOT EXISTS description_tsv tsvector
+    GENERATED ALWAYS AS (to_tsvector('english', coalesce(description, ''))) STORED;
+CREATE INDEX IF NOT EXISTS idx_expenses_description_tsv ON expenses USING gin (description_tsv);
+
+-- Idempotency-Key on POST /api/expenses (see ExpenseService.createExpense): a retried request finds the expense its
+-- first attempt created. Keys are scoped to their user, most requests carry none.
+CREATE UNIQUE INDEX IF NOT EXISTS uq_expenses_idempotency_key ON expenses (user_id, idempotency_key)
+    WHERE idempotency_key IS NOT NULL;
+
+-- Responses of requests sent with an Idempotency-Key when expense.idempotency.store=jdbc (see JdbcIdempotencyStore).
+-- A row with a NULL status is a request still in flight.
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    key varchar(200) PRIMARY KEY,
+    claimed_at timestamptz NOT NULL,
+    request_hash varchar(64),
+    status int,
+    content_type varchar(200),
+    body bytea
+);
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_claimed ON idempotency_keys (claimed_at);
+
+-- Transactional outbox for downstream consumers (see ExpenseOutbox / OutboxRelay): rows are inserted in the
+-- transaction that records the workflow action and deleted once a sink has taken them. id doubles as the event's
+-- dedupe id. Only the oldest row of each expense is relayed at a time, which the (expense_id, id) index serves.
+CREATE TABLE IF NOT EXISTS expense_outbox (
+    id bigserial PRIMARY KEY,
+    expense_id bigint NOT NULL,
+    event_type varchar(20) NOT NULL,
+    payload jsonb NOT NULL,
+    created_at timestamptz NOT NULL DEFAULT now(),
+    attempts int NOT NULL DEFAULT 0,
+    next_attempt_at timestamptz NOT NULL DEFAULT now(),
+    last_error text
+);
+CREATE INDEX IF NOT EXISTS idx_expense_outbox_expense ON expense_outbox (expense_id, id);
+
+-- SLA escalation (see ExpenseEscalationService). Hibernate adds escalated_at but only writes the action_type CHECK
+-- when it creates the table, so tables from before ESCALATE (ordinal 4) get the constraint widened once; on a
+-- partitioned expense_actions the parent's constraint carries every partition's. Escalations have no actor.
+-- The partial index holds only the SUBMITTED rows the scan can still escalate, oldest first.
+DO 'BEGIN
+    IF EXISTS (SELECT 1 FROM pg_constraint
+               WHERE conrelid = ''expense_actions''::regclass AND conname = ''expense_actions_action_type_check''
+                 AND pg_get_constraintdef(oid) LIKE ''%action_type <= 3)%'') THEN
+        ALTER TABLE expense_actions DROP CONSTRAINT expense_actions_action_type_check;
+        ALTER TABLE expense_actions ADD CONSTRAINT expense_actions_action_type_check
+            CHECK (action_type >= 0 AND action_type <= 4);
+    END IF;
+END';
+ALTER TABLE expense_actions ALTER COLUMN actor_user_id DROP NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_expenses_sla_pending ON expenses (created_at, id)
+    WHERE status = 'SUBMITTED' AND escalated_at IS NULL;
+
+-- Audit rows waiting for the async writer (expense.audit.mode=async, see AsyncAuditWriter). A row is inserted in the
+-- transaction that records the workflow action and deleted in the one that inserts its expense_actions row, so a
+-- committed action survives a crash between the two; rows left over are replayed when the writer starts.
+CREATE TABLE IF NOT EXISTS expense_action_staging (
+    id bigserial PRIMARY KEY,
+    expense_id bigint NOT NULL,
+    actor_user_id bigint,
+    action_type varchar(20) NOT NULL,
+    comment varchar(500),
+    action_at timestamptz NOT NULL
+);
@@ -0,0 +1,122 @@
+package com.dante.expense.bench;
+
+import com.dante.expense.entity.Expense;
+import com.dante.expense.entity.ExpenseAction;
+import com.dante.expense.entity.ExpenseActionType;
+import com.dante.expense.entity.ExpenseCategory;
+import com.dante.expense.entity.Role;
+import com.dante.expense.entity.User;
+import com.dante.expense.repository.ExpenseActionRepository;
+import com.dante.expense.repository.ExpenseRepository;
+import com.dante.expense.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Integration benchmark for the createExpense write shape: one expense plus one SUBMIT action per row,
+ * written through JPA in CHUNK-sized transactions. Reports rows/s and how many JDBC statements were prepared,
+ * which is where IDENTITY (one INSERT per row) and sequence ids (batched INSERTs) differ.
+ *
+ * Not picked up by the default surefire includes, run against a live database with
+ *      mvn test -Dtest=ExpenseInsertBenchmark
+ *
+ * @pre the datasource in application.properties is reachable
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ExpenseInsertBenchmark {
+
+    private static final int ROWS = 20_000;
+    private static final int CHUNK = 500;
+    private static final int WARMUP_ROWS = 5_000;
+
+    @Autowired private ExpenseRepository expenseRepo;
+    @Autowired private ExpenseActionRepository actionRepo;
+    @Autowired private UserRepository userRepo;
+    @Autowired private EntityManagerFactory emf;
+    @Autowired private JdbcTemplate jdbc;
+    @Autowired private PlatformTransactionManager txManager;
+
+    private TransactionTemplate tx;
+    private Long benchUserId;
+
+    @BeforeEach
+    void createBenchUser() {
+        tx = new TransactionTemplate(txManager);
+
+        User u = new User();
+        u.setName("Bench");
+        u.setEmail("bench-" + System.nanoTime() + "@demo.com");
+        u.setPasswordHash("not-real");
+        u.setRole(Role.EMPLOYEE);
+        benchUserId = userRepo.save(u).getId();
+    }
+
+    @AfterEach
+    void dropBenchData() {
+        jdbc.update("delete from expense_actions where expense_id in (select id from expenses where user_id = ?)", benchUserId);
+        jdbc.update("delete from expenses where user_id = ?", benchUserId);
+        jdbc.update("delete from expense_rollups where user_id = ?", benchUserId);
+        jdbc.update("delete from users where id = ?", benchUserId);
+    }
+
+    @Test
+    void insertThroughput() {
+        insert(WARMUP_ROWS);
+
+        Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+
+        long start = System.nanoTime();
+        insert(ROWS);
+        double ms = (System.nanoTime() - start) / 1_000_000.0;
+
+        System.out.printf("insert rows=%d chunk=%d time=%.1f ms  %,.0f rows/s  statements=%d%n",
+                ROWS, CHUNK, ms, ROWS / (ms / 1000), stats.getPrepareStatementCount());
+    }
+
+    private void insert(int rows) {
+        for (int done = 0; done < rows; done += CHUNK) {
+            int n = Math.min(CHUNK, rows - done);
+
+            tx.executeWithoutResult(status -> {
+                User user = userRepo.getReferenceById(benchUserId);
+                List<Expense> expenses = new ArrayList<>(n);
+                List<ExpenseAction> actions = new ArrayList<>(n);
+
+                for (int i = 0; i < n; i++) {
+                    Expense e = new Expense();
+                    e.setUser(user);
+                    e.setAmount(BigDecimal.valueOf(1299 + i, 2));
+                    e.setCurrency("USD");
+                    e.setCategory(ExpenseCategory.MEALS);
+                    e.setDescription("bench expense " + i);
+                    e.setExpenseDate(LocalDate.now());
+                    expenses.add(e);
+
+                    ExpenseAction a = new ExpenseAction();
+                    a.setExpense(e);
+                    a.setActor(user);
+                    a.setActionType(ExpenseActionType.SUBMIT);
+                    actions.add(a);
+                }
+
+                expenseRepo.saveAll(expenses);
+                actionRepo.saveAll(actions);
+            });
+        }
+    }
+}
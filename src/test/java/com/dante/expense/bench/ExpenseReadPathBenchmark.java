@@ -0,0 +1,144 @@
+package com.dante.expense.bench;
+
+import com.dante.expense.dto.ExpenseCursor;
+import com.dante.expense.dto.ExpenseFilter;
+import com.dante.expense.dto.ExpenseResponse;
+import com.dante.expense.entity.Expense;
+import com.dante.expense.repository.ExpenseRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Integration benchmark comparing the two ways of reading an expense listing:
+ * loading Expense entities and mapping them, vs the constructor projection used by findPage.
+ * Each run walks a user's full history in MAX_PAGE_SIZE keyset pages, one read-only transaction per page.
+ *
+ * Not picked up by the default surefire includes, run against a live database with
+ *      mvn test -Dtest=ExpenseReadPathBenchmark
+ *
+ * @pre the datasource in application.properties is reachable
+ */
+@SpringBootTest
+class ExpenseReadPathBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    @Autowired private ExpenseRepository expenseRepo;
+    @Autowired private EntityManager em;
+    @Autowired private JdbcTemplate jdbc;
+    @Autowired private PlatformTransactionManager txManager;
+
+    private TransactionTemplate readOnlyTx;
+    private long benchUserId;
+
+    @BeforeEach
+    void createBenchUser() {
+        readOnlyTx = new TransactionTemplate(txManager);
+        readOnlyTx.setReadOnly(true);
+
+        benchUserId = jdbc.queryForObject(
+                "insert into users (id, name, email, password_hash, role) values (nextval('users_seq'), 'Bench', ?, 'not-real', 0) returning id",
+                Long.class, "bench-" + System.nanoTime() + "@demo.com");
+    }
+
+    @AfterEach
+    void dropBenchData() {
+        jdbc.update("delete from expenses where user_id = ?", benchUserId);
+        jdbc.update("delete from users where id = ?", benchUserId);
+    }
+
+    @ParameterizedTest(name = "{0} rows")
+    @ValueSource(ints = {10_000, 100_000})
+    void entityVsProjection(int rows) {
+        seed(rows);
+
+        Function<ExpenseCursor, List<ExpenseResponse>> entityPath = after -> readOnlyTx.execute(tx -> entityPage(after));
+        Function<ExpenseCursor, List<ExpenseResponse>> projectionPath = after -> readOnlyTx.execute(tx ->
+                expenseRepo.findPage(new ExpenseFilter(benchUserId, null, null, null, null), after, PAGE_SIZE));
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            walk(entityPath);
+            walk(projectionPath);
+        }
+
+        report(rows, "entity", measure(entityPath, rows));
+        report(rows, "projection", measure(projectionPath, rows));
+    }
+
+    /**
+     * The pre-projection read path: hydrate entities, then copy into the DTO
+     */
+    private List<ExpenseResponse> entityPage(ExpenseCursor after) {
+        String jpql = "select e from Expense e where e.user.id = :userId"
+                + (after == null ? "" : " and e.createdAt <= :at and (e.createdAt < :at or e.id < :id)")
+                + " order by e.createdAt desc, e.id desc";
+
+        var q = em.createQuery(jpql, Expense.class).setParameter("userId", benchUserId).setMaxResults(PAGE_SIZE);
+        if (after != null) q.setParameter("at", after.createdAt()).setParameter("id", after.id());
+
+        return q.getResultList().stream()
+                .map(e -> new ExpenseResponse(e.getId(), e.getUser().getId(), e.getAmount(), e.getBaseAmount(),
+                        e.getCurrency(), e.getCategory(), e.getDescription(), e.getExpenseDate(), e.getStatus(),
+                        e.getCreatedAt(), e.getUpdatedAt()))
+                .toList();
+    }
+
+    private long measure(Function<ExpenseCursor, List<ExpenseResponse>> path, int rows) {
+        long best = Long.MAX_VALUE;
+
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            int seen = walk(path);
+            best = Math.min(best, System.nanoTime() - start);
+
+            if (seen != rows) throw new IllegalStateException("expected " + rows + " rows, walked " + seen);
+        }
+
+        return best;
+    }
+
+    private int walk(Function<ExpenseCursor, List<ExpenseResponse>> path) {
+        int seen = 0;
+        ExpenseCursor after = null;
+
+        while (true) {
+            List<ExpenseResponse> page = path.apply(after);
+            seen += page.size();
+
+            if (page.size() < PAGE_SIZE) return seen;
+            after = ExpenseCursor.of(page.get(page.size() - 1));
+        }
+    }
+
+    private void seed(int rows) {
+        OffsetDateTime base = OffsetDateTime.now().minusDays(1);
+
+        jdbc.update("""
+                insert into expenses (id, user_id, amount, currency, category, description, expense_date, status, created_at, updated_at)
+                select nextval('expenses_seq'), ?, (g % 500) + 0.99, 'USD', 'MEALS', 'bench expense ' || g, current_date, 'SUBMITTED',
+                       ? + g * interval '1 millisecond', ? + g * interval '1 millisecond'
+                from generate_series(1, ?) g
+                """, benchUserId, base, base, rows);
+
+        jdbc.execute("analyze expenses");
+    }
+
+    private static void report(int rows, String path, long nanos) {
+        double ms = nanos / 1_000_000.0;
+        System.out.printf("read-path %-10s rows=%-7d best=%9.1f ms  %,12.0f rows/s%n", path, rows, ms, rows / (ms / 1000));
+    }
+}
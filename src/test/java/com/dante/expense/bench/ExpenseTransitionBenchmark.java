@@ -0,0 +1,148 @@
+package com.dante.expense.bench;
+
+import com.dante.expense.entity.Expense;
+import com.dante.expense.entity.ExpenseAction;
+import com.dante.expense.entity.ExpenseActionType;
+import com.dante.expense.entity.ExpenseStatus;
+import com.dante.expense.entity.Role;
+import com.dante.expense.entity.User;
+import com.dante.expense.repository.ExpenseActionRepository;
+import com.dante.expense.repository.ExpenseRepository;
+import com.dante.expense.repository.UserRepository;
+import com.dante.expense.service.ExpenseService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * Integration benchmark for approve: the old load-then-save path (SELECT actor, SELECT expense, dirty-checked
+ * UPDATE, audit INSERT) vs ExpenseService.approveExpense (one guarded UPDATE ... RETURNING plus the audit INSERT).
+ * Each approval is its own transaction; reports transitions/s per path for 1 and 8 client threads.
+ *
+ * Not picked up by the default surefire includes, run against a live database with
+ *      mvn test -Dtest=ExpenseTransitionBenchmark
+ *
+ * @pre the datasource in application.properties is reachable
+ */
+@SpringBootTest
+class ExpenseTransitionBenchmark {
+
+    private static final int WARMUP = 1_000;
+    private static final int MEASURED = 5_000;
+
+    @Autowired private ExpenseService expenseService;
+    @Autowired private ExpenseRepository expenseRepo;
+    @Autowired private ExpenseActionRepository actionRepo;
+    @Autowired private UserRepository userRepo;
+    @Autowired private JdbcTemplate jdbc;
+    @Autowired private PlatformTransactionManager txManager;
+
+    private TransactionTemplate tx;
+    private long employeeId;
+    private long managerId;
+
+    @BeforeEach
+    void createBenchUsers() {
+        tx = new TransactionTemplate(txManager);
+        employeeId = newUser(Role.EMPLOYEE);
+        managerId = newUser(Role.MANAGER);
+    }
+
+    @AfterEach
+    void dropBenchData() {
+        jdbc.update("delete from expense_actions where expense_id in (select id from expenses where user_id = ?)", employeeId);
+        jdbc.update("delete from expenses where user_id = ?", employeeId);
+        jdbc.update("delete from expense_rollups where user_id = ?", employeeId);
+        jdbc.update("delete from users where id in (?, ?)", employeeId, managerId);
+    }
+
+    @ParameterizedTest(name = "{0} threads")
+    @ValueSource(ints = {1, 8})
+    void loadThenSaveVsGuardedUpdate(int threads) throws Exception {
+        LongConsumer loadThenSave = id -> tx.executeWithoutResult(status -> legacyApprove(id));
+        LongConsumer guardedUpdate = id -> expenseService.approveExpense(managerId, id);
+
+        run(seed(WARMUP), threads, loadThenSave);
+        run(seed(WARMUP), threads, guardedUpdate);
+
+        report(threads, "load-save", run(seed(MEASURED), threads, loadThenSave));
+        report(threads, "guarded", run(seed(MEASURED), threads, guardedUpdate));
+    }
+
+    /**
+     * The pre-engine approve: load actor and expense, check in Java, save, insert the audit row
+     */
+    private void legacyApprove(long expenseId) {
+        User actor = userRepo.findById(managerId).orElseThrow();
+        if (actor.getRole() != Role.MANAGER) throw new IllegalStateException();
+
+        Expense expense = expenseRepo.findById(expenseId).orElseThrow();
+        if (expense.getStatus() != ExpenseStatus.SUBMITTED) throw new IllegalStateException();
+
+        expense.setStatus(ExpenseStatus.APPROVED);
+        Expense saved = expenseRepo.save(expense);
+
+        ExpenseAction action = new ExpenseAction();
+        action.setExpense(saved);
+        action.setActor(actor);
+        action.setActionType(ExpenseActionType.APPROVE);
+        actionRepo.save(action);
+    }
+
+    private long run(List<Long> ids, int threads, LongConsumer approve) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicInteger next = new AtomicInteger();
+
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(pool.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < ids.size(); i = next.getAndIncrement()) {
+                        approve.accept(ids.get(i));
+                    }
+                }));
+            }
+            for (Future<?> w : workers) w.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private List<Long> seed(int rows) {
+        return jdbc.queryForList("""
+                insert into expenses (id, user_id, amount, currency, category, description, expense_date, status, created_at, updated_at, version)
+                select nextval('expenses_seq'), ?, 9.99, 'USD', 'MEALS', 'bench expense ' || g, current_date, 'SUBMITTED', now(), now(), 0
+                from generate_series(1, ?) g
+                returning id
+                """, Long.class, employeeId, rows);
+    }
+
+    private long newUser(Role role) {
+        return jdbc.queryForObject(
+                "insert into users (id, name, email, password_hash, role) values (nextval('users_seq'), 'Bench', ?, 'not-real', ?) returning id",
+                Long.class, "bench-" + role + "-" + System.nanoTime() + "@demo.com", role.ordinal());
+    }
+
+    private static void report(int threads, String path, long nanos) {
+        double ms = nanos / 1_000_000.0;
+        System.out.printf("transition %-9s threads=%d n=%d time=%9.1f ms  %,10.0f transitions/s%n",
+                path, threads, MEASURED, ms, MEASURED / (ms / 1000));
+    }
+}
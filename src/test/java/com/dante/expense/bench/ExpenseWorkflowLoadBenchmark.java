@@ -0,0 +1,159 @@
+package com.dante.expense.bench;
+
+import com.dante.expense.entity.Role;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load benchmark for the create / approve workflow over real HTTP: each client is its own employee and loops
+ * POST /api/expenses then PUT /api/expenses/{id}/approve. Reports completed workflows/s, per-workflow p50 / p99 and
+ * workflows shed with a 503 (no connection within the pool's connection-timeout) for client counts below and above
+ * Tomcat's 200 platform request threads.
+ *
+ * Compare the two threading modes by running it once per mode on a Java 21+ runtime:
+ *      mvn test -Dtest=ExpenseWorkflowLoadBenchmark
+ *      mvn test -Dtest=ExpenseWorkflowLoadBenchmark -Dspring.threads.virtual.enabled=true
+ *
+ * @pre the datasource in application.properties is reachable
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ExpenseWorkflowLoadBenchmark {
+
+    private static final int WARMUP = 500;
+    private static final int MEASURED = 3_000;
+
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+
+    @LocalServerPort private int port;
+    @Autowired private JdbcTemplate jdbc;
+    @Autowired private Environment env;
+
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final List<Long> employees = new ArrayList<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final AtomicInteger shed = new AtomicInteger();
+    private long managerId;
+
+    @BeforeEach
+    void createBenchUsers() {
+        managerId = newUser(Role.MANAGER);
+    }
+
+    @AfterEach
+    void dropBenchData() {
+        for (long employeeId : employees) {
+            jdbc.update("delete from expense_actions where expense_id in (select id from expenses where user_id = ?)", employeeId);
+            jdbc.update("delete from expenses where user_id = ?", employeeId);
+            jdbc.update("delete from expense_rollups where user_id = ?", employeeId);
+            jdbc.update("delete from users where id = ?", employeeId);
+        }
+        jdbc.update("delete from users where id = ?", managerId);
+        employees.clear();
+    }
+
+    @ParameterizedTest(name = "{0} clients")
+    @ValueSource(ints = {50, 400})
+    void createThenApprove(int clients) throws Exception {
+        while (employees.size() < clients) employees.add(newUser(Role.EMPLOYEE));
+
+        run(clients, WARMUP);
+        shed.set(0);
+        long[] latencies = new long[MEASURED];
+        long nanos = run(clients, MEASURED, latencies);
+
+        Arrays.sort(latencies);
+        double seconds = nanos / 1e9;
+        System.out.printf("workflow threads=%-8s clients=%4d n=%d time=%8.1f ms  %,8.0f workflows/s  p50=%7.1f ms  p99=%7.1f ms  shed=%d%n",
+                Threading.VIRTUAL.isActive(env) ? "virtual" : "platform", clients, MEASURED, nanos / 1e6,
+                (MEASURED - shed.get()) / seconds, latencies[MEASURED / 2] / 1e6, latencies[MEASURED * 99 / 100] / 1e6,
+                shed.get());
+    }
+
+    private long run(int clients, int workflows) throws Exception {
+        return run(clients, workflows, new long[workflows]);
+    }
+
+    private long run(int clients, int workflows, long[] latencies) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        AtomicInteger next = new AtomicInteger();
+
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                long employeeId = employees.get(c);
+                workers.add(pool.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < workflows; i = next.getAndIncrement()) {
+                        long t0 = System.nanoTime();
+                        workflow(employeeId, sequence.incrementAndGet());
+                        latencies[i] = System.nanoTime() - t0;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> w : workers) w.get();
+        } finally {
+            pool.shutdownNow();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private void workflow(long employeeId, int seq) throws Exception {
+        // amounts and descriptions vary per workflow so the duplicate check never refuses one
+        String body = String.format("{\"amount\":%d.%02d,\"currency\":\"USD\",\"category\":\"MEALS\","
+                + "\"description\":\"load %d\",\"expenseDate\":\"2026-01-15\"}", 1 + seq / 100, seq % 100, seq);
+
+        HttpResponse<String> created = send(HttpRequest.newBuilder(uri("/api/expenses"))
+                .header("X-User-Id", Long.toString(employeeId))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)));
+        if (created.statusCode() == 503) { shed.incrementAndGet(); return; }
+        Matcher id = ID.matcher(created.body());
+        if (created.statusCode() != 200 || !id.find()) throw new IllegalStateException("create: " + created.body());
+
+        HttpResponse<String> approved = send(HttpRequest.newBuilder(uri("/api/expenses/" + id.group(1) + "/approve"))
+                .header("X-User-Id", Long.toString(managerId))
+                .PUT(HttpRequest.BodyPublishers.noBody()));
+        if (approved.statusCode() == 503) { shed.incrementAndGet(); return; }
+        if (approved.statusCode() != 200) throw new IllegalStateException("approve: " + approved.body());
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private long newUser(Role role) {
+        return jdbc.queryForObject(
+                "insert into users (id, name, email, password_hash, role) values (nextval('users_seq'), 'Bench', ?, 'not-real', ?) returning id",
+                Long.class, "bench-" + role + "-" + System.nanoTime() + "@demo.com", role.ordinal());
+    }
+}
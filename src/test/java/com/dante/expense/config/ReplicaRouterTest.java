@@ -0,0 +1,81 @@
+package com.dante.expense.config;
+
+import com.dante.expense.repository.ReadRouting;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaRouterTest {
+
+    private static final long MS = 1_000_000;
+
+    private final long t0 = System.nanoTime();
+
+    @AfterEach
+    void clearHint() {
+        ReadRouting.clear();
+    }
+
+    /**
+     * A replica only gets reads once it has replayed a recent poll's primary position, and loses them when it falls
+     * more than maxLag behind or stops answering
+     *
+     * @pre none
+     *
+     * @post route follows each replica's replay position
+     */
+    @Test
+    void replicasGetReadsOnlyWithinTheLagBound() {
+        ReplicaRouter router = router(2);
+        assertEquals(ReplicaRouter.PRIMARY, router.route(t0));
+
+        // replica-0 has replayed the poll's position, replica-1 is behind it
+        router.observe(t0, 100, new long[] {100, 90});
+        for (int i = 0; i < 4; i++) assertEquals("replica-0", router.route(t0 + MS));
+
+        // replica-1 catches up; both share reads
+        router.observe(t0 + 500 * MS, 120, new long[] {120, 120});
+        assertNotEquals(router.route(t0 + 501 * MS), router.route(t0 + 501 * MS));
+
+        // replica-0 stops answering, replica-1 stalls at 120 while the primary moves on
+        router.observe(t0 + 800 * MS, 200, new long[] {-1, 120});
+        assertEquals("replica-1", router.route(t0 + 801 * MS));
+        assertEquals(ReplicaRouter.PRIMARY, router.route(t0 + 1_100 * MS));
+    }
+
+    /**
+     * A thread that wrote reads only from replicas caught up to a poll started after its write, or from the primary
+     *
+     * @pre none
+     *
+     * @post route honours ReadRouting hints
+     */
+    @Test
+    void hintsKeepReadsOffReplicasThatMissedTheWrite() {
+        ReplicaRouter router = router(1);
+        router.observe(t0, 100, new long[] {100});
+
+        ReadRouting.requireReplayedSince(t0 + 10 * MS);
+        assertEquals(ReplicaRouter.PRIMARY, router.route(t0 + 20 * MS));
+
+        router.observe(t0 + 50 * MS, 130, new long[] {130});
+        assertEquals("replica-0", router.route(t0 + 60 * MS));
+
+        assertEquals(ReplicaRouter.PRIMARY, ReadRouting.onPrimary(() -> router.route(t0 + 60 * MS)));
+        assertEquals("replica-0", router.route(t0 + 60 * MS));
+    }
+
+    private ReplicaRouter router(int replicas) {
+        Map<String, javax.sql.DataSource> byName = new LinkedHashMap<>();
+        for (int i = 0; i < replicas; i++) byName.put("replica-" + i, new DriverManagerDataSource());
+
+        return new ReplicaRouter(new DriverManagerDataSource(), byName, Duration.ofMillis(500), new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,65 @@
+package com.dante.expense.dto;
+
+import com.dante.expense.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseCursorTest {
+
+    /**
+     * A cursor survives an encode / decode round trip at microsecond precision
+     *
+     * @pre none
+     *
+     * @post decoded cursor points at the same instant and id
+     */
+    @Test
+    void roundTrip() {
+        OffsetDateTime at = OffsetDateTime.of(2025, 3, 14, 9, 26, 53, 589_793_000, ZoneOffset.ofHours(-5));
+        ExpenseCursor cursor = new ExpenseCursor(at, 42L);
+
+        ExpenseCursor decoded = ExpenseCursor.decode(cursor.encode());
+
+        assertTrue(decoded.createdAt().isEqual(at));
+        assertEquals(42L, decoded.id());
+    }
+
+    /**
+     * Tokens that weren't produced by encode() are rejected as a bad request
+     *
+     * @pre none
+     *
+     * @post BadRequestException is thrown
+     */
+    @Test
+    void rejectsGarbage() {
+        assertThrows(BadRequestException.class, () -> ExpenseCursor.decode("not a cursor"));
+        assertThrows(BadRequestException.class, () -> ExpenseCursor.decode("MTIz"));
+        assertThrows(BadRequestException.class, () -> ExpenseCursor.decode(""));
+    }
+
+    /**
+     * A search cursor keeps the exact score bits, its as-of time and its rank window, and a listing cursor isn't
+     * taken for one
+     *
+     * @pre none
+     *
+     * @post decoded search cursors equal the originals up to microseconds, listing tokens are rejected
+     */
+    @Test
+    void searchCursorRoundTrip() {
+        OffsetDateTime at = OffsetDateTime.of(2025, 3, 14, 9, 26, 53, 589_793_000, ZoneOffset.UTC);
+        ExpenseSearchCursor cursor = new ExpenseSearchCursor(0.0607927f, at, 7L, at.plusMinutes(5), null);
+        ExpenseSearchCursor windowed = new ExpenseSearchCursor(0.0607927f, at, 7L, at.plusMinutes(5),
+                new ExpenseCursor(at.minusDays(3), 42L));
+
+        assertEquals(cursor, ExpenseSearchCursor.decode(cursor.encode()));
+        assertEquals(windowed, ExpenseSearchCursor.decode(windowed.encode()));
+        assertThrows(BadRequestException.class,
+                () -> ExpenseSearchCursor.decode(new ExpenseCursor(at, 7L).encode()));
+    }
+}
@@ -0,0 +1,157 @@
+package com.dante.expense.service;
+
+import com.dante.expense.entity.Expense;
+import com.dante.expense.entity.ExpenseAction;
+import com.dante.expense.entity.ExpenseActionType;
+import com.dante.expense.entity.User;
+import com.dante.expense.repository.ExpenseActionRepository;
+import com.dante.expense.repository.ExpenseActionStagingRepository;
+import com.dante.expense.repository.ExpenseActionStagingRepository.StagedAction;
+import com.dante.expense.repository.ExpenseRepository;
+import com.dante.expense.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AsyncAuditWriterTest {
+
+    private final ExpenseActionRepository actionRepo = mock(ExpenseActionRepository.class);
+    private final ExpenseActionStagingRepository stagingRepo = mock(ExpenseActionStagingRepository.class);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+    /** What stagingRepo holds; nothing rolls back here, so staged rows stay until taken */
+    private final TreeMap<Long, StagedAction> staged = new TreeMap<>();
+
+    @SuppressWarnings("unchecked")
+    private AsyncAuditWriter writer(int capacity) {
+        when(stagingRepo.append(anyList())).thenAnswer(inv -> {
+            List<Long> ids = new ArrayList<>();
+            for (StagedAction row : (List<StagedAction>) inv.getArgument(0)) ids.add(stage(row));
+            return ids;
+        });
+        when(stagingRepo.take(anyCollection())).thenAnswer(inv -> {
+            List<StagedAction> taken = new ArrayList<>();
+            for (Long id : (Collection<Long>) inv.getArgument(0)) {
+                StagedAction row = staged.remove(id);
+                if (row != null) taken.add(row);
+            }
+            return taken;
+        });
+        when(stagingRepo.idsAfter(anyLong(), anyInt())).thenAnswer(inv -> staged.tailMap(inv.getArgument(0), false)
+                .keySet().stream().limit((int) inv.getArgument(1)).toList());
+
+        return new AsyncAuditWriter(actionRepo, stagingRepo, mock(ExpenseRepository.class), mock(UserRepository.class),
+                mock(PlatformTransactionManager.class), meters, capacity, 500, Duration.ofMillis(1));
+    }
+
+    private Long stage(StagedAction row) {
+        Long id = staged.isEmpty() ? 1L : staged.lastKey() + 1;
+        staged.put(id, new StagedAction(id, row.expenseId(), row.actorUserId(), row.type(), row.comment(), row.timestamp()));
+        return id;
+    }
+
+    /**
+     * A full queue pushes the overflow onto the caller instead of dropping it, and stop() drains the rest
+     *
+     * @pre none
+     *
+     * @post 2 rows are written inline, the queued one on stop, nothing is lost
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void fullQueueFallsBackToSyncWriteAndStopDrains() {
+        AsyncAuditWriter writer = writer(1);
+
+        writer.write(List.of(action(1L), action(2L), action(3L)));
+
+        ArgumentCaptor<List<ExpenseAction>> saved = ArgumentCaptor.forClass(List.class);
+        verify(actionRepo).saveAll(saved.capture());
+        assertEquals(2, saved.getValue().size());
+        assertEquals(2, meters.counter("expense.audit.backpressure", "outcome", "sync").count());
+
+        writer.start();
+        writer.stop();
+
+        verify(actionRepo, times(2)).saveAll(anyList());
+        assertEquals(3, meters.counter("expense.audit.rows", "result", "written").count());
+        assertEquals(0.0, meters.get("expense.audit.queue.depth").gauge().value());
+        assertTrue(staged.isEmpty());
+    }
+
+    /**
+     * Rows are staged in the caller's transaction but only queued once it commits
+     *
+     * @pre none
+     *
+     * @post the row is staged before commit, queued after it, and moved out of staging by the writer
+     */
+    @Test
+    void rowsAreStagedInTheTransactionAndQueuedAfterCommit() {
+        AsyncAuditWriter writer = writer(10);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            writer.write(action(1L));
+            assertEquals(1, staged.size());
+            assertEquals(0.0, meters.get("expense.audit.queue.depth").gauge().value());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(1.0, meters.get("expense.audit.queue.depth").gauge().value());
+
+        writer.start();
+        writer.stop();
+        verify(actionRepo, times(1)).saveAll(anyList());
+        assertTrue(staged.isEmpty());
+    }
+
+    /**
+     * Rows a previous run staged but never moved, e.g. because it crashed, are written when the writer starts
+     *
+     * @pre none
+     *
+     * @post both leftovers are written once and staging is empty
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void leftoverStagedRowsAreReplayedOnStart() {
+        AsyncAuditWriter writer = writer(10);
+        stage(new StagedAction(null, 1L, 7L, ExpenseActionType.SUBMIT, null, OffsetDateTime.now()));
+        stage(new StagedAction(null, 1L, 8L, ExpenseActionType.APPROVE, "ok", OffsetDateTime.now()));
+
+        writer.start();
+        writer.stop();
+
+        ArgumentCaptor<List<ExpenseAction>> saved = ArgumentCaptor.forClass(List.class);
+        verify(actionRepo).saveAll(saved.capture());
+        assertEquals(List.of(ExpenseActionType.SUBMIT, ExpenseActionType.APPROVE),
+                saved.getValue().stream().map(ExpenseAction::getActionType).toList());
+        assertEquals(2, meters.counter("expense.audit.rows", "result", "written").count());
+        assertTrue(staged.isEmpty());
+    }
+
+    private static ExpenseAction action(Long expenseId) {
+        Expense expense = new Expense();
+        expense.setId(expenseId);
+        User actor = new User();
+        actor.setId(7L);
+
+        return ExpenseService.newAction(expense, actor, ExpenseActionType.APPROVE, null);
+    }
+}
@@ -0,0 +1,61 @@
+package com.dante.expense.service;
+
+import com.dante.expense.exception.ConflictException;
+import com.dante.expense.service.IdempotencyStore.StoredResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaffeineIdempotencyStoreTest {
+
+    /**
+     * A request arriving while the key is held waits for the holder and gets its response, later ones get it at once
+     *
+     * @pre none
+     *
+     * @post the waiter returns the completed response, nobody else can claim the key
+     */
+    @Test
+    void inFlightDuplicatesWaitForTheFirstResponse() throws Exception {
+        CaffeineIdempotencyStore store = new CaffeineIdempotencyStore(Duration.ofHours(1), DataSize.ofMegabytes(1), Duration.ofSeconds(5));
+        StoredResponse ok = new StoredResponse("h", 200, "application/json", "{}".getBytes());
+
+        assertTrue(store.begin("1:k").isEmpty());
+
+        CompletableFuture<Optional<StoredResponse>> waiter = CompletableFuture.supplyAsync(() -> store.begin("1:k"));
+        Thread.sleep(50);
+        assertFalse(waiter.isDone());
+
+        store.complete("1:k", ok);
+
+        assertSame(ok, waiter.get(5, TimeUnit.SECONDS).orElseThrow());
+        assertSame(ok, store.begin("1:k").orElseThrow());
+    }
+
+    /**
+     * A released key passes to the next request, and a key held past the wait is reported as a conflict
+     *
+     * @pre none
+     *
+     * @post the waiter claims the released key, a second waiter times out with ConflictException
+     */
+    @Test
+    void releaseHandsTheKeyOnAndWaitingIsBounded() throws Exception {
+        CaffeineIdempotencyStore store = new CaffeineIdempotencyStore(Duration.ofHours(1), DataSize.ofMegabytes(1), Duration.ofMillis(200));
+
+        assertTrue(store.begin("1:k").isEmpty());
+
+        CompletableFuture<Optional<StoredResponse>> waiter = CompletableFuture.supplyAsync(() -> store.begin("1:k"));
+        Thread.sleep(50);
+        store.release("1:k");
+
+        assertTrue(waiter.get(5, TimeUnit.SECONDS).isEmpty());
+        assertThrows(ConflictException.class, () -> store.begin("1:k"));
+    }
+}
@@ -0,0 +1,47 @@
+package com.dante.expense.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvLineParserTest {
+
+    /**
+     * Plain fields are split on commas and trimmed
+     *
+     * @pre none
+     *
+     * @post fields come back in order without surrounding blanks
+     */
+    @Test
+    void splitsAndTrimsPlainFields() {
+        assertEquals(List.of("1", "12.50", "USD", "MEALS"), CsvLineParser.parse("1, 12.50 ,USD,MEALS"));
+    }
+
+    /**
+     * Quoted fields keep commas and doubled quotes
+     *
+     * @pre none
+     *
+     * @post quoted content is returned verbatim with "" collapsed to "
+     */
+    @Test
+    void handlesQuotedFields() {
+        assertEquals(List.of("Hotel, Berlin", "the \"good\" one", ""),
+                CsvLineParser.parse("\"Hotel, Berlin\",\"the \"\"good\"\" one\","));
+    }
+
+    /**
+     * An unclosed quote is a malformed record
+     *
+     * @pre none
+     *
+     * @post IllegalArgumentException is thrown
+     */
+    @Test
+    void rejectsUnterminatedQuote() {
+        assertThrows(IllegalArgumentException.class, () -> CsvLineParser.parse("1,\"oops"));
+    }
+}
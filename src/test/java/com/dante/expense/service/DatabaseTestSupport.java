@@ -0,0 +1,82 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.CreateExpenseRequest;
+import com.dante.expense.entity.ExpenseCategory;
+import com.dante.expense.entity.Role;
+import com.dante.expense.entity.User;
+import com.dante.expense.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Fixture shared by the @SpringBootTest classes that run against the datasource in application.properties
+ * Each test gets a fresh employee, manager and finance user; afterwards the employee's expenses and everything
+ * hanging off them are deleted along with the users. Subclasses' own @BeforeEach run after createUsers and their
+ * @AfterEach before dropData
+ *
+ * @pre the datasource in application.properties is reachable
+ */
+abstract class DatabaseTestSupport {
+
+    @Autowired protected ExpenseService expenseService;
+    @Autowired protected UserRepository userRepo;
+    @Autowired protected JdbcTemplate jdbc;
+
+    protected Long employeeId;
+    protected Long managerId;
+    protected Long financeId;
+
+    @BeforeEach
+    void createUsers() {
+        employeeId = newUser(Role.EMPLOYEE);
+        managerId = newUser(Role.MANAGER);
+        financeId = newUser(Role.FINANCE);
+    }
+
+    @AfterEach
+    void dropData() {
+        String owned = "expense_id in (select id from expenses where user_id = ?)";
+        jdbc.update("delete from expense_outbox where " + owned, employeeId);
+        jdbc.update("delete from expense_action_staging where " + owned, employeeId);
+        jdbc.update("delete from expense_actions where " + owned, employeeId);
+        jdbc.update("delete from expenses where user_id = ?", employeeId);
+        jdbc.update("delete from expense_rollups where user_id = ?", employeeId);
+        jdbc.update("delete from users where id in (?, ?, ?)", employeeId, managerId, financeId);
+    }
+
+    /**
+     * Submits a 10.00 USD MEALS expense dated today for the employee
+     *
+     * @return the new expense's id
+     *
+     * @pre createUsers has run
+     *
+     * @post the expense is SUBMITTED with a SUBMIT action
+     */
+    protected Long submit() {
+        CreateExpenseRequest req = new CreateExpenseRequest();
+        req.setAmount(new BigDecimal("10.00"));
+        req.setCurrency("USD");
+        req.setCategory(ExpenseCategory.MEALS);
+        req.setDescription(getClass().getSimpleName());
+        req.setExpenseDate(LocalDate.now());
+
+        return expenseService.createExpense(employeeId, req, null, true).getId();
+    }
+
+    private Long newUser(Role role) {
+        String prefix = getClass().getSimpleName();
+        User u = new User();
+        u.setName(prefix + " " + role);
+        u.setEmail(prefix.toLowerCase() + "-" + role + "-" + System.nanoTime() + "@demo.com");
+        u.setPasswordHash("not-real");
+        u.setRole(role);
+
+        return userRepo.save(u).getId();
+    }
+}
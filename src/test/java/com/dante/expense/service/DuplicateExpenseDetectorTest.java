@@ -0,0 +1,49 @@
+package com.dante.expense.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateExpenseDetectorTest {
+
+    /**
+     * Fingerprints ignore amount scale, currency case and description case, accents, punctuation and spacing,
+     * but not the owner, amount, date or words
+     *
+     * @pre none
+     *
+     * @post equal fingerprints exactly for the same normalized fields
+     */
+    @Test
+    void fingerprintNormalizesTheDescription() {
+        LocalDate d = LocalDate.of(2026, 3, 14);
+        String fp = DuplicateExpenseDetector.fingerprint(7L, new BigDecimal("12.50"), "EUR", d, "Café  lunch, Zürich!");
+
+        assertEquals(32, fp.length());
+        assertEquals(fp, DuplicateExpenseDetector.fingerprint(7L, new BigDecimal("12.5"), "eur", d, "cafe lunch zurich"));
+        assertNotEquals(fp, DuplicateExpenseDetector.fingerprint(8L, new BigDecimal("12.50"), "EUR", d, "cafe lunch zurich"));
+        assertNotEquals(fp, DuplicateExpenseDetector.fingerprint(7L, new BigDecimal("12.51"), "EUR", d, "cafe lunch zurich"));
+        assertNotEquals(fp, DuplicateExpenseDetector.fingerprint(7L, new BigDecimal("12.50"), "EUR", d.plusDays(1), "cafe lunch zurich"));
+        assertNotEquals(fp, DuplicateExpenseDetector.fingerprint(7L, new BigDecimal("12.50"), "EUR", d, "cafe dinner zurich"));
+    }
+
+    /**
+     * Similarity is the word-set Jaccard index of normalized descriptions
+     *
+     * @pre none
+     *
+     * @post reordered words match fully, partial overlaps score their share of the union
+     */
+    @Test
+    void similarityIsWordOverlap() {
+        assertEquals(1.0, DuplicateExpenseDetector.similarity("client lunch", "lunch client"));
+        assertEquals(2.0 / 3, DuplicateExpenseDetector.similarity("lunch with client", "client lunch"), 1e-9);
+        assertEquals(0.5, DuplicateExpenseDetector.similarity("taxi to airport", "taxi from airport"), 1e-9);
+        assertEquals(0.0, DuplicateExpenseDetector.similarity("hotel", "taxi"));
+        assertEquals(1.0, DuplicateExpenseDetector.similarity("", ""));
+        assertEquals("taxi to airport", DuplicateExpenseDetector.normalize("  Taxi -> to AIRPORT?? "));
+    }
+}
@@ -0,0 +1,74 @@
+package com.dante.expense.service;
+
+import com.dante.expense.repository.ExpenseActionPartitionRepository.Partition;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseActionPartitionMaintenanceTest {
+
+    private static final YearMonth NOW = YearMonth.of(2026, 10);
+
+    /**
+     * Right after conversion the legacy partition covers the current month, so only later months are created
+     *
+     * @pre none
+     *
+     * @post the next 3 months are planned, the current one isn't
+     */
+    @Test
+    void createsOnlyUncoveredMonthsAhead() {
+        List<Partition> attached = List.of(new Partition("expense_actions_legacy", null, start(2026, 11)));
+
+        assertEquals(List.of(YearMonth.of(2026, 11), YearMonth.of(2026, 12), YearMonth.of(2027, 1)),
+                ExpenseActionPartitionMaintenance.monthsToCreate(attached, NOW, 3));
+
+        List<Partition> upToDate = List.of(new Partition("expense_actions_p2027_01", start(2026, 12), start(2027, 2)));
+        assertEquals(List.of(), ExpenseActionPartitionMaintenance.monthsToCreate(upToDate, NOW, 3));
+    }
+
+    /**
+     * Coverage that ended months ago is extended from where it stopped, not from the current month
+     *
+     * @pre none
+     *
+     * @post every month from the end of coverage through current + ahead is planned
+     */
+    @Test
+    void fillsTheGapAfterAnOutage() {
+        List<Partition> attached = List.of(new Partition("expense_actions_p2026_07", start(2026, 7), start(2026, 8)));
+
+        List<YearMonth> months = ExpenseActionPartitionMaintenance.monthsToCreate(attached, NOW, 1);
+
+        assertEquals(YearMonth.of(2026, 8), months.get(0));
+        assertEquals(YearMonth.of(2026, 11), months.get(months.size() - 1));
+        assertEquals(4, months.size());
+        assertEquals("expense_actions_p2026_08", ExpenseActionPartitionMaintenance.nameOf(months.get(0)));
+    }
+
+    /**
+     * Only partitions entirely before the retention cutoff are archived
+     *
+     * @pre none
+     *
+     * @post with 12 months retention the cutoff is 2025-10-01, a partition ending there goes, one ending after stays
+     */
+    @Test
+    void archivesPartitionsEndingBeforeTheCutoff() {
+        Partition legacy = new Partition("expense_actions_legacy", null, start(2025, 9));
+        Partition edge = new Partition("expense_actions_p2025_09", start(2025, 9), start(2025, 10));
+        Partition kept = new Partition("expense_actions_p2025_10", start(2025, 10), start(2025, 11));
+
+        assertEquals(List.of(legacy, edge),
+                ExpenseActionPartitionMaintenance.partitionsToArchive(List.of(legacy, edge, kept), NOW, 12));
+    }
+
+    private static OffsetDateTime start(int year, int month) {
+        return OffsetDateTime.of(year, month, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    }
+}
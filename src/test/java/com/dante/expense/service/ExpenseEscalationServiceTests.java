@@ -0,0 +1,68 @@
+package com.dante.expense.service;
+
+import com.dante.expense.entity.ExpenseStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Escalates backdated expenses through ExpenseEscalationService
+ * Runs against the datasource in application.properties, like contextLoads; the cutoff used here lies before any
+ * real data, so only the backdated expenses are in breach
+ *
+ * @pre the datasource in application.properties is reachable
+ */
+@SpringBootTest(properties = {
+        "expense.sla.enabled=true",
+        "expense.sla.submitted-max-age=P36500D",
+        "expense.sla.scan-interval=PT1H"
+})
+class ExpenseEscalationServiceTests extends DatabaseTestSupport {
+
+    private static final OffsetDateTime LONG_AGO = OffsetDateTime.of(2001, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Autowired private ExpenseEscalationService escalations;
+
+    /**
+     * Two stale SUBMITTED expenses and one stale APPROVED one, scanned twice
+     *
+     * @pre none
+     *
+     * @post only the SUBMITTED ones are escalated, once each, with an ESCALATE action that has no actor
+     */
+    @Test
+    void escalatesStaleSubmittedExpensesOnce() {
+        Long first = backdated(submit());
+        Long second = backdated(submit());
+        Long approved = submit();
+        expenseService.approveExpense(managerId, approved);
+        backdated(approved);
+
+        OffsetDateTime cutoff = LONG_AGO.plusDays(1);
+        OffsetDateTime now = OffsetDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        assertEquals(2, escalations.escalateChunk(cutoff, now));
+        assertEquals(0, escalations.escalateChunk(cutoff, now));
+
+        assertEquals(2, jdbc.queryForObject("""
+                select count(*) from expenses where id in (?, ?, ?) and escalated_at is not null and status = ?""",
+                Long.class, first, second, approved, ExpenseStatus.SUBMITTED.name()));
+        assertEquals(2, jdbc.queryForObject("""
+                select count(*) from expense_actions
+                where expense_id in (?, ?, ?) and action_type = 4 and actor_user_id is null""",
+                Long.class, first, second, approved));
+
+        // an escalated expense still goes through the normal workflow
+        assertEquals(ExpenseStatus.APPROVED, expenseService.approveExpense(managerId, first).getStatus());
+    }
+
+    private Long backdated(Long expenseId) {
+        jdbc.update("update expenses set created_at = ? where id = ?", LONG_AGO, expenseId);
+        return expenseId;
+    }
+}
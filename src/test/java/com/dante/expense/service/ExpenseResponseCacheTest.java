@@ -0,0 +1,51 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.ExpenseResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseResponseCacheTest {
+
+    /**
+     * Inside a transaction the eviction waits for commit, so a read before commit still sees the cached row
+     *
+     * @pre none
+     *
+     * @post the loader runs once before commit and again after it
+     */
+    @Test
+    void evictsOnlyAfterCommit() {
+        ExpenseResponseCache cache = new ExpenseResponseCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+        AtomicInteger loads = new AtomicInteger();
+        Function<Long, ExpenseResponse> loader = id -> {
+            loads.incrementAndGet();
+            ExpenseResponse r = new ExpenseResponse();
+            r.setId(id);
+            return r;
+        };
+
+        cache.get(1L, loader);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.evictAfterCommit(1L);
+            cache.get(1L, loader);
+            assertEquals(1, loads.get());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        cache.get(1L, loader);
+        assertEquals(2, loads.get());
+    }
+}
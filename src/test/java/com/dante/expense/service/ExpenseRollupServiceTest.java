@@ -0,0 +1,61 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.ExpenseResponse;
+import com.dante.expense.entity.ExpenseCategory;
+import com.dante.expense.entity.ExpenseStatus;
+import com.dante.expense.repository.ExpenseRepositoryCustom.StatusChange;
+import com.dante.expense.repository.ExpenseRollupRepository;
+import com.dante.expense.repository.ExpenseRollupRepository.Delta;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseRollupServiceTest {
+
+    private final List<Delta> applied = new ArrayList<>();
+
+    private final ExpenseRollupService rollups = new ExpenseRollupService(new ExpenseRollupRepository(null) {
+        @Override
+        public void apply(List<Delta> deltas) {
+            applied.addAll(deltas);
+        }
+    }, null, null, null, 1);
+
+    /**
+     * Changes that land on the same rollup row are merged into one delta, and deltas come out in key order
+     *
+     * @pre none
+     *
+     * @post user 7's two March approvals become one -2 and one +2 delta, user 3's rows come first
+     */
+    @Test
+    void mergesChangesPerRollupRowInKeyOrder() {
+        rollups.recordTransitions(List.of(
+                approved(7L, LocalDate.of(2026, 3, 2), "10.00"),
+                approved(7L, LocalDate.of(2026, 3, 30), "2.50"),
+                approved(3L, LocalDate.of(2026, 4, 1), "1.00")));
+
+        assertEquals(List.of(
+                delta(3L, ExpenseStatus.SUBMITTED, -1, "-1.00"),
+                delta(3L, ExpenseStatus.APPROVED, 1, "1.00"),
+                delta(7L, ExpenseStatus.SUBMITTED, -2, "-12.50"),
+                delta(7L, ExpenseStatus.APPROVED, 2, "12.50")),
+                applied.stream().map(d -> delta(d.userId(), d.status(), d.count(), d.amount().toPlainString())).toList());
+
+        assertEquals(LocalDate.of(2026, 3, 1), applied.get(2).month());
+    }
+
+    private static StatusChange approved(Long userId, LocalDate expenseDate, String amount) {
+        return new StatusChange(new ExpenseResponse(1L, userId, new BigDecimal(amount), null, "EUR", ExpenseCategory.TRAVEL,
+                "taxi", expenseDate, ExpenseStatus.APPROVED, null, null), ExpenseStatus.SUBMITTED);
+    }
+
+    private static String delta(Long userId, ExpenseStatus status, long count, String amount) {
+        return userId + "/" + status + "/" + count + "/" + amount;
+    }
+}
@@ -0,0 +1,55 @@
+package com.dante.expense.service;
+
+import com.dante.expense.entity.ExpenseActionType;
+import com.dante.expense.entity.ExpenseStatus;
+import com.dante.expense.entity.Role;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseStateMachineTest {
+
+    /**
+     * The table holds exactly the three workflow transitions
+     *
+     * @pre none
+     *
+     * @post every (status, action, role) triple is legal IFF it is one of the declared rules
+     */
+    @Test
+    void onlyDeclaredTransitionsAreLegal() {
+        int legal = 0;
+
+        for (ExpenseStatus from : ExpenseStatus.values()) {
+            for (ExpenseActionType action : ExpenseActionType.values()) {
+                for (Role role : Role.values()) {
+                    if (ExpenseStateMachine.sources(action, role).contains(from)) legal++;
+                }
+            }
+        }
+
+        assertEquals(3, legal);
+        assertTrue(ExpenseStateMachine.sources(ExpenseActionType.APPROVE, Role.MANAGER).contains(ExpenseStatus.SUBMITTED));
+        assertTrue(ExpenseStateMachine.sources(ExpenseActionType.REJECT, Role.MANAGER).contains(ExpenseStatus.SUBMITTED));
+        assertTrue(ExpenseStateMachine.sources(ExpenseActionType.REIMBURSE, Role.FINANCE).contains(ExpenseStatus.APPROVED));
+    }
+
+    /**
+     * Targets, sources and roles are derived per action
+     *
+     * @pre none
+     *
+     * @post SUBMIT has no target, the other actions lead to their status
+     */
+    @Test
+    void lookupsFollowTheRules() {
+        assertNull(ExpenseStateMachine.target(ExpenseActionType.SUBMIT));
+        assertEquals(ExpenseStatus.REIMBURSED, ExpenseStateMachine.target(ExpenseActionType.REIMBURSE));
+
+        assertEquals(Set.of(ExpenseStatus.SUBMITTED), ExpenseStateMachine.sources(ExpenseActionType.APPROVE, Role.MANAGER));
+        assertEquals(Set.of(), ExpenseStateMachine.sources(ExpenseActionType.APPROVE, Role.FINANCE));
+        assertEquals(Set.of(Role.FINANCE), ExpenseStateMachine.roles(ExpenseActionType.REIMBURSE));
+    }
+}
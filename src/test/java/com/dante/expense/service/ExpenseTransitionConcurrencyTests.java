@@ -0,0 +1,151 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.BulkTransitionResponse;
+import com.dante.expense.dto.BulkTransitionResult.Outcome;
+import com.dante.expense.dto.ExpenseActionResponse;
+import com.dante.expense.entity.ExpenseActionType;
+import com.dante.expense.entity.ExpenseStatus;
+import com.dante.expense.exception.BadRequestException;
+import com.dante.expense.exception.ConflictException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fires parallel transitions at one expense and checks that exactly one wins
+ * Runs against the datasource in application.properties, like contextLoads
+ *
+ * @pre the datasource in application.properties is reachable
+ */
+@SpringBootTest
+class ExpenseTransitionConcurrencyTests extends DatabaseTestSupport {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 20;
+
+    private ExecutorService pool;
+
+    @BeforeEach
+    void startPool() {
+        pool = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void stopPool() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Managers racing approve against reject on a SUBMITTED expense
+     *
+     * @pre none
+     *
+     * @post each round has one winner, the losers see 409 or 400, and the audit trail holds one decision
+     */
+    @Test
+    void approveAndRejectRaceHasOneWinner() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            Long expenseId = submit();
+
+            List<Callable<ExpenseStatus>> calls = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                calls.add(i % 2 == 0
+                        ? () -> expenseService.approveExpense(managerId, expenseId).getStatus()
+                        : () -> expenseService.rejectExpense(managerId, expenseId, "no").getStatus());
+            }
+
+            ExpenseStatus winner = assertOneWinner(calls);
+
+            assertEquals(winner, expenseService.getExpense(expenseId).getStatus());
+            assertDecisions(expenseId, 1);
+        }
+    }
+
+    /**
+     * Finance users racing single and bulk reimbursements of one APPROVED expense
+     *
+     * @pre none
+     *
+     * @post exactly one REIMBURSE is applied and audited
+     */
+    @Test
+    void reimburseRaceHasOneWinner() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            Long expenseId = submit();
+            expenseService.approveExpense(managerId, expenseId);
+
+            List<Callable<ExpenseStatus>> calls = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                calls.add(i % 2 == 0
+                        ? () -> expenseService.reimburseExpense(expenseId, financeId, null).getStatus()
+                        : () -> bulkReimburse(expenseId));
+            }
+
+            assertEquals(ExpenseStatus.REIMBURSED, assertOneWinner(calls));
+            assertDecisions(expenseId, 2);
+        }
+    }
+
+    private ExpenseStatus bulkReimburse(Long expenseId) {
+        BulkTransitionResponse res = expenseService.bulkTransition(financeId, ExpenseActionType.REIMBURSE, List.of(expenseId), null);
+        Outcome outcome = res.results().get(0).outcome();
+
+        if (outcome == Outcome.CONFLICT) throw new ConflictException(res.results().get(0).message());
+        if (outcome != Outcome.OK) throw new BadRequestException(res.results().get(0).message());
+
+        return res.results().get(0).status();
+    }
+
+    /**
+     * Starts all calls together and checks that exactly one returned, the rest failing with a lost-race error
+     *
+     * @return the status the winner produced
+     */
+    private ExpenseStatus assertOneWinner(List<Callable<ExpenseStatus>> calls) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ExpenseStatus>> futures = new ArrayList<>();
+
+        for (Callable<ExpenseStatus> call : calls) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return call.call();
+            }));
+        }
+        start.countDown();
+
+        List<ExpenseStatus> wins = new ArrayList<>();
+        for (Future<ExpenseStatus> f : futures) {
+            try {
+                wins.add(f.get());
+            } catch (java.util.concurrent.ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                assertTrue(cause instanceof ConflictException || cause instanceof BadRequestException,
+                        () -> "unexpected failure: " + cause);
+            }
+        }
+
+        assertEquals(1, wins.size(), () -> "winners: " + wins);
+        return wins.get(0);
+    }
+
+    /**
+     * Checks the audit trail holds SUBMIT plus exactly #decisions transitions
+     */
+    private void assertDecisions(Long expenseId, int decisions) {
+        List<ExpenseActionResponse> actions = expenseService.getExpenseActions(expenseId);
+
+        assertEquals(1 + decisions, actions.size());
+        assertEquals(1, actions.stream().filter(a -> a.actionType() == ExpenseActionType.SUBMIT).count());
+    }
+}
@@ -0,0 +1,58 @@
+package com.dante.expense.service;
+
+import com.dante.expense.repository.FxRateRepository.FxRate;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FxRateCacheTest {
+
+    /**
+     * A rate holds from its date until the currency's next rate, and nothing converts before the first one
+     *
+     * @pre none
+     *
+     * @post lookups pick the latest rate on or before the date, base currency amounts pass through
+     */
+    @Test
+    void usesTheLatestRateOnOrBeforeTheDate() {
+        FxRateCache fx = new FxRateCache("usd");
+        fx.load(List.of(
+                new FxRate("EUR", LocalDate.of(2026, 3, 1), new BigDecimal("1.10")),
+                new FxRate("EUR", LocalDate.of(2026, 3, 5), new BigDecimal("1.20")),
+                new FxRate("JPY", LocalDate.of(2026, 3, 1), new BigDecimal("0.006712345"))));
+
+        assertNull(fx.toBase(new BigDecimal("10.00"), "EUR", LocalDate.of(2026, 2, 28)));
+        assertEquals(new BigDecimal("11.00"), fx.toBase(new BigDecimal("10.00"), "EUR", LocalDate.of(2026, 3, 4)));
+        assertEquals(new BigDecimal("12.00"), fx.toBase(new BigDecimal("10.00"), "EUR", LocalDate.of(2026, 3, 5)));
+        assertEquals(new BigDecimal("12.00"), fx.toBase(new BigDecimal("10.00"), "EUR", LocalDate.of(2027, 1, 1)));
+        assertEquals(new BigDecimal("67.12"), fx.toBase(new BigDecimal("10000"), "JPY", LocalDate.of(2026, 3, 1)));
+        assertNull(fx.toBase(new BigDecimal("10.00"), "GBP", LocalDate.of(2026, 3, 1)));
+        assertEquals(new BigDecimal("10.50"), fx.toBase(new BigDecimal("10.5"), "USD", LocalDate.of(2020, 1, 1)));
+    }
+
+    /**
+     * Conversion rounds half up on the scaled longs, and falls back to BigDecimal where the product overflows
+     *
+     * @pre none
+     *
+     * @post both paths agree with BigDecimal arithmetic
+     */
+    @Test
+    void roundsHalfUpAndSurvivesOverflow() {
+        assertEquals(1, FxRateCache.convertCents(1, FxRateCache.scale(new BigDecimal("0.5"))));
+        assertEquals(0, FxRateCache.convertCents(1, FxRateCache.scale(new BigDecimal("0.499999999"))));
+
+        long cents = 999_999_999_999L;
+        long rate = FxRateCache.scale(new BigDecimal("151.123456789"));
+        BigDecimal expected = new BigDecimal("9999999999.99").multiply(new BigDecimal("151.123456789"))
+                .setScale(2, RoundingMode.HALF_UP);
+
+        assertEquals(expected.unscaledValue().longValueExact(), FxRateCache.convertCents(cents, rate));
+    }
+}
@@ -0,0 +1,57 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.ExpenseEvent;
+import com.dante.expense.entity.ExpenseActionType;
+import com.dante.expense.entity.ExpenseStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotifyExpenseEventPublisherTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private final NotifyExpenseEventPublisher publisher = new NotifyExpenseEventPublisher(
+            null, null, objectMapper, null, new SimpleMeterRegistry(), "expense_events");
+
+    /**
+     * A bulk transition's events are packed into as few NOTIFY payloads as fit, in order, and an event too large
+     * on its own loses its comment rather than the whole notification
+     *
+     * @pre none
+     *
+     * @post every payload is under 8000 bytes and together they hold every event in order
+     */
+    @Test
+    void payloadsStayUnderTheNotifyLimit() {
+        List<ExpenseEvent> events = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) events.add(event(id, "approved in bulk"));
+        events.add(event(101, "é".repeat(5_000)));
+
+        List<String> payloads = publisher.payloads(events);
+
+        assertTrue(payloads.size() > 1 && payloads.size() < events.size());
+        List<ExpenseEvent> decoded = new ArrayList<>();
+        for (String p : payloads) {
+            assertTrue(p.getBytes(StandardCharsets.UTF_8).length < 8_000);
+            decoded.addAll(objectMapper.readValue(p, new TypeReference<List<ExpenseEvent>>() {}));
+        }
+
+        assertEquals(events.subList(0, 100), decoded.subList(0, 100));
+        assertEquals(101L, decoded.get(100).expenseId());
+        assertNull(decoded.get(100).comment());
+    }
+
+    private static ExpenseEvent event(long id, String comment) {
+        return new ExpenseEvent(id, 1L, 2L, ExpenseActionType.APPROVE, ExpenseStatus.SUBMITTED, ExpenseStatus.APPROVED,
+                comment, OffsetDateTime.parse("2026-01-15T10:00:00Z"));
+    }
+}
@@ -0,0 +1,67 @@
+package com.dante.expense.service;
+
+import com.dante.expense.dto.OutboxEvent;
+import com.dante.expense.entity.ExpenseActionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Relays workflow events through the outbox into the in-memory sink
+ * Runs against the datasource in application.properties, like contextLoads
+ *
+ * @pre the datasource in application.properties is reachable
+ */
+@SpringBootTest(properties = {
+        "expense.outbox.enabled=true",
+        "expense.outbox.sink=memory",
+        "expense.outbox.poll-interval=PT1H"
+})
+class OutboxRelayTests extends DatabaseTestSupport {
+
+    @Autowired private OutboxRelay relay;
+    @Autowired private InMemoryOutboxSink sink;
+
+    @BeforeEach
+    void clearSink() {
+        sink.clear();
+    }
+
+    /**
+     * One expense goes through its whole workflow before the relay runs, a second one is only submitted
+     *
+     * @pre none
+     *
+     * @post a batch carries only each expense's oldest event, and every event arrives once, in workflow order
+     */
+    @Test
+    void deliversEachExpensesEventsInOrder() {
+        Long first = submit();
+        expenseService.approveExpense(managerId, first);
+        expenseService.reimburseExpense(first, financeId, null);
+        Long second = submit();
+
+        relay.relayBatch();
+        assertEquals(List.of(ExpenseActionType.SUBMIT), typesOf(first));
+        assertEquals(List.of(ExpenseActionType.SUBMIT), typesOf(second));
+
+        relay.relay();
+        assertEquals(List.of(ExpenseActionType.SUBMIT, ExpenseActionType.APPROVE, ExpenseActionType.REIMBURSE),
+                typesOf(first));
+        assertEquals(List.of(ExpenseActionType.SUBMIT), typesOf(second));
+
+        List<Long> ids = sink.received().stream().map(OutboxEvent::eventId).toList();
+        assertEquals(ids.size(), ids.stream().distinct().count());
+        assertEquals(0, jdbc.queryForObject("select count(*) from expense_outbox where expense_id in (?, ?)",
+                Long.class, first, second));
+    }
+
+    private List<ExpenseActionType> typesOf(Long expenseId) {
+        return sink.received().stream().filter(e -> expenseId.equals(e.expenseId())).map(OutboxEvent::type).toList();
+    }
+}
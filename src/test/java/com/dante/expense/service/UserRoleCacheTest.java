@@ -0,0 +1,55 @@
+package com.dante.expense.service;
+
+import com.dante.expense.entity.Role;
+import com.dante.expense.exception.NotFoundException;
+import com.dante.expense.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserRoleCacheTest {
+
+    /**
+     * A known user's role is read from the repository once, then served from the cache
+     *
+     * @pre none
+     *
+     * @post findRoleById is called exactly once and hits are counted
+     */
+    @Test
+    void servesRepeatedLookupsFromCache() {
+        UserRepository repo = mock(UserRepository.class);
+        when(repo.findRoleById(2L)).thenReturn(Optional.of(Role.MANAGER));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        UserRoleCache cache = new UserRoleCache(repo, registry, 100, Duration.ofMinutes(5));
+
+        assertEquals(Role.MANAGER, cache.roleOf(2L));
+        assertEquals(Role.MANAGER, cache.roleOf(2L));
+
+        verify(repo, times(1)).findRoleById(2L);
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", UserRoleCache.CACHE_NAME).tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    /**
+     * Unknown users fail and aren't remembered, so a user created later is found
+     *
+     * @pre none
+     *
+     * @post first lookup throws NotFoundException, second one returns the new role
+     */
+    @Test
+    void unknownUsersAreNotCached() {
+        UserRepository repo = mock(UserRepository.class);
+        when(repo.findRoleById(9L)).thenReturn(Optional.empty()).thenReturn(Optional.of(Role.FINANCE));
+        UserRoleCache cache = new UserRoleCache(repo, new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+
+        assertThrows(NotFoundException.class, () -> cache.roleOf(9L));
+        assertEquals(Role.FINANCE, cache.roleOf(9L));
+    }
+}